@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.dcs.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes several digests of the same content in a single pass over it.
+ * <p>
+ * Algorithms may be given either by their Java names (e.g. "SHA-256") or by the names used in BagIt manifest file
+ * names (e.g. "sha256"). Digest values are returned as lower case hex strings, like the ones produced by
+ * {@link ChecksumGeneratorVerifier}.
+ * </p>
+ */
+public final class MultiDigestReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+
+    /**
+     * Creates a reader computing the given algorithms.
+     * @param algorithms the digest algorithms
+     * @throws NoSuchAlgorithmException if one of the algorithms is not available
+     */
+    public MultiDigestReader(Collection<String> algorithms) throws NoSuchAlgorithmException {
+        for (String algorithm : algorithms) {
+            if (!digests.containsKey(algorithm)) {
+                digests.put(algorithm, getMessageDigest(algorithm));
+            }
+        }
+    }
+
+    /**
+     * Updates all digests with the given bytes.
+     * @param bytes the content
+     * @param offset the offset of the content in the array
+     * @param length the length of the content
+     */
+    public void update(byte[] bytes, int offset, int length) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Reads the stream to its end, updating all digests with its content. The stream is not closed.
+     * @param content the content
+     * @return the number of bytes read
+     * @throws IOException if the stream could not be read
+     */
+    public long read(InputStream content) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = content.read(buf)) != -1) {
+            update(buf, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Completes the digests, and resets them so the reader may be reused.
+     * @return the hex digest values, keyed by algorithm as given to the constructor
+     */
+    public Map<String, String> digest() {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, MessageDigest> digest : digests.entrySet()) {
+            values.put(digest.getKey(), toHex(digest.getValue().digest()));
+        }
+        return values;
+    }
+
+    /**
+     * Reads the stream to its end and returns the digests of its content. The stream is not closed.
+     * @param content the content
+     * @param algorithms the digest algorithms
+     * @return the hex digest values, keyed by algorithm
+     * @throws IOException if the stream could not be read
+     * @throws NoSuchAlgorithmException if one of the algorithms is not available
+     */
+    public static Map<String, String> digest(InputStream content, Collection<String> algorithms)
+            throws IOException, NoSuchAlgorithmException {
+        MultiDigestReader reader = new MultiDigestReader(algorithms);
+        reader.read(content);
+        return reader.digest();
+    }
+
+    /**
+     * Returns a {@code MessageDigest} for the algorithm, accepting the BagIt names of the SHA-2 algorithms.
+     * @param algorithm the algorithm name
+     * @return the message digest
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        String javaName = algorithm;
+        if (algorithm.matches("(?i)sha(224|256|384|512)")) {
+            javaName = "SHA-" + algorithm.substring(3);
+        }
+        return MessageDigest.getInstance(javaName);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
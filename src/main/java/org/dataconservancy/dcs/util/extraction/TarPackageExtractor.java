@@ -23,8 +23,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class TarPackageExtractor extends BasePackageExtractor {
 
@@ -42,6 +46,9 @@ public class TarPackageExtractor extends BasePackageExtractor {
     public List<File> unpackFilesFromStream(InputStream packageInputStream, String packageDir, String fileName) throws UnpackException {
 
         List<File> files = new ArrayList<>();
+        Path packagePath = Paths.get(packageDir).toAbsolutePath().normalize();
+        //files extracted so far, which are the only files hard links may refer to
+        Set<Path> extractedFiles = new HashSet<>();
         //use try-with-resources to make sure tar input stream is closed even in the event of an Exception
         try(TarArchiveInputStream tarInStream = TarArchiveInputStream.class.isAssignableFrom(packageInputStream.getClass()) ?
                 (TarArchiveInputStream)packageInputStream :  new TarArchiveInputStream(packageInputStream)){
@@ -49,9 +56,23 @@ public class TarPackageExtractor extends BasePackageExtractor {
             //Get next tar entry returns null when there are no more entries
             while (entry != null) {
                 //Directories are automatically handled by the base class so we can ignore them in this class.
-                if (!entry.isDirectory()) {
+                if (entry.isLink()) {
+                    //Hard links refer to an entry extracted earlier, whose content is copied.
                     File entryFile = new File(packageDir, FilePathUtil.convertToPlatformSpecificSlash(entry.getName()));
-                    List<File> savedFiles = saveExtractedFile(entryFile, tarInStream);
+                    Path linkedPath = packagePath.resolve(
+                            FilePathUtil.convertToPlatformSpecificSlash(entry.getLinkName())).normalize();
+                    if (!linkedPath.startsWith(packagePath) || !extractedFiles.contains(linkedPath)) {
+                        final String msg = "Hard link " + entry.getName() + " refers to " + entry.getLinkName() +
+                                ", which is not an entry extracted from " + fileName;
+                        log.error(msg);
+                        throw new UnpackException(msg);
+                    }
+                    try (InputStream linkedContent = new FileInputStream(linkedPath.toFile())) {
+                        files.addAll(saveExtracted(entryFile, linkedContent, extractedFiles));
+                    }
+                } else if (!entry.isDirectory()) {
+                    File entryFile = new File(packageDir, FilePathUtil.convertToPlatformSpecificSlash(entry.getName()));
+                    List<File> savedFiles = saveExtracted(entryFile, tarInStream, extractedFiles);
                     files.addAll(savedFiles);
                 }
                 entry = tarInStream.getNextTarEntry();
@@ -66,4 +87,14 @@ public class TarPackageExtractor extends BasePackageExtractor {
 
         return files;
     }
+
+    /* Saves an extracted file, recording it among the extracted files if its path is valid */
+    private List<File> saveExtracted(File entryFile, InputStream content, Set<Path> extractedFiles)
+            throws IOException {
+        List<File> savedFiles = saveExtractedFile(entryFile, content);
+        if (savedFiles.contains(entryFile)) {
+            extractedFiles.add(entryFile.toPath().toAbsolutePath().normalize());
+        }
+        return savedFiles;
+    }
 }
\ No newline at end of file
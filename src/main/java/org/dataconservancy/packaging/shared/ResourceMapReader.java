@@ -0,0 +1,546 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.shared;
+
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.RDFReader;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.vocabulary.RDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Reads the resource maps of a package one document at a time, handing every aggregation they describe to a
+ * {@link Handler}. Unlike {@link ResourceMapUtil#loadRems(URI, File)}, which loads every resource map of a package
+ * into a single model, only the document being read is held in memory, so that packages of any size can be read.
+ * <p>
+ * Reading starts at the package resource map, then follows the {@code ore:isDescribedBy} references of each document
+ * to the documents which are not read yet, breadth first. A document holding several resource maps is read once, and
+ * each of the aggregations described by its resource maps is handed to the handler. The syntax of a document is told
+ * by its extension, as it is by {@link ResourceMapUtil#loadRDF}.
+ * </p>
+ * <p>
+ * A package is read from the directory of an exploded bag, from a zip archive, or from a tar archive, compressed or
+ * not. Documents are read from a zip archive in place. A tar archive cannot be read out of order, so it is read once
+ * when the reader is opened, and the files of the bag other than its payload, which hold the resource maps, are
+ * extracted to a temporary directory, which is deleted when the reader is closed.
+ * </p>
+ */
+public class ResourceMapReader implements Closeable {
+
+    private static Logger LOG = LoggerFactory.getLogger(ResourceMapReader.class);
+
+    /* Name of the bag-info.txt field which holds the uri of the package resource map */
+    private static final String PKG_ORE_REM = "PKG-ORE-REM";
+
+    private static final String BAG_INFO = "bag-info.txt";
+
+    private static final String PAYLOAD_DIR = "data/";
+
+    /**
+     * Receives the aggregations read from the resource maps of a package.
+     */
+    public interface Handler {
+
+        /**
+         * Called for each aggregation described by a resource map of the package.
+         *
+         * @param aggregation the aggregation
+         * @throws PackageException to stop reading the package
+         */
+        void aggregation(Aggregation aggregation) throws PackageException;
+    }
+
+    /**
+     * The statements made about a resource in a resource map. Literal objects are properties, resource objects are
+     * relationships, and the statements made about blank node objects are property groups. Properties, relationships
+     * and property groups are keyed by the uri of their predicate.
+     */
+    public static class Description {
+
+        private final URI uri;
+
+        private final Map<String, List<String>> properties = new LinkedHashMap<>();
+
+        private final Map<String, List<Map<String, List<String>>>> propertyGroups = new LinkedHashMap<>();
+
+        private final Map<String, List<URI>> relationships = new LinkedHashMap<>();
+
+        Description(URI uri) {
+            this.uri = uri;
+        }
+
+        public URI getUri() {
+            return uri;
+        }
+
+        /**
+         * @return the lexical forms of the literal objects of the resource, by predicate
+         */
+        public Map<String, List<String>> getProperties() {
+            return properties;
+        }
+
+        /**
+         * @return the properties of the blank node objects of the resource, by predicate. The properties of a group
+         * hold the lexical forms of literals and the uris of resources alike.
+         */
+        public Map<String, List<Map<String, List<String>>>> getPropertyGroups() {
+            return propertyGroups;
+        }
+
+        /**
+         * @return the resource objects of the resource, by predicate
+         */
+        public Map<String, List<URI>> getRelationships() {
+            return relationships;
+        }
+    }
+
+    /**
+     * An aggregation described by a resource map. Its types are not among its relationships, and neither are the
+     * files it aggregates: aggregated resources which are not themselves described by a resource map.
+     */
+    public static class Aggregation extends Description {
+
+        private final URI remUri;
+
+        private final Set<URI> types = new LinkedHashSet<>();
+
+        private final List<Description> files = new ArrayList<>();
+
+        Aggregation(URI uri, URI remUri) {
+            super(uri);
+            this.remUri = remUri;
+        }
+
+        /**
+         * @return the uri of the resource map describing the aggregation
+         */
+        public URI getRemUri() {
+            return remUri;
+        }
+
+        /**
+         * @return the types of the aggregation, including {@code ore:Aggregation}
+         */
+        public Set<URI> getTypes() {
+            return types;
+        }
+
+        /**
+         * @return the files aggregated by the aggregation, with what the resource map says about them
+         */
+        public List<Description> getFiles() {
+            return files;
+        }
+    }
+
+    /* Where the documents of a package are read from, by path relative to the directory holding the bag */
+    private interface Source extends Closeable {
+
+        InputStream open(String path) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private final Source source;
+
+    private final String bagName;
+
+    private ResourceMapReader(Source source, String bagName) {
+        this.source = source;
+        this.bagName = bagName;
+    }
+
+    /**
+     * Opens a package for reading.
+     *
+     * @param pkg the directory of an exploded bag, or a zip or tar archive holding a bag
+     * @return a reader of the package, which must be closed
+     * @throws PackageException if the package cannot be opened
+     */
+    public static ResourceMapReader open(File pkg) throws PackageException {
+        if (pkg.isDirectory()) {
+            File baseDir = pkg.getAbsoluteFile().getParentFile();
+            return new ResourceMapReader(path -> new FileInputStream(new File(baseDir, path)), pkg.getName());
+        }
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(pkg))) {
+            String format = ArchiveStreamFactory.detect(in);
+            if (ArchiveStreamFactory.ZIP.equals(format)) {
+                return openZip(pkg);
+            }
+        } catch (ArchiveException e) {
+            /* Not an archive, unless it is a compressed one */
+        } catch (IOException e) {
+            throw new PackageException("Error opening package: " + pkg, e);
+        }
+
+        return openTar(pkg);
+    }
+
+    private static ResourceMapReader openZip(File pkg) throws PackageException {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(pkg);
+        } catch (IOException e) {
+            throw new PackageException("Error opening package: " + pkg, e);
+        }
+
+        String bagName = null;
+        for (Enumeration<ZipArchiveEntry> entries = zip.getEntries(); entries.hasMoreElements(); ) {
+            String name = entries.nextElement().getName();
+            if (name.endsWith("/" + BAG_INFO) && name.indexOf('/') == name.length() - BAG_INFO.length() - 1) {
+                bagName = name.substring(0, name.indexOf('/'));
+                break;
+            }
+        }
+
+        return new ResourceMapReader(new Source() {
+            @Override
+            public InputStream open(String path) throws IOException {
+                ZipArchiveEntry entry = zip.getEntry(path);
+                if (entry == null) {
+                    throw new FileNotFoundException(path);
+                }
+                return zip.getInputStream(entry);
+            }
+
+            @Override
+            public void close() throws IOException {
+                zip.close();
+            }
+        }, bagName);
+    }
+
+    private static ResourceMapReader openTar(File pkg) throws PackageException {
+        Path extracted;
+        try {
+            extracted = Files.createTempDirectory("rem-reader");
+        } catch (IOException e) {
+            throw new PackageException("Error creating temporary directory for package: " + pkg, e);
+        }
+        File baseDir = extracted.toFile();
+
+        String bagName = null;
+        try (InputStream in = decompressed(new BufferedInputStream(new FileInputStream(pkg)));
+             TarArchiveInputStream tar = new TarArchiveInputStream(in)) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                String name = entry.getName();
+                int bagDir = name.indexOf('/');
+                if (!entry.isFile() || bagDir < 0 || name.startsWith(PAYLOAD_DIR, bagDir + 1)) {
+                    continue;
+                }
+
+                Path file = extracted.resolve(name).normalize();
+                if (!file.startsWith(extracted)) {
+                    throw new PackageException("Package entry outside of the package: " + name);
+                }
+                if (name.length() == bagDir + 1 + BAG_INFO.length() && name.endsWith(BAG_INFO)) {
+                    bagName = name.substring(0, bagDir);
+                }
+
+                Files.createDirectories(file.getParent());
+                Files.copy(tar, file);
+            }
+        } catch (IOException | CompressorException | PackageException e) {
+            FileUtils.deleteQuietly(baseDir);
+            if (e instanceof PackageException) {
+                throw (PackageException) e;
+            }
+            throw new PackageException("Error reading package: " + pkg, e);
+        }
+
+        return new ResourceMapReader(new Source() {
+            @Override
+            public InputStream open(String path) throws IOException {
+                return new FileInputStream(new File(baseDir, path));
+            }
+
+            @Override
+            public void close() throws IOException {
+                FileUtils.deleteDirectory(baseDir);
+            }
+        }, bagName);
+    }
+
+    /* Decompresses the stream if it is compressed */
+    private static InputStream decompressed(InputStream in) throws CompressorException {
+        try {
+            CompressorStreamFactory.detect(in);
+        } catch (CompressorException e) {
+            return in;
+        }
+        return new CompressorStreamFactory().createCompressorInputStream(in);
+    }
+
+    /**
+     * Returns the uri of the package resource map, as recorded in the bag-info.txt file of the package.
+     *
+     * @return the uri of the package resource map, or null if the package does not record it
+     * @throws PackageException if bag-info.txt cannot be read
+     */
+    public URI getPackageRemUri() throws PackageException {
+        if (bagName == null) {
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(source.open(bagName + "/" + BAG_INFO), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(PKG_ORE_REM + ":")) {
+                    return new URI(line.substring(PKG_ORE_REM.length() + 1).trim());
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | URISyntaxException e) {
+            throw new PackageException("Error reading " + BAG_INFO + " of package " + bagName, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the resource maps of the package, starting at the package resource map recorded in its bag-info.txt.
+     *
+     * @param handler the handler of the aggregations of the package
+     * @throws PackageException if the package does not record its resource map, or a resource map cannot be read
+     */
+    public void read(Handler handler) throws PackageException {
+        URI remUri = getPackageRemUri();
+        if (remUri == null) {
+            throw new PackageException("No " + PKG_ORE_REM + " in " + BAG_INFO + " of package " + bagName);
+        }
+        read(remUri, handler);
+    }
+
+    /**
+     * Reads the resource maps of the package, starting at the given resource map.
+     *
+     * @param resourceMapUri the uri of the package resource map, e.g. {@code file:///my-bag/ORE-REM/rem.xml}
+     * @param handler the handler of the aggregations of the package
+     * @throws PackageException if a resource map cannot be read
+     */
+    public void read(URI resourceMapUri, Handler handler) throws PackageException {
+        Set<String> readDocuments = new HashSet<>();
+        Queue<String> documents = new ArrayDeque<>();
+        String first = documentOf(resourceMapUri.toString());
+        readDocuments.add(first);
+        documents.add(first);
+
+        while (!documents.isEmpty()) {
+            String document = documents.remove();
+            Model model = load(document, document.equals(first));
+
+            StmtIterator sItr = model.listStatements(null, ResourceMapConstants.DESCRIBES_PROPERTY, (RDFNode) null);
+            while (sItr.hasNext()) {
+                Statement describes = sItr.next();
+                if (describes.getObject().isURIResource()) {
+                    handler.aggregation(aggregation(describes.getSubject(), describes.getResource()));
+                }
+            }
+
+            /* Documents that are objects of ore:isDescribedBy predicates are read in turn */
+            sItr = model.listStatements(null, ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY, (RDFNode) null);
+            while (sItr.hasNext()) {
+                String next = documentOf(sItr.next().getObject().toString());
+                if (readDocuments.add(next)) {
+                    documents.add(next);
+                }
+            }
+
+            model.close();
+        }
+    }
+
+    /* Parses the document at the given uri. The package resource map is read leniently, as loadRems reads it. */
+    private Model load(String document, boolean packageRem) throws PackageException {
+        LOG.debug("Reading ReM file {}", document);
+
+        String path;
+        try {
+            URI uri = new URI(document);
+            if (!"file".equals(uri.getScheme())) {
+                throw new PackageException("Resource map is not in the package: " + document);
+            }
+            path = (uri.getHost() == null ? "" : uri.getHost()) + uri.getPath();
+        } catch (URISyntaxException e) {
+            throw new PackageException("Resource map uri invalid: " + document, e);
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+
+        /* The uri comes from the package being read, so it must not lead out of it */
+        try {
+            Path normalized = Paths.get(path).normalize();
+            if (normalized.isAbsolute() || normalized.startsWith("..") || normalized.toString().isEmpty()) {
+                throw new PackageException("Resource map outside of the package: " + document);
+            }
+            path = normalized.toString().replace(File.separatorChar, '/');
+        } catch (InvalidPathException e) {
+            throw new PackageException("Resource map uri invalid: " + document, e);
+        }
+
+        Model model = ModelFactory.createDefaultModel();
+        Lang lang = RDFLanguages.filenameToLang(path, RDFLanguages.RDFXML);
+
+        try (InputStream in = new BufferedInputStream(source.open(path))) {
+            if (RDFLanguages.RDFXML.equals(lang)) {
+                RDFReader reader = model.getReader();
+                if (!packageRem) {
+                    reader.setProperty(ResourceMapConstants.JENA_ERROR_MODE_URI,
+                                       ResourceMapConstants.JENA_ERROR_MODE_STRICT);
+                }
+                reader.read(model, in, document);
+            } else {
+                RDFDataMgr.read(model, in, document, lang);
+            }
+        } catch (Exception e) {
+            throw new PackageException("Error reading resource map: " + document, e);
+        }
+
+        return model;
+    }
+
+    private static Aggregation aggregation(Resource rem, Resource resource) throws PackageException {
+        Aggregation aggregation = new Aggregation(uri(resource), uri(rem));
+
+        StmtIterator sItr = resource.listProperties();
+        while (sItr.hasNext()) {
+            Statement s = sItr.next();
+            RDFNode object = s.getObject();
+
+            if (s.getPredicate().equals(RDF.type) && object.isURIResource()) {
+                aggregation.types.add(uri(object.asResource()));
+            } else if (s.getPredicate().equals(ResourceMapConstants.AGGREGATES_PROPERTY) && object.isURIResource()
+                    && isFile(object.asResource())) {
+                aggregation.files.add(describe(new Description(uri(object.asResource())), object.asResource()));
+            } else {
+                add(aggregation, s);
+            }
+        }
+
+        return aggregation;
+    }
+
+    /* A resource is a file unless it is an aggregation described by a resource map of its own */
+    private static boolean isFile(Resource resource) {
+        return !resource.hasProperty(ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY)
+                && !resource.getModel().contains(null, ResourceMapConstants.DESCRIBES_PROPERTY, resource);
+    }
+
+    private static Description describe(Description description, Resource resource) throws PackageException {
+        StmtIterator sItr = resource.listProperties();
+        while (sItr.hasNext()) {
+            add(description, sItr.next());
+        }
+        return description;
+    }
+
+    private static void add(Description description, Statement s) throws PackageException {
+        String predicate = s.getPredicate().getURI();
+        RDFNode object = s.getObject();
+
+        if (object.isLiteral()) {
+            description.properties.computeIfAbsent(predicate, p -> new ArrayList<>())
+                    .add(object.asLiteral().getLexicalForm());
+        } else if (object.isURIResource()) {
+            description.relationships.computeIfAbsent(predicate, p -> new ArrayList<>())
+                    .add(uri(object.asResource()));
+        } else {
+            Map<String, List<String>> group = new LinkedHashMap<>();
+            StmtIterator gItr = object.asResource().listProperties();
+            while (gItr.hasNext()) {
+                Statement g = gItr.next();
+                RDFNode value = g.getObject();
+                group.computeIfAbsent(g.getPredicate().getURI(), p -> new ArrayList<>())
+                        .add(value.isLiteral() ? value.asLiteral().getLexicalForm() : value.toString());
+            }
+            description.propertyGroups.computeIfAbsent(predicate, p -> new ArrayList<>())
+                    .add(Collections.unmodifiableMap(group));
+        }
+    }
+
+    private static URI uri(Resource resource) throws PackageException {
+        try {
+            return new URI(resource.getURI());
+        } catch (URISyntaxException e) {
+            throw new PackageException("Invalid uri in resource map: " + resource.getURI(), e);
+        }
+    }
+
+    /* ReMs may share a document, in which case they are named by fragments of its URI */
+    private static String documentOf(String rdfUri) {
+        int fragment = rdfUri.indexOf('#');
+        return fragment < 0 ? rdfUri : rdfUri.substring(0, fragment);
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -16,6 +16,9 @@
 package org.dataconservancy.packaging.shared;
 
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,8 +27,13 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ResourceMapUtil {
 
@@ -37,6 +45,11 @@ public class ResourceMapUtil {
      * If the given rdf uri has a file scheme, it is treated as relative to the
      * base directory.
      * 
+     * The syntax of the RDF is told by the extension of the uri: .ttl for
+     * Turtle, .nt for N-Triples and .trdf or .rt for RDF Thrift. RDF in any of
+     * these is read by Jena's own parser for it rather than by the given reader,
+     * which is used for RDF/XML, the syntax of any other extension.
+     * 
      * @param reader  the reader to be used
      * @param model the model to be used
      * @param base_dir the base directory
@@ -61,8 +74,14 @@ public class ResourceMapUtil {
             throw new PackageException("Error creating resource map url: " + uri, e);
         }
 
+        Lang lang = RDFLanguages.filenameToLang(uri.getPath(), RDFLanguages.RDFXML);
+
         try {
-            reader.read(model, url.toString());
+            if (RDFLanguages.RDFXML.equals(lang)) {
+                reader.read(model, url.toString());
+            } else {
+                RDFDataMgr.read(model, url.toString(), lang);
+            }
         } catch (Exception e) {
             throw new PackageException("Error reading resource map url: " + url, e);
         }
@@ -97,8 +116,8 @@ public class ResourceMapUtil {
     /**
      * Loads all of the resource maps and returns a unified Model of their contents.  This method starts by loading the
      * resource map located at {@code resourceMapUri} (resolved against {@code baseDir}).  Then, every resource
-     * referenced by the {@code &lt;ore:isDescribedBy rdf:resource="file:///...."/>} predicate is resolved and loaded
-     * recursively.
+     * referenced by the {@code &lt;ore:isDescribedBy rdf:resource="file:///...."/>} predicate is resolved and loaded,
+     * breadth first, parsing as many resource maps at once as there are processors.
      * <p>
      * If a package named {@code my-bag.tar.gz} is unpacked to {@code /storage/bags/my-bag}, then the base directory
      * parameter should be {@code /storage/bags}.  If the resource map is located at
@@ -111,48 +130,103 @@ public class ResourceMapUtil {
      * @throws PackageException
      */
     public static Model loadRems(URI resourceMapUri, File baseDir) throws PackageException {
-        List<String> loadedRems = new ArrayList<>();
-        loadedRems.add(resourceMapUri.toString());
+        return loadRems(resourceMapUri, baseDir, Runtime.getRuntime().availableProcessors());
+    }
 
+    /**
+     * Loads all of the resource maps and returns a unified Model of their contents, as
+     * {@link #loadRems(URI, File)} does, parsing up to the given number of resource maps at once.
+     * <p>
+     * Each resource map is parsed into a model of its own on one of the loading threads, then added to the unified
+     * model by the calling thread, which also follows the {@code ore:isDescribedBy} references of the resource map
+     * to the documents which are not loaded yet. Every document is loaded once, however many resource maps it holds.
+     * </p>
+     *
+     * @param resourceMapUri the resource map URI of the package
+     * @param baseDir the base directory of the package in the file system
+     * @param threads the number of resource maps parsed at once
+     * @return a unified Model, composed of all of the ORE resource maps in the package
+     * @throws PackageException
+     */
+    public static Model loadRems(URI resourceMapUri, File baseDir, int threads) throws PackageException {
         Model m = ModelFactory.createDefaultModel();
-        ResourceMapUtil.loadRDF(m.getReader(), m, baseDir, resourceMapUri.toString());
-        LOG.debug("Loaded ReM file {}", resourceMapUri);
-        m = load(m, baseDir, loadedRems);
+        Set<String> loadedRems = new HashSet<>();
+        loadedRems.add(documentOf(resourceMapUri.toString()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "rem-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<Model> loads = new ExecutorCompletionService<>(executor);
+            loads.submit(() -> {
+                Model loaded = ModelFactory.createDefaultModel();
+                ResourceMapUtil.loadRDF(loaded.getReader(), loaded, baseDir, resourceMapUri.toString());
+                LOG.debug("Loaded ReM file {}", resourceMapUri);
+                return loaded;
+            });
+            int pending = 1;
+
+            while (pending > 0) {
+                Model loaded = take(loads);
+                pending--;
+                m.add(loaded);
+
+                /* Resources that are objects of ore:isDescribedBy predicates are loaded in turn */
+                StmtIterator sItr = loaded.listStatements(null, ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY,
+                                                          (RDFNode) null);
+                while (sItr.hasNext()) {
+                    final String rdfUri = sItr.next().getObject().toString();
+                    if (!loadedRems.add(documentOf(rdfUri))) {
+                        LOG.trace("Already loaded ReM from {}", rdfUri);
+                        continue;
+                    }
+                    loads.submit(() -> load(baseDir, rdfUri));
+                    pending++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
         return m;
     }
 
     /**
-     * Recursively loads all resources into a unified Model.  Resources that are objects of
-     * {@code &lt;ore:isDescribedBy.../>} predicates are parsed and loaded.
+     * Loads the resource map at the given uri into a Model of its own.
      *
-     * @param m the model
      * @param baseDir the base directory against which resources are resolved
-     * @param loadedRems A list of files containing the rems loaded so far
+     * @param rdfUri the uri of the resource map
      * @throws PackageException
      */
-    private static Model load(Model m, File baseDir, List<String> loadedRems) throws PackageException {
-        Selector isDescribedBySelector =
-                new SimpleSelector(null, ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY, (Object) null);
-
-        StmtIterator sItr = m.listStatements(isDescribedBySelector);
-        while (sItr.hasNext()) {
-            final Statement stmt = sItr.next();
-            final String rdfUri = stmt.getObject().toString();
-            if (loadedRems.contains(rdfUri)) {
-                LOG.trace("Already loaded ReM from {}", rdfUri);
-                continue;
-            } else {
-                LOG.debug("Loading ReM file {}", rdfUri);
-            }
+    private static Model load(File baseDir, String rdfUri) throws PackageException {
+        LOG.debug("Loading ReM file {}", rdfUri);
+        Model loaded = ModelFactory.createDefaultModel();
+        RDFReader reader = loaded.getReader();
+        reader.setProperty(ResourceMapConstants.JENA_ERROR_MODE_URI, ResourceMapConstants.JENA_ERROR_MODE_STRICT);
+        ResourceMapUtil.loadRDF(reader, loaded, baseDir, rdfUri);
+        return loaded;
+    }
 
-            Model loaded = ModelFactory.createDefaultModel();
-            RDFReader reader = loaded.getReader();
-            reader.setProperty(ResourceMapConstants.JENA_ERROR_MODE_URI, ResourceMapConstants.JENA_ERROR_MODE_STRICT);
-            ResourceMapUtil.loadRDF(reader, loaded, baseDir, rdfUri);
-            loadedRems.add(rdfUri);
-            m = load(m.union(loaded), baseDir, loadedRems);
+    /* Waits for the next resource map to be loaded */
+    private static Model take(CompletionService<Model> loads) throws PackageException {
+        try {
+            return loads.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PackageException("Interrupted while loading resource maps", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PackageException) {
+                throw (PackageException) e.getCause();
+            }
+            throw new PackageException("Error loading resource maps", e.getCause());
         }
+    }
 
-        return m;
+    /* ReMs may share a document, in which case they are named by fragments of its URI */
+    private static String documentOf(String rdfUri) {
+        int fragment = rdfUri.indexOf('#');
+        return fragment < 0 ? rdfUri : rdfUri.substring(0, fragment);
     }
 }
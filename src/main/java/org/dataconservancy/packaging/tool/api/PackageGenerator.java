@@ -18,6 +18,8 @@ package org.dataconservancy.packaging.tool.api;
 import org.dataconservancy.packaging.tool.model.PackageDescription;
 import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
 
+import java.util.concurrent.CompletionStage;
+
 /**
  * This is the format-specific package generator.
  * <p>
@@ -42,4 +44,32 @@ public interface PackageGenerator {
 	 */
 	public Package generatePackage(PackageDescription desc,
 								   PackageGenerationParameters params);
+
+	/**
+	 * Generate a package based upon the content specified in the
+	 * PackageDescription, unless generation is cancelled first.
+	 * <p>
+	 * Generation is cancelled by completing {@code cancellation}, normally or
+	 * exceptionally, from any thread. The generator then stops as soon as it
+	 * can, and fails. Completing it once the package has been generated has no
+	 * effect. Generators which do not support cancellation generate the package
+	 * in full, which is what this default implementation does.
+	 * </p>
+	 *
+	 * @param desc
+	 *            PackageDescription containing the content.
+	 * @param params
+	 *            User-selected Package Generation preferences, may also contain
+	 *            ref to format-specific preferences/configuration.
+	 * @param cancellation
+	 *            completed to cancel generation.
+	 * @throws RuntimeException
+	 *             if there is a problem generating the package, or generation
+	 *             was cancelled.
+	 */
+	public default Package generatePackage(PackageDescription desc,
+										   PackageGenerationParameters params,
+										   CompletionStage<?> cancellation) {
+		return generatePackage(desc, params);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.api.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
+
+/**
+ * A {@link PackageAssembler} which can write the content of resources asynchronously.
+ * <p>
+ * This allows a {@link PackageModelBuilder} to keep building the package model while the content of the resources it
+ * has already named is being written. Writes are performed on a bounded pool of threads; once as many writes as the
+ * assembler allows are pending, submitting another one blocks until one of them completes.
+ * </p>
+ * <p>
+ * {@link #assemblePackage()} waits for all pending writes to complete before assembling the package, and fails if any
+ * of them failed. If the package is not going to be assembled, e.g. because building its model failed,
+ * {@link #cancel()} must be called instead, so that the pending writes and the threads performing them are stopped.
+ * </p>
+ */
+public interface AsyncPackageAssembler extends PackageAssembler {
+
+    /**
+     * Asynchronously commit new content to a previously reserved resource.
+     * <p>
+     * This is the asynchronous counterpart of {@link #putResource(URI, InputStream)}. The content stream is read,
+     * then closed, on a thread of the assembler; the caller must not use it after calling this method.
+     * </p>
+     *
+     * @param uri
+     *        URI naming the resource whose content is to be set, as obtained from
+     *        {@link #reserveResource(String, PackageResourceType)}.
+     * @param content
+     *        InputStream containing the content of the resource.
+     * @return a future completed with the URI of the resource once its content has been written, or completed
+     *         exceptionally if it could not be written.
+     */
+    CompletableFuture<URI> putResourceAsync(URI uri, InputStream content);
+
+    /**
+     * Asynchronously commit the content of a file to a previously reserved resource.
+     * <p>
+     * Given the file itself, rather than a stream over it, the assembler may add the file to the package without
+     * reading it, e.g. by linking to it. The default implementation opens the file, and commits its content through
+     * {@link #putResourceAsync(URI, InputStream)}.
+     * </p>
+     *
+     * @param uri
+     *        URI naming the resource whose content is to be set, as obtained from
+     *        {@link #reserveResource(String, PackageResourceType)}.
+     * @param content
+     *        File holding the content of the resource.
+     * @return a future completed with the URI of the resource once its content has been written, or completed
+     *         exceptionally if it could not be written.
+     */
+    default CompletableFuture<URI> putResourceAsync(URI uri, File content) {
+        try {
+            return putResourceAsync(uri, new FileInputStream(content));
+        } catch (FileNotFoundException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e);
+        }
+    }
+
+    /**
+     * Cancels the assembly of the package.
+     * <p>
+     * Pending writes are cancelled, the threads performing them are stopped, and any other resource held by the
+     * assembler is released. Afterwards, writing a resource or assembling the package fails. This method may be called
+     * from any thread, at any time; calling it after the package has been assembled, or more than once, has no
+     * effect on the package.
+     * </p>
+     */
+    void cancel();
+}
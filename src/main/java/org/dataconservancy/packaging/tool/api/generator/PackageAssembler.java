@@ -17,8 +17,17 @@
 package org.dataconservancy.packaging.tool.api.generator;
 
 import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 
 /**
@@ -85,6 +94,41 @@ public interface PackageAssembler {
      **/
     void putResource(URI uri, InputStream content);
 
+    /**
+     * Open a stream for writing the content of a previously reserved resource.
+     * <p>
+     * This is the counterpart of {@link #putResource(URI, InputStream)} for
+     * content which is produced by the caller, e.g. serialized metadata: the
+     * content is written into the resource as it is produced, rather than
+     * held in memory until it can be read from a stream. The content of the
+     * resource is committed when the stream is closed.
+     * </p>
+     * <p>
+     * The default implementation holds the content in memory, and commits it
+     * through {@link #putResource(URI, InputStream)}. Assemblers able to write
+     * the content of a resource as it is produced should override it.
+     * </p>
+     *
+     * @param uri
+     *        URI naming the resource whose content is to be set, as obtained
+     *        from {@link #reserveResource(String, PackageResourceType)}.
+     * @return an OutputStream the content of the resource is written to.
+     */
+    default OutputStream openResource(URI uri) {
+        return new ByteArrayOutputStream() {
+
+            private boolean closed = false;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    putResource(uri, new ByteArrayInputStream(buf, 0, count));
+                }
+            }
+        };
+    }
+
     /**
      * Create a new resource in the package.
      * <p>
@@ -104,6 +148,40 @@ public interface PackageAssembler {
                        PackageResourceType type,
                        InputStream content);
 
+    /**
+     * Create a new resource in the package from the content of a file.
+     * <p>
+     * This is the counterpart of
+     * {@link #createResource(String, PackageResourceType, InputStream)} for
+     * content held in a file: given the file itself, an assembler may add it
+     * to the package without reading it, e.g. by linking to it.
+     * </p>
+     * <p>
+     * The default implementation reads the file, and creates the resource
+     * through {@link #createResource(String, PackageResourceType, InputStream)}.
+     * </p>
+     *
+     * @param path
+     *        Logical file path (including filename) of the resource relative to
+     *        the package.
+     * @param type
+     *        Resource type (e.g. data, metadata, etc).
+     * @param content
+     *        File holding the content of the resource.
+     * @return the URI naming the resource
+     */
+    default URI createResource(String path,
+                               PackageResourceType type,
+                               File content) {
+        try (InputStream in = new FileInputStream(content)) {
+            return createResource(path, type, in);
+        } catch (FileNotFoundException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e);
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e);
+        }
+    }
+
     /**
      * Produce a {@code Package} object based on the added resources.
      * <p>
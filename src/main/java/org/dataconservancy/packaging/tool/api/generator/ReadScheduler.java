@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.api.generator;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides the order in which a set of files is read.
+ * <p>
+ * Payload files are named in the order a {@link PackageModelBuilder} walks the package description, which bears no
+ * relation to where the files are stored. On storage where the cost of a read depends on the position of the previous
+ * one (disks, tapes, hierarchical storage), reading them in an order which follows their layout instead avoids most of
+ * that cost. Schedulers only order reads: the content and layout of the package does not depend on them.
+ * </p>
+ * <p>
+ * Implementations must have a public no-argument constructor, so that they can be named by the
+ * {@link org.dataconservancy.packaging.tool.model.GeneralParameterNames#PAYLOAD_READ_ORDER} parameter.
+ * </p>
+ */
+public interface ReadScheduler {
+
+    /**
+     * Orders files for reading.
+     *
+     * @param files
+     *        the files to be read, which all exist when the scheduler is called.
+     * @return the same files, in the order they are to be read in.
+     */
+    List<File> schedule(Collection<File> files);
+}
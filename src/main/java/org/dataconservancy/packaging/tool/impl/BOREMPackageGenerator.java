@@ -25,6 +25,8 @@ import org.dataconservancy.packaging.tool.impl.generator.PackageModelBuilderFact
 import org.dataconservancy.packaging.tool.model.*;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * <p>Bagit + ORE ReM package generator.</p>
@@ -66,6 +68,19 @@ public class BOREMPackageGenerator implements PackageGenerator {
      */
     @Override
 	public Package generatePackage(PackageDescription desc, PackageGenerationParameters params) {
+        return generatePackage(desc, params, new CompletableFuture<>());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cancelling generation cancels the assembly of the package: pending writes are stopped, and building the package
+     * model or assembling the package fails at its next step.
+     * </p>
+     */
+    @Override
+    public Package generatePackage(PackageDescription desc, PackageGenerationParameters params,
+                                   CompletionStage<?> cancellation) {
         //check for format
         String formatId = params.getParam(GeneralParameterNames.PACKAGE_FORMAT_ID, 0);
 
@@ -92,13 +107,20 @@ public class BOREMPackageGenerator implements PackageGenerator {
                         "an instance of PackageModelBuilder for format " + formatId + ". One may not exist. ");
             }
 
-            builder.buildModel(desc, assembler);
+            cancellation.whenComplete((result, failure) -> assembler.cancel());
+            try {
+                builder.buildModel(desc, assembler);
 
-            URI packageRemURI = builder.getPackageRemURI();
+                URI packageRemURI = builder.getPackageRemURI();
 
-            assembler.addParameter(BoremParameterNames.PKG_ORE_REM, packageRemURI.toString());
+                assembler.addParameter(BoremParameterNames.PKG_ORE_REM, packageRemURI.toString());
 
-            return assembler.assemblePackage();
+                return assembler.assemblePackage();
+            } catch (RuntimeException | Error e) {
+                //stop the writes still pending, which would otherwise be left running
+                assembler.cancel();
+                throw e;
+            }
 
         } catch (IllegalAccessException | InstantiationException e) {
             throw new PackageToolException(PackagingToolReturnInfo.PKG_OBJECT_INSTANTIATION_EXP, e);
@@ -16,6 +16,11 @@
 package org.dataconservancy.packaging.tool.impl;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.dataconservancy.packaging.tool.model.*;
 import org.springframework.beans.factory.annotation.Required;
@@ -41,6 +46,9 @@ import org.dataconservancy.packaging.validation.PackageValidationException;
  * <dt>{@link GeneralParameterNames#VALIDATE_PACKAGE_DESCRIPTION}</dt>
  * <dd>If "True", the PackageDescription will be pre-validated before the
  * generator is run, if "False", it will not.</dd>
+ * <dt>{@link GeneralParameterNames#PIPELINED_GENERATION}</dt>
+ * <dd>If "True", the PackageDescription is validated while the generator
+ * runs, and generation is cancelled once validation fails.</dd>
  * <dt>{@link GeneralParameterNames#PACKAGE_FORMAT_ID}</dt>
  * <dd>ID of the packaging format that shall be generated. An exception will be
  * thrown if there are no configured generators that produce the desired
@@ -112,6 +120,11 @@ public class BasicPackageGenerationService implements PackageGenerationService {
 			validate = Boolean.valueOf(validateParam);
 		}
 
+		if (validate && params != null
+				&& Boolean.valueOf(params.getParam(GeneralParameterNames.PIPELINED_GENERATION, 0))) {
+			return generateWhileValidating(generator, desc, params);
+		}
+
 		if (validate) {
 			try {
 				validator.validate(desc);
@@ -124,6 +137,75 @@ public class BasicPackageGenerationService implements PackageGenerationService {
         return generator.generatePackage(desc, params);
 	}
 
+	/*
+	 * Validates the description on another thread while the package is
+	 * generated. If the description is invalid, generation is cancelled and
+	 * fails with the validation failure, whether the generator failed or not,
+	 * and the package it generated, if any, is cleaned up.
+	 */
+	private Package generateWhileValidating(PackageGenerator generator,
+			PackageDescription desc, PackageGenerationParameters params) {
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "package-description-validator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletableFuture<Void> cancellation = new CompletableFuture<>();
+		Future<?> validation = executor.submit(() -> {
+			try {
+				validator.validate(desc);
+			} catch (Exception | Error e) {
+				//stop generating a package which is going to be discarded
+				cancellation.complete(null);
+				throw e;
+			}
+			return null;
+		});
+		executor.shutdown();
+
+		Package pkg;
+		try {
+			pkg = generator.generatePackage(desc, params, cancellation);
+		} catch (RuntimeException e) {
+			try {
+				awaitValidation(validation);
+			} catch (RuntimeException validationFailure) {
+				validationFailure.addSuppressed(e);
+				throw validationFailure;
+			}
+			throw e;
+		}
+
+		try {
+			awaitValidation(validation);
+		} catch (RuntimeException e) {
+			if (pkg != null) {
+				pkg.cleanupPackage();
+			}
+			throw e;
+		}
+		return pkg;
+	}
+
+	private void awaitValidation(Future<?> validation) {
+		try {
+			validation.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PackageToolException(
+					PackagingToolReturnInfo.PKG_VALIDATION_FAIL, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof PackageValidationException) {
+				throw new PackageToolException(
+						PackagingToolReturnInfo.PKG_VALIDATION_FAIL, (PackageValidationException) e.getCause());
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw (Error) e.getCause();
+		}
+	}
+
 	private PackageGenerator getGenerator(PackagingFormat fmt) {
 
 		if (!generatorMap.containsKey(fmt)) {
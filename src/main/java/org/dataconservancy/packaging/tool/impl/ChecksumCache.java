@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of file checksums, which lets files that have not changed since they were last checksummed be
+ * checksummed without being read.
+ * <p>
+ * A checksum is cached under the canonical path of the file it was computed for and the algorithm, along with the
+ * identity of the file when it was computed: its size, modification time and file key (e.g. device and inode numbers).
+ * A change to any of them invalidates the cached checksum. As modification times have a limited resolution, a file
+ * modified shortly after being checksummed could keep the same identity; files modified less than the minimum age ago
+ * are therefore always read, and their checksums are not cached.
+ * </p>
+ * <p>
+ * The cache is stored in a local file, to which checksums are appended as they are computed. Several caches, possibly
+ * in different processes, may share the same file. A checksum appended later replaces the one cached for the same path
+ * and algorithm; the file is compacted when it is opened if most of its lines have been replaced, or are for files
+ * which no longer exist.
+ * </p>
+ */
+public class ChecksumCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ChecksumCache.class);
+
+    private final File cacheFile;
+    private final long minAgeMillis;
+    private final Map<String, CachedChecksum> checksums = new ConcurrentHashMap<>();
+    private OutputStream out;
+
+    /**
+     * Opens a checksum cache, creating its file if it does not exist.
+     * @param cacheFile the file the cache is stored in
+     * @param minAgeMillis minimum time since their last modification for files to be cached, in milliseconds
+     * @throws IOException if the cache file could not be read or created
+     */
+    public ChecksumCache(File cacheFile, long minAgeMillis) throws IOException {
+        this.cacheFile = cacheFile;
+        this.minAgeMillis = minAgeMillis;
+        int lineCount = 0;
+        if (cacheFile.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    //path, size, modification time, file key, algorithm and checksum
+                    String[] fields = line.split("\t");
+                    if (fields.length == 6) {
+                        checksums.put(fields[0] + "\t" + fields[4],
+                                new CachedChecksum(fields[1] + "\t" + fields[2] + "\t" + fields[3], fields[5]));
+                        lineCount++;
+                    }
+                }
+            }
+        } else if (cacheFile.getParentFile() != null) {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+        }
+
+        //compact the cache file when most of it holds checksums of files which have since changed or been removed
+        if (lineCount > 2 * checksums.size()) {
+            log.info("Compacting checksum cache " + cacheFile);
+            checksums.keySet().removeIf(key -> !new File(key.substring(0, key.lastIndexOf('\t'))).exists());
+            File compactedFile = new File(cacheFile.getPath() + ".tmp");
+            try (OutputStream compacted = new FileOutputStream(compactedFile)) {
+                for (Map.Entry<String, CachedChecksum> checksum : checksums.entrySet()) {
+                    compacted.write(toLine(checksum.getKey(), checksum.getValue()));
+                }
+            }
+            Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        out = new FileOutputStream(cacheFile, true);
+    }
+
+    /**
+     * Looks up the cached checksums of a file.
+     * @param file the file
+     * @param algorithms the checksum algorithms
+     * @return the cached checksum values, keyed by algorithm. Algorithms without a cached checksum are absent.
+     * @throws IOException if the attributes of the file could not be read
+     */
+    public Map<String, String> get(File file, Collection<String> algorithms) throws IOException {
+        Map<String, String> cached = new HashMap<>();
+        String identity = getIdentity(file);
+        if (identity != null) {
+            String path = getPath(file);
+            for (String algorithm : algorithms) {
+                CachedChecksum checksum = checksums.get(path + "\t" + algorithm);
+                if (checksum != null && checksum.identity.equals(identity)) {
+                    cached.put(algorithm, checksum.value);
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Caches the checksums of a file, unless it has been modified less than the minimum age ago.
+     * @param file the file
+     * @param values the checksum values, keyed by algorithm
+     * @throws IOException if the attributes of the file could not be read, or the cache could not be written
+     */
+    public void put(File file, Map<String, String> values) throws IOException {
+        String identity = getIdentity(file);
+        if (identity == null) {
+            return;
+        }
+        String path = getPath(file);
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            String key = path + "\t" + value.getKey();
+            CachedChecksum checksum = new CachedChecksum(identity, value.getValue());
+            if (!checksum.equals(checksums.put(key, checksum))) {
+                write(toLine(key, checksum));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Each line is written at once to the end of the file, so that lines appended by other processes sharing the
+     * file are not interleaved with it.
+     */
+    private synchronized void write(byte[] line) throws IOException {
+        if (out == null) {
+            throw new IOException("Checksum cache " + cacheFile + " is closed");
+        }
+        out.write(line);
+    }
+
+    /**
+     * @return the identity of the file, or null if it was modified less than the minimum age ago
+     */
+    private String getIdentity(File file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().to(TimeUnit.MILLISECONDS);
+        if (System.currentTimeMillis() - modified < minAgeMillis) {
+            return null;
+        }
+        Object fileKey = attributes.fileKey();
+        return attributes.size() + "\t" + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) + "\t"
+                + (fileKey != null ? fileKey.toString().replace('\t', ' ') : "-");
+    }
+
+    private static String getPath(File file) throws IOException {
+        return file.getCanonicalPath().replace('\t', ' ').replace('\n', ' ');
+    }
+
+    private static byte[] toLine(String key, CachedChecksum checksum) {
+        //the key is the path followed by the algorithm, the identity goes in between
+        int separator = key.lastIndexOf('\t');
+        return (key.substring(0, separator) + "\t" + checksum.identity + key.substring(separator) + "\t"
+                + checksum.value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A cached checksum, with the identity of the file it was computed for.
+     */
+    private static class CachedChecksum {
+        private final String identity;
+        private final String value;
+
+        private CachedChecksum(String identity, String value) {
+            this.identity = identity;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CachedChecksum)) {
+                return false;
+            }
+            CachedChecksum that = (CachedChecksum) o;
+            return identity.equals(that.identity) && value.equals(that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * identity.hashCode() + value.hashCode();
+        }
+    }
+}
@@ -140,24 +140,23 @@ public class DcsBoPackageOntologyServiceImpl implements PackageOntologyService {
          }
      }
 
-     private String getParentArtifactId(PackageArtifact artifact) throws PackageOntologyException {
-         String parent_rel = getAvailableRelationshipToParent(artifact.getAllRelationshipNamesOnArtifact(),
-                 DcsBoPackageOntology.relationshipsToParent);
-         
-         if (parent_rel == null) {
-             return null;
-         } else {
-             PackageRelationship relationship = artifact.getRelationshipByName(parent_rel);
-             
-             Set<String> parents = relationship.getTargets();
-             
-             if (parents.size() != 1) {
-                 throw new PackageOntologyException("Artifact can only have one parent: " + artifact);
-             }
+    /*
+     * Finds the relationship target designating the parent of an artifact of
+     * the graph, or returns -1 if it has no relationship to a parent.
+     */
+    private int getParentTarget(PackageArtifactGraph graph, int artifact) throws PackageOntologyException {
+        for (String relationshipToParent : DcsBoPackageOntology.relationshipsToParent) {
+            int relationship = graph.getRelationship(artifact, relationshipToParent);
+            if (relationship >= 0) {
+                if (graph.getTargetsEnd(relationship) - graph.getTargetsStart(relationship) != 1) {
+                    throw new PackageOntologyException("Artifact can only have one parent: " + graph.getArtifact(artifact));
+                }
 
-             return parents.iterator().next();
-         }
-     }     
+                return graph.getTargetsStart(relationship);
+            }
+        }
+        return -1;
+    }
 
     /**
      * Gets the available types for the given artifact, based on it's contextual location in the tree.
@@ -591,32 +590,41 @@ public class DcsBoPackageOntologyServiceImpl implements PackageOntologyService {
     public PackageTree buildPackageTree(PackageDescription packageDescription, File contentRoot) throws PackageOntologyException {
         PackageTree tree = new PackageTree();
         Map<String, PackageNode> nodemap = tree.getNodesMap();
+        PackageArtifactGraph graph;
+        try {
+            graph = PackageArtifactGraph.of(packageDescription);
+        } catch (IllegalArgumentException e) {
+            throw new PackageOntologyException(e.getMessage(), e);
+        }
+        PackageNode[] nodes = new PackageNode[graph.size()];
         
         // Create node for each PackageArtifact
         
-        for (PackageArtifact artifact: packageDescription.getPackageArtifacts()) {
-            nodemap.put(artifact.getId(), new PackageNode(artifact));
+        for (int index = 0; index < graph.size(); index++) {
+            nodes[index] = new PackageNode(graph.getArtifact(index));
+            nodemap.put(graph.getArtifact(index).getId(), nodes[index]);
         }
                 
         // Set node parents and children
         
-        for (PackageArtifact artifact: packageDescription.getPackageArtifacts()) {
-            String parent_id = getParentArtifactId(artifact);
+        for (int index = 0; index < graph.size(); index++) {
+            int parent_target = getParentTarget(graph, index);
             
-            if (parent_id == null) {
+            if (parent_target < 0) {
                 if (tree.getRoot() != null) {
-                    throw new PackageOntologyException("Only one root artifact allowed: " + artifact);
+                    throw new PackageOntologyException("Only one root artifact allowed: " + graph.getArtifact(index));
                 }
         
-                tree.setRoot(nodemap.get(artifact.getId()));
+                tree.setRoot(nodes[index]);
             } else {
-                PackageNode parent = nodemap.get(parent_id);
+                int parent_index = graph.getTarget(parent_target);
             
-                if (parent == null) {
-                    throw new PackageOntologyException("Could not find parent: " + parent_id);
+                if (parent_index < 0) {
+                    throw new PackageOntologyException("Could not find parent: " + graph.getTargetId(parent_target));
                 }
             
-                PackageNode node = nodemap.get(artifact.getId());            
+                PackageNode parent = nodes[parent_index];
+                PackageNode node = nodes[index];
                 node.setParentNode(parent);
                 parent.getChildrenNodes().add(node);
             }
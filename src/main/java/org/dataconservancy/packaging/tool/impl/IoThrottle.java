@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the bandwidth and the rate of operations of the I/O performed by a packaging job, so that it has a bounded
+ * impact on shared storage.
+ * <p>
+ * Both limits are token buckets holding up to one second worth of tokens, so short bursts are allowed while the
+ * average rate is capped. Every read or write call on a {@link #wrap(InputStream) wrapped stream} is one
+ * operation, and takes as many byte tokens as it transferred. An operation which finds a bucket empty delays the
+ * caller until the bucket has refilled. All streams throttled by an instance share its limits, whichever thread uses
+ * them.
+ * </p>
+ * <p>
+ * The limits can be changed at any time, including through JMX once the throttle is {@link #register(String)
+ * registered}.
+ * </p>
+ */
+public class IoThrottle implements IoThrottleMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IoThrottle.class);
+
+    private final Bucket bytes;
+
+    private final Bucket operations;
+
+    private long delayNanos;
+
+    private ObjectName objectName;
+
+    /**
+     * @param bytesPerSecond the maximum number of bytes read and written per second, 0 for no limit
+     * @param operationsPerSecond the maximum number of read and write operations per second, 0 for no limit
+     */
+    public IoThrottle(long bytesPerSecond, long operationsPerSecond) {
+        bytes = new Bucket(bytesPerSecond);
+        operations = new Bucket(operationsPerSecond);
+    }
+
+    /**
+     * Accounts for one operation transferring the given number of bytes, waiting as long as the limits require.
+     * @param byteCount the number of bytes transferred by the operation
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void acquire(long byteCount) throws InterruptedIOException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            waitNanos = Math.max(bytes.take(byteCount, now), operations.take(1, now));
+            delayNanos += waitNanos;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling I/O");
+            }
+        }
+    }
+
+    /**
+     * @param in a stream
+     * @return a stream reading from the given one within the limits of this throttle
+     */
+    public InputStream wrap(InputStream in) {
+        return new ThrottledInputStream(in);
+    }
+
+    /**
+     * @param out a stream
+     * @return a stream writing to the given one within the limits of this throttle
+     */
+    public OutputStream wrap(OutputStream out) {
+        return new ThrottledOutputStream(out);
+    }
+
+    /**
+     * Registers this throttle with the platform MBean server, so that its limits can be adjusted through JMX. Failing
+     * to register it is logged, and otherwise ignored.
+     * @param name the name of the job the throttle is used by, e.g. the package name
+     */
+    public synchronized void register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("org.dataconservancy.packaging:type=IoThrottle,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            log.warn("Could not register the I/O throttle of " + name + " with JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes this throttle from the platform MBean server, if it was registered.
+     */
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.warn("Could not unregister I/O throttle " + objectName + ": " + e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public synchronized long getBytesPerSecond() {
+        return bytes.rate;
+    }
+
+    @Override
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        bytes.setRate(bytesPerSecond);
+    }
+
+    @Override
+    public synchronized long getOperationsPerSecond() {
+        return operations.rate;
+    }
+
+    @Override
+    public synchronized void setOperationsPerSecond(long operationsPerSecond) {
+        operations.setRate(operationsPerSecond);
+    }
+
+    @Override
+    public synchronized long getBytesTransferred() {
+        return bytes.taken;
+    }
+
+    @Override
+    public synchronized long getOperations() {
+        return operations.taken;
+    }
+
+    @Override
+    public synchronized long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    }
+
+    /**
+     * A token bucket refilled at a given rate per second, holding at most one second worth of tokens. Taking more
+     * tokens than the bucket holds leaves it in debt, which the caller waits for.
+     */
+    private static class Bucket {
+
+        private long rate;
+
+        private double tokens;
+
+        private long refilled = System.nanoTime();
+
+        private long taken;
+
+        private Bucket(long rate) {
+            setRate(rate);
+        }
+
+        private void setRate(long rate) {
+            if (rate < 0) {
+                throw new IllegalArgumentException("Rate must not be negative: " + rate);
+            }
+            this.rate = rate;
+            tokens = Math.min(tokens, rate);
+        }
+
+        /* Takes tokens, and returns the time to wait for in nanoseconds */
+        private long take(long count, long now) {
+            taken += count;
+            if (rate == 0) {
+                refilled = now;
+                return 0;
+            }
+            tokens = Math.min(rate, tokens + (now - refilled) * rate / 1e9);
+            refilled = now;
+            tokens -= count;
+            return tokens < 0 ? (long) (-tokens * 1e9 / rate) : 0;
+        }
+    }
+
+    private class ThrottledInputStream extends FilterInputStream {
+
+        private ThrottledInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            acquire(b < 0 ? 0 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            acquire(Math.max(count, 0));
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            acquire(0);
+            return count;
+        }
+    }
+
+    private class ThrottledOutputStream extends FilterOutputStream {
+
+        private ThrottledOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            acquire(len);
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl;
+
+/**
+ * Management interface of an {@link IoThrottle}, through which the limits of a running packaging job can be inspected
+ * and adjusted.
+ */
+public interface IoThrottleMXBean {
+
+    /**
+     * @return the maximum number of bytes read and written per second, 0 if unlimited
+     */
+    long getBytesPerSecond();
+
+    /**
+     * @param bytesPerSecond the maximum number of bytes read and written per second, 0 for no limit
+     */
+    void setBytesPerSecond(long bytesPerSecond);
+
+    /**
+     * @return the maximum number of read and write operations per second, 0 if unlimited
+     */
+    long getOperationsPerSecond();
+
+    /**
+     * @param operationsPerSecond the maximum number of read and write operations per second, 0 for no limit
+     */
+    void setOperationsPerSecond(long operationsPerSecond);
+
+    /**
+     * @return the number of bytes read and written so far
+     */
+    long getBytesTransferred();
+
+    /**
+     * @return the number of read and write operations performed so far
+     */
+    long getOperations();
+
+    /**
+     * @return the total time, in milliseconds, operations were delayed by so far
+     */
+    long getDelayMillis();
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl;
+
+import org.dataconservancy.packaging.tool.api.Package;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A package which has been split into several volumes, each of them a complete package of its own.
+ * <p>
+ * The serialization of this package is the group description, a text file identifying the group and listing its
+ * volumes. The volumes themselves are available through {@link #getVolumes()}.
+ * </p>
+ */
+public class MultiVolumePackage implements Package {
+
+    private File groupDescription;
+    private String packageName;
+    private List<Package> volumes;
+
+    private boolean available;
+
+    public MultiVolumePackage(File groupDescription, String packageName, List<Package> volumes) {
+        this.groupDescription = groupDescription;
+        this.packageName = packageName;
+        this.volumes = volumes;
+        available = true;
+    }
+
+    /**
+     * Returns the content of the group description.
+     */
+    @Override
+    public InputStream serialize() throws FileNotFoundException {
+        return new FileInputStream(groupDescription);
+    }
+
+    @Override
+    public String getPackageName() {
+        return packageName;
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/plain";
+    }
+
+    /**
+     * Returns the volumes of this package, in sequence order.
+     * @return the volumes
+     */
+    public List<Package> getVolumes() {
+        return Collections.unmodifiableList(volumes);
+    }
+
+    @Override
+    public void cleanupPackage() {
+        available = false;
+        for (Package volume : volumes) {
+            volume.cleanupPackage();
+        }
+        if (!groupDescription.delete()) {
+            groupDescription.deleteOnExit();
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+}
@@ -15,48 +15,108 @@
  */
 package org.dataconservancy.packaging.tool.impl;
 
-import org.dataconservancy.dcs.util.ChecksumGeneratorVerifier;
+import org.dataconservancy.dcs.util.MultiDigestReader;
 import org.dataconservancy.dcs.model.Checksum;
 import org.dataconservancy.dcs.model.ChecksumImpl;
 import org.dataconservancy.packaging.tool.api.PackageChecksumService;
+import org.dataconservancy.packaging.tool.api.generator.ReadScheduler;
 import org.dataconservancy.packaging.tool.model.PackageToolException;
 import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
- *  Implementation of the PackageChecksumService interface
+ *  Implementation of the PackageChecksumService interface. Each file is read once, computing the checksums for all
+ *  requested algorithms in the same pass. If a {@link ChecksumCache} is given, files whose checksums are cached are
+ *  not read at all. If a {@link ReadScheduler} is given, files are read in the order it decides, and if an
+ *  {@link IoThrottle} is given, within its limits.
  */
 public class PackageChecksumServiceImpl implements PackageChecksumService {
 
+    private final ChecksumCache cache;
+
+    private final ReadScheduler scheduler;
+
+    private final IoThrottle throttle;
+
+    public PackageChecksumServiceImpl() {
+        this(null);
+    }
+
+    /**
+     * @param cache the cache consulted before reading files and updated with their checksums, may be null
+     */
+    public PackageChecksumServiceImpl(ChecksumCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * @param cache the cache consulted before reading files and updated with their checksums, may be null
+     * @param scheduler the scheduler ordering the files to be read, may be null
+     */
+    public PackageChecksumServiceImpl(ChecksumCache cache, ReadScheduler scheduler) {
+        this(cache, scheduler, null);
+    }
+
+    /**
+     * @param cache the cache consulted before reading files and updated with their checksums, may be null
+     * @param scheduler the scheduler ordering the files to be read, may be null
+     * @param throttle the throttle limiting reads, may be null
+     */
+    public PackageChecksumServiceImpl(ChecksumCache cache, ReadScheduler scheduler, IoThrottle throttle) {
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.throttle = throttle;
+    }
 
     public Map<File, List<Checksum>> generatePackageFileChecksums(
             Set<File> packageFiles, List<String> checksumAlgorithms) throws PackageToolException {
 
         Map<File, List<Checksum>> packageChecksums = new HashMap<>();
-        for(File file : packageFiles){
+        Collection<File> orderedFiles = scheduler != null ? scheduler.schedule(packageFiles) : packageFiles;
+        for(File file : orderedFiles){
             List<Checksum> fileChecksums = new ArrayList<>();
-            for(String algorithm : checksumAlgorithms){
-                try{
-                    FileInputStream fis = new FileInputStream(file);
-                    ChecksumImpl checksum = new ChecksumImpl(algorithm, ChecksumGeneratorVerifier.generateChecksum(algorithm, fis));
-                    fileChecksums.add(checksum);
-                } catch (FileNotFoundException fnfe) {
-                   throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, fnfe, file.getPath());
-                } catch (NoSuchAlgorithmException nsae){
-                   throw new PackageToolException(PackagingToolReturnInfo.PKG_NO_SUCH_CHECKSUM_ALGORITHM_EXCEPTION, nsae, algorithm);
+            try {
+                Map<String, String> digests = new HashMap<>();
+                if (cache != null) {
+                    digests.putAll(cache.get(file, checksumAlgorithms));
                 }
-                packageChecksums.put(file, fileChecksums);
+                List<String> missingAlgorithms = new ArrayList<>(checksumAlgorithms);
+                missingAlgorithms.removeAll(digests.keySet());
+                if (!missingAlgorithms.isEmpty()) {
+                    try (InputStream fis = throttle != null ? throttle.wrap(new FileInputStream(file))
+                            : new FileInputStream(file)) {
+                        Map<String, String> computedDigests = MultiDigestReader.digest(fis, missingAlgorithms);
+                        if (cache != null) {
+                            cache.put(file, computedDigests);
+                        }
+                        digests.putAll(computedDigests);
+                    }
+                }
+                for (String algorithm : checksumAlgorithms) {
+                    fileChecksums.add(new ChecksumImpl(algorithm, digests.get(algorithm)));
+                }
+            } catch (FileNotFoundException | NoSuchFileException fnfe) {
+               throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, fnfe, file.getPath());
+            } catch (NoSuchAlgorithmException nsae){
+               throw new PackageToolException(PackagingToolReturnInfo.PKG_NO_SUCH_CHECKSUM_ALGORITHM_EXCEPTION, nsae,
+                       checksumAlgorithms.toString());
+            } catch (IOException ioe) {
+               throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, ioe, file.getPath());
             }
-
+            packageChecksums.put(file, fileChecksums);
         }
         return packageChecksums;
     }
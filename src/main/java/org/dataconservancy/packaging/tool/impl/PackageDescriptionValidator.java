@@ -16,9 +16,9 @@
 
 package org.dataconservancy.packaging.tool.impl;
 
-import java.util.HashSet;
 import java.util.Set;
 
+import org.dataconservancy.packaging.tool.model.PackageArtifactGraph;
 import org.dataconservancy.packaging.tool.model.PackageRelationship;
 import org.dataconservancy.packaging.tool.model.ontologies.DcsBoPackageOntology;
 import org.dataconservancy.packaging.tool.model.PackageArtifact;
@@ -46,19 +46,24 @@ public class PackageDescriptionValidator {
     public void validate(PackageDescription description)
             throws PackageValidationException {
 
-        Set<String> artifactIds = new HashSet<>();
-        Set<String> relatedArtifactIds = new HashSet<>();
-
         /* Package specification id should be defined */
         if (!isDefined(description.getPackageOntologyIdentifier())) {
             throw new PackageValidationException("Package description specification should be defined");
         }
 
+        /* Relationship targets are resolved to artifacts once, by id */
+        PackageArtifactGraph graph;
+        try {
+            graph = PackageArtifactGraph.of(description);
+        } catch (IllegalArgumentException e) {
+            throw new PackageValidationException(e.getMessage(), e);
+        }
+
         /*
-         * Iterate through all artifacts, checking validity constraints and
-         * recording relationships
+         * Iterate through all artifacts, checking validity constraints
          */
-        for (PackageArtifact artifact : description.getPackageArtifacts()) {
+        for (int index = 0; index < graph.size(); index++) {
+            PackageArtifact artifact = graph.getArtifact(index);
 
             /* Every artifact must have an ID */
             if (!isDefined(artifact.getId())) {
@@ -66,11 +71,9 @@ public class PackageDescriptionValidator {
             }
 
             /* All artifact IDs must be unique */
-            if (artifactIds.contains(artifact.getId())) {
+            if (graph.indexOf(artifact.getId()) != index) {
                 throw new PackageValidationException(String.format("Duplicate artifact ID '%s' found",
                                                                    artifact.getId()));
-            } else {
-                artifactIds.add(artifact.getId());
             }
 
             /* Artifact type must be defined */
@@ -86,34 +89,29 @@ public class PackageDescriptionValidator {
             /* Make sure properties are sane */
             validateProperties(artifact);
 
-            /*
-             * Make sure relationships are sane, record relationship targets in
-             * order to later on verify that artifact rels only point to other
-             * artifacts within the same PackageDescription.
-             */
-            validateRelationships(artifact, relatedArtifactIds);
+            /* Make sure relationships are sane */
+            validateRelationships(artifact);
         }
 
         /*
-         * Lastly, once we've collected all necessary data, make sure
+         * Lastly, once all artifacts are known to be sane, make sure
          * hierarchical relationships' targets are valid artifact ids encountered in this
          * PackageDescription. Other types of relationships can have unrestricted targets.
          */
-        for (PackageArtifact artifact : description.getPackageArtifacts()) {
-            Set<String> relationshipNames = artifact.getAllRelationshipNamesOnArtifact();
-            for (String relationshipName : relationshipNames) {
-                if (relationshipName.equals(DcsBoPackageOntology.IS_MEMBER_OF) ||
-                        relationshipName.equals(DcsBoPackageOntology.IS_METADATA_FOR)) {
-                    PackageRelationship relationship = artifact.getRelationshipByName(relationshipName);
-                    if (relationship != null) {
-                        Set<String> targets = relationship.getTargets();
-                        for (String target : targets) {
-                            if (!artifactIds.contains(target)) {
-                                throw new PackageValidationException(String.format("Bad relationship:  " +
-                                        "Hierarchical relationship %s  from artifact '%s' and points to '%s' which does not" +
-                                        " exists in the package.", relationshipName, artifact.getId(), target));
-                            }
-                        }
+        for (int index = 0; index < graph.size(); index++) {
+            for (String relationshipName : new String[] {DcsBoPackageOntology.IS_MEMBER_OF,
+                    DcsBoPackageOntology.IS_METADATA_FOR}) {
+                int relationship = graph.getRelationship(index, relationshipName);
+                if (relationship < 0) {
+                    continue;
+                }
+                for (int target = graph.getTargetsStart(relationship);
+                     target < graph.getTargetsEnd(relationship); target++) {
+                    if (graph.getTarget(target) < 0) {
+                        throw new PackageValidationException(String.format("Bad relationship:  " +
+                                "Hierarchical relationship %s  from artifact '%s' and points to '%s' which does not" +
+                                " exists in the package.", relationshipName, graph.getArtifact(index).getId(),
+                                graph.getTargetId(target)));
                     }
                 }
             }
@@ -178,14 +176,11 @@ public class PackageDescriptionValidator {
     }
 
     /**
-     * Make sure relationships are fully-formed, and keep track of target
-     * artifact IDs for later verification.
+     * Make sure relationships are fully-formed.
      * 
      * @param artifact the PackageArtifact
-     * @param targetIds the target IDs
      */
-    private void validateRelationships(PackageArtifact artifact,
-                                       Set<String> targetIds)
+    private void validateRelationships(PackageArtifact artifact)
             throws PackageValidationException {
 
         if (artifact.getRelationships() == null) {
@@ -217,8 +212,6 @@ public class PackageDescriptionValidator {
                                                                        rel.getName(),
                                                                        artifact.getId()));
                 }
-
-                targetIds.add(target);
             }
         }
     }
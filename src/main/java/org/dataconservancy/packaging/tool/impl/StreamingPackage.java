@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.packaging.tool.api.Package;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A package whose serialization is produced while it is being read, rather than written to a file first.
+ * <p>
+ * Each call to {@link #serialize()} starts a thread which writes the serialization into a bounded pipe, from which the
+ * returned stream reads. The producer is paced by the reader, so serializing a package only needs the staged content
+ * it is produced from. A failure of the producer is reported by the returned stream, once the bytes produced before
+ * it have been read. Closing the stream before its end stops the producer.
+ * </p>
+ */
+public class StreamingPackage implements Package {
+
+    /**
+     * Writes the serialization of a package.
+     */
+    public interface ContentWriter {
+
+        /**
+         * Writes the serialization of the package to the stream, and closes it.
+         * @param out the stream
+         * @throws IOException if the serialization could not be written
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Number of chunks the pipe holds, bounding it to 1MB.
+     */
+    private static final int PIPE_CHUNKS = 16;
+
+    private final List<File> stagedContent;
+    private final String packageName;
+    private final String contentType;
+    private final ContentWriter writer;
+
+    private boolean available;
+
+    /**
+     * @param stagedContent the staged content the serialization is produced from, removed when the package is cleaned
+     *                      up
+     * @param packageName the package name
+     * @param contentType the content type of the serialization
+     * @param writer writes the serialization
+     */
+    public StreamingPackage(File stagedContent, String packageName, String contentType, ContentWriter writer) {
+        this(Collections.singletonList(stagedContent), packageName, contentType, writer);
+    }
+
+    /**
+     * @param stagedContent the locations of the staged content the serialization is produced from, all removed when
+     *                      the package is cleaned up
+     * @param packageName the package name
+     * @param contentType the content type of the serialization
+     * @param writer writes the serialization
+     */
+    public StreamingPackage(List<File> stagedContent, String packageName, String contentType, ContentWriter writer) {
+        this.stagedContent = new ArrayList<>(stagedContent);
+        this.packageName = packageName;
+        this.contentType = contentType;
+        this.writer = writer;
+        available = true;
+    }
+
+    @Override
+    public InputStream serialize() throws FileNotFoundException {
+        if (!available) {
+            throw new FileNotFoundException("Package " + packageName + " has been cleaned up");
+        }
+        Pipe pipe = new Pipe(PIPE_CHUNKS);
+        OutputStream pipeOut = pipe.new PipeOutputStream();
+
+        Thread producer = new Thread(() -> {
+            try {
+                writer.write(pipeOut);
+            } catch (Throwable e) {
+                //record the failure before closing the pipe, so that the reader sees it instead of the end of stream,
+                //even if it is an error, which leaves the serialization just as truncated
+                pipe.failure = e;
+            } finally {
+                try {
+                    pipeOut.close();
+                } catch (IOException e) {
+                    //the reader closed the pipe
+                }
+            }
+        }, "serializer-" + packageName);
+        producer.setDaemon(true);
+        producer.start();
+        return pipe.new PipeInputStream();
+    }
+
+    @Override
+    public String getPackageName() {
+        return packageName;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void cleanupPackage() {
+        available = false;
+        for (File location : stagedContent) {
+            FileUtils.deleteQuietly(location);
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * A bounded pipe of chunks of bytes. Unlike {@link java.io.PipedInputStream}, it does not depend on which threads
+     * read and write it, so the stream may be read by any thread, or by several threads in turn, and a thread which
+     * stops reading does not break it. The writer blocks while the pipe is full, and fails once the reader closed the
+     * pipe; the reader blocks while the pipe is empty, and sees a failure of the writer at the end of the stream.
+     */
+    private static class Pipe {
+
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks;
+
+        private volatile Throwable failure;
+
+        private volatile boolean readerClosed;
+
+        Pipe(int capacity) {
+            chunks = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private class PipeOutputStream extends OutputStream {
+
+            private byte[] chunk = new byte[CHUNK_SIZE];
+            private int count = 0;
+            private boolean closed = false;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (closed) {
+                    throw new IOException("Pipe closed");
+                }
+                while (len > 0) {
+                    int copied = Math.min(len, chunk.length - count);
+                    System.arraycopy(b, off, chunk, count, copied);
+                    count += copied;
+                    off += copied;
+                    len -= copied;
+                    if (count == chunk.length) {
+                        flush();
+                    }
+                }
+            }
+
+            /**
+             * Passes the bytes written so far to the reader, waiting while the pipe is full.
+             */
+            @Override
+            public void flush() throws IOException {
+                if (count > 0) {
+                    put(count == chunk.length ? chunk : Arrays.copyOf(chunk, count));
+                    chunk = new byte[CHUNK_SIZE];
+                    count = 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                try {
+                    flush();
+                } finally {
+                    closed = true;
+                    //the end of the stream is always passed, as it is what releases a waiting reader
+                    if (!readerClosed) {
+                        put(END);
+                    }
+                }
+            }
+
+            private void put(byte[] bytes) throws IOException {
+                try {
+                    while (!chunks.offer(bytes, 100, TimeUnit.MILLISECONDS)) {
+                        if (readerClosed) {
+                            break;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while writing to the pipe");
+                }
+                if (readerClosed) {
+                    chunks.clear();
+                    throw new IOException("Pipe closed by the reader");
+                }
+            }
+        }
+
+        private class PipeInputStream extends InputStream {
+
+            private byte[] chunk = null;
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                int read = read(b, 0, 1);
+                return read == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (readerClosed) {
+                    throw new IOException("Stream closed");
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                if (chunk == null || (position == chunk.length && chunk != END)) {
+                    try {
+                        chunk = chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while reading from the pipe");
+                    }
+                    position = 0;
+                }
+                if (chunk == END) {
+                    if (failure != null) {
+                        throw new IOException("Package serialization failed", failure);
+                    }
+                    return -1;
+                }
+                int read = Math.min(len, chunk.length - position);
+                System.arraycopy(chunk, position, b, off, read);
+                position += read;
+                return read;
+            }
+
+            @Override
+            public int available() {
+                return chunk == null || chunk == END ? 0 : chunk.length - position;
+            }
+
+            /**
+             * Stops the writer, if it is still writing.
+             */
+            @Override
+            public void close() {
+                readerClosed = true;
+                chunks.clear();
+            }
+        }
+    }
+}
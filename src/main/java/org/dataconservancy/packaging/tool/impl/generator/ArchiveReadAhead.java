@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.packaging.tool.impl.IoThrottle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads the files to be archived ahead of the archive writer, so that files stored on different devices are read
+ * concurrently even though they are archived one after the other.
+ * <p>
+ * Each staging location has a reader of its own, which reads the files staged there in the order they will be
+ * archived, so that each device is read sequentially and all of them at once. Files are read in chunks, which the
+ * archive writer takes as they are read, so a large file is archived while the rest of it is being read. The memory
+ * held by chunks read but not yet archived is bounded for each staging location.
+ * </p>
+ */
+class ArchiveReadAhead implements AutoCloseable {
+
+    /* Size of the chunks files are read in */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    /* Maximum number of bytes read ahead and not yet archived, shared by the staging locations */
+    private static final int MAX_BUFFERED_SIZE = 64 * 1024 * 1024;
+
+    /* Marks the end of the chunks of a file */
+    private static final byte[] END = new byte[0];
+
+    private final Map<File, ReadFile> readAhead = new HashMap<>();
+
+    private final ExecutorService executor;
+
+    private final IoThrottle throttle;
+
+    /**
+     * Starts reading ahead.
+     * @param files the files to be archived, in the order they will be archived in
+     * @param stripeDirs the staging locations the files are staged in, the first one being the staged bag itself.
+     *                   Files linked into the bag from another location are read by the reader of that location.
+     * @param throttle the throttle limiting reads, may be null
+     * @throws IOException if the staging locations could not be resolved
+     */
+    ArchiveReadAhead(List<File> files, List<File> stripeDirs, IoThrottle throttle) throws IOException {
+        this.throttle = throttle;
+        //the budget of each location holds at least a chunk, so that its reader can always make progress
+        int stripeBudget = Math.max(CHUNK_SIZE, MAX_BUFFERED_SIZE / stripeDirs.size());
+        List<Path> stripePaths = new ArrayList<>();
+        List<Semaphore> stripePermits = new ArrayList<>();
+        List<List<ReadFile>> stripeFiles = new ArrayList<>();
+        for (File stripeDir : stripeDirs) {
+            stripePaths.add(stripeDir.toPath().toRealPath());
+            stripePermits.add(new Semaphore(stripeBudget));
+            stripeFiles.add(new ArrayList<>());
+        }
+        //a file linked several times into the bag is read ahead once, as it may be archived once
+        Set<Object> fileKeys = new HashSet<>();
+        for (File file : files) {
+            if (!file.isFile() || readAhead.containsKey(file)) {
+                continue;
+            }
+            Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            if (fileKey == null || fileKeys.add(fileKey)) {
+                int stripe = selectStripe(file, stripePaths);
+                ReadFile readFile = new ReadFile(file, stripePermits.get(stripe));
+                readAhead.put(file, readFile);
+                stripeFiles.get(stripe).add(readFile);
+            }
+        }
+
+        executor = Executors.newFixedThreadPool(stripeDirs.size(), runnable -> {
+            Thread thread = new Thread(runnable, "archive-read-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (List<ReadFile> stripe : stripeFiles) {
+            if (!stripe.isEmpty()) {
+                executor.execute(() -> readStripe(stripe));
+            }
+        }
+    }
+
+    /**
+     * @return the index of the staging location the file is stored in, or 0 if it is not linked from another one
+     */
+    private static int selectStripe(File file, List<Path> stripePaths) throws IOException {
+        Path path = file.toPath().toRealPath();
+        for (int i = stripePaths.size() - 1; i > 0; i--) {
+            if (path.startsWith(stripePaths.get(i))) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the files of a staging location, in order. Files are read as long as the chunks read and not yet taken by
+     * the archive writer fit in the budget of the location. As the writer takes the files in the same order, the file
+     * it waits for is always the first one of the location not completely taken, so reading it is never blocked by
+     * chunks of later files.
+     */
+    private void readStripe(List<ReadFile> files) {
+        for (ReadFile file : files) {
+            Semaphore permits = file.permits;
+            try (InputStream in = openFile(file.file)) {
+                long remaining = file.file.length();
+                while (remaining > 0) {
+                    int size = (int) Math.min(CHUNK_SIZE, remaining);
+                    permits.acquire(size);
+                    byte[] chunk = new byte[size];
+                    int read = IOUtils.read(in, chunk);
+                    if (read < size) {
+                        permits.release(size - read);
+                        chunk = Arrays.copyOf(chunk, read);
+                        remaining = 0;
+                    } else {
+                        remaining -= read;
+                    }
+                    if (read > 0) {
+                        file.chunks.put(chunk);
+                    }
+                }
+            } catch (IOException e) {
+                file.failure = e;
+            } catch (RuntimeException e) {
+                file.failure = new IOException("Exception occurred when reading " + file.file, e);
+            } catch (InterruptedException e) {
+                //reading ahead was stopped
+                return;
+            } finally {
+                file.chunks.add(END);
+            }
+        }
+    }
+
+    /**
+     * Opens a file to be archived.
+     * @param file the file
+     * @return its content, read ahead if it is
+     * @throws IOException if the file could not be read
+     */
+    InputStream open(File file) throws IOException {
+        ReadFile readFile = readAhead.remove(file);
+        if (readFile == null) {
+            return openFile(file);
+        }
+        return readFile.new ChunkInputStream();
+    }
+
+    private InputStream openFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return throttle != null ? throttle.wrap(in) : in;
+    }
+
+    /**
+     * Stops reading ahead, discarding what was read and not archived.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A file read ahead, as the chunks read so far.
+     */
+    private static class ReadFile {
+
+        private final File file;
+
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+
+        /* The budget of the staging location the file is read from */
+        private final Semaphore permits;
+
+        /* Failure to read the file, set before its end is queued */
+        private volatile IOException failure;
+
+        private ReadFile(File file, Semaphore permits) {
+            this.file = file;
+            this.permits = permits;
+        }
+
+        /**
+         * Takes the chunks of the file as they are read, returning them to the budget of their location.
+         */
+        private class ChunkInputStream extends InputStream {
+
+            private byte[] chunk = null;
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                int read = read(b, 0, 1);
+                return read == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (chunk == null || (position == chunk.length && chunk != END)) {
+                    try {
+                        chunk = chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while reading " + file);
+                    }
+                    position = 0;
+                    permits.release(chunk.length);
+                }
+                if (chunk == END) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return -1;
+                }
+                int read = Math.min(len, chunk.length - position);
+                System.arraycopy(chunk, position, b, off, read);
+                position += read;
+                return read;
+            }
+        }
+    }
+}
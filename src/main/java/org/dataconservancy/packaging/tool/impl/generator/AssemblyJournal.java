@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.dataconservancy.dcs.util.FilePathUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only record of the resources completely written into a staged bag, which allows an interrupted assembly to
+ * resume where it stopped.
+ * <p>
+ * Each line records the path of a resource relative to the bag's base directory, its size, the modification time of
+ * the file it was staged from (or -1), and its digests. Lines are written once the resource is complete, so the
+ * journal never lists a partially written resource, except for a possibly truncated last line which is ignored when
+ * the journal is read back.
+ * </p>
+ * <p>
+ * A file is forced to storage before it is recorded, and the journal after each line, so that the journal does not
+ * outlive the content of the files it lists when the system, rather than the process, stops.
+ * </p>
+ */
+class AssemblyJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AssemblyJournal.class);
+
+    private final File journalFile;
+    private final File bagDir;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private FileOutputStream out;
+    private Writer writer;
+
+    /**
+     * Opens the journal of a bag.
+     * @param journalFile the journal file, which must be outside of the bag
+     * @param bagDir the base directory of the bag
+     * @param resume if true, the entries of an existing journal whose file is still in the bag with the recorded size
+     *               are kept, otherwise any existing journal is discarded
+     * @throws IOException if the journal could not be read or written
+     */
+    AssemblyJournal(File journalFile, File bagDir, boolean resume) throws IOException {
+        this.journalFile = journalFile;
+        this.bagDir = bagDir;
+        if (resume && journalFile.isFile()) {
+            load();
+        }
+
+        //rewrite the journal with the entries which are still valid, dropping any truncated line
+        out = new FileOutputStream(journalFile);
+        writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            writeLine(entry.getKey(), entry.getValue());
+        }
+        writer.flush();
+        out.getChannel().force(true);
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    continue;
+                }
+                try {
+                    String path = decode(fields[0]);
+                    long size = Long.parseLong(fields[1]);
+                    long sourceModified = Long.parseLong(fields[2]);
+                    Map<String, String> digests = new TreeMap<>();
+                    for (String digest : fields[3].split(",")) {
+                        int separator = digest.indexOf('=');
+                        if (separator > 0) {
+                            digests.put(digest.substring(0, separator), digest.substring(separator + 1));
+                        }
+                    }
+                    File file = new File(bagDir, path);
+                    if (file.isFile() && file.length() == size) {
+                        entries.put(path, new Entry(size, sourceModified, digests));
+                    } else {
+                        entries.remove(path);
+                    }
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring invalid journal line: " + line);
+                }
+            }
+        }
+        log.info("Resuming assembly of " + bagDir + " with " + entries.size() + " journaled resources");
+    }
+
+    /**
+     * @param file a file of the bag
+     * @return the journal entry of the file, or null if it is not journaled
+     */
+    synchronized Entry getEntry(File file) {
+        return entries.get(getPath(file));
+    }
+
+    /**
+     * Records a file which has been completely written into the bag. The file is forced to storage first.
+     * @param file the file of the bag
+     * @param sourceModified the modification time of the file it was staged from, or -1 if it was written from a
+     *                       stream
+     * @param digests the digests of the file, keyed by algorithm
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void record(File file, long sourceModified, Map<String, String> digests) throws IOException {
+        if (writer == null) {
+            throw new IOException("Journal " + journalFile + " is closed");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        String path = getPath(file);
+        Entry entry = new Entry(file.length(), sourceModified, new TreeMap<>(digests));
+        entries.put(path, entry);
+        writeLine(path, entry);
+        writer.flush();
+        out.getChannel().force(true);
+    }
+
+    /**
+     * Closes and removes the journal, once the bag has been assembled.
+     * @throws IOException if the journal could not be removed
+     */
+    synchronized void delete() throws IOException {
+        close();
+        if (journalFile.exists() && !journalFile.delete()) {
+            throw new IOException("Could not remove journal " + journalFile);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            out = null;
+        }
+    }
+
+    private void writeLine(String path, Entry entry) throws IOException {
+        StringBuilder line = new StringBuilder(encode(path)).append('\t').append(entry.size).append('\t')
+                .append(entry.sourceModified).append('\t');
+        String separator = "";
+        for (Map.Entry<String, String> digest : entry.digests.entrySet()) {
+            line.append(separator).append(digest.getKey()).append('=').append(digest.getValue());
+            separator = ",";
+        }
+        writer.write(line.append('\n').toString());
+    }
+
+    private String getPath(File file) {
+        return FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(bagDir.getPath(), file));
+    }
+
+    private static String encode(String path) {
+        return path.replace("%", "%25").replace("\t", "%09").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    private static String decode(String path) {
+        return path.replace("%0D", "\r").replace("%0A", "\n").replace("%09", "\t").replace("%25", "%");
+    }
+
+    /**
+     * A journaled file.
+     */
+    static class Entry {
+        final long size;
+        final long sourceModified;
+        final Map<String, String> digests;
+
+        Entry(long size, long sourceModified, Map<String, String> digests) {
+            this.size = size;
+            this.sourceModified = sourceModified;
+            this.digests = Collections.unmodifiableMap(digests);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.dataconservancy.packaging.tool.impl.generator;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.net.URLCodec;
+import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
@@ -24,24 +25,42 @@ import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.UnixStat;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.compress.compressors.CompressorOutputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 
 import org.dataconservancy.dcs.util.FilePathUtil;
+import org.dataconservancy.dcs.util.MultiDigestReader;
 import org.dataconservancy.dcs.util.UriUtility;
 import org.dataconservancy.dcs.model.Checksum;
+import org.dataconservancy.dcs.model.ChecksumImpl;
+import org.dataconservancy.dcs.model.Metadata;
 import org.dataconservancy.packaging.tool.api.PackageChecksumService;
 import org.dataconservancy.packaging.tool.api.PackagingFormat;
-import org.dataconservancy.packaging.tool.api.generator.PackageAssembler;
+import org.dataconservancy.packaging.tool.api.generator.AsyncPackageAssembler;
 import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
 import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.packaging.tool.impl.ChecksumCache;
+import org.dataconservancy.packaging.tool.impl.IoThrottle;
+import org.dataconservancy.packaging.tool.impl.MultiVolumePackage;
+import org.dataconservancy.packaging.tool.impl.StreamingPackage;
 import org.dataconservancy.packaging.tool.impl.PackageChecksumServiceImpl;
 import org.dataconservancy.packaging.tool.model.*;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 
@@ -53,8 +72,30 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * <p>
@@ -70,7 +111,7 @@ import java.util.*;
  * the package file, and the assemblePackage() method will return a null package without deleting the staged content
  *
  */
-public class BagItPackageAssembler implements PackageAssembler {
+public class BagItPackageAssembler implements AsyncPackageAssembler {
 
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
@@ -82,7 +123,26 @@ public class BagItPackageAssembler implements PackageAssembler {
     private final static String ENCODING = "UTF-8";
     private final static String VERSION = "0.97";
 
-    private static PackageChecksumService checksumService = new PackageChecksumServiceImpl();
+    /* Sizes used to estimate the size of serialized volumes: tar records and blocks, the space taken by the header of
+       an entry in any supported archiving format, and the length of the longest checksum in hex */
+    private final static long TAR_RECORD_SIZE = 512;
+    private final static long TAR_BLOCK_SIZE = 10240;
+    private final static long ENTRY_HEADER_ALLOWANCE = 1024;
+    private final static long MAX_DIGEST_HEX_LENGTH = 128;
+
+    private PackageChecksumService checksumService = new PackageChecksumServiceImpl();
+
+    /**
+     * Cache of checksums used by the checksum service, if one is configured. Null otherwise.
+     */
+    private ChecksumCache checksumCache = null;
+
+    /**
+     * Files the staged payload files were staged from, keyed by the staged file. Only kept track of when checksums
+     * are cached, in which case payload files are checksummed at their source, whose identity is stable across bags,
+     * as long as the source has not changed since it was staged.
+     */
+    private Map<File, StagedSource> stagedSources = new ConcurrentHashMap<>();
 
     private PackageGenerationParameters params = null;
 
@@ -92,19 +152,81 @@ public class BagItPackageAssembler implements PackageAssembler {
 
     private boolean isExploded = false;
 
+    /**
+     * Indicates whether the package is serialized while it is read, rather than when it is assembled.
+     */
+    private boolean isStreamed = false;
+
+    /**
+     * Indicates whether the package is serialized reproducibly, in which case {@code reproducibleDate} is used in
+     * place of the current date and of file modification times.
+     */
+    private boolean isReproducible = false;
+    private DateTime reproducibleDate = null;
+
+    /**
+     * Parameters which only tune how a package is produced on a given host, not what it contains. They are left out
+     * of bag-info.txt when serialization is reproducible, as the same package may be produced with different values.
+     */
+    private static final Set<String> PRODUCTION_PARAMS = new HashSet<>(Arrays.asList(
+            GeneralParameterNames.PACKAGE_LOCATION,
+            GeneralParameterNames.PACKAGE_STAGING_LOCATION,
+            GeneralParameterNames.CONTENT_ROOT_LOCATION,
+            GeneralParameterNames.COMPRESSION_WORKERS,
+            GeneralParameterNames.PAYLOAD_STAGING_STRATEGY,
+            GeneralParameterNames.PAYLOAD_READ_ORDER,
+            GeneralParameterNames.IO_BANDWIDTH_LIMIT,
+            GeneralParameterNames.IO_OPERATIONS_LIMIT,
+            GeneralParameterNames.STREAMING_SERIALIZATION,
+            GeneralParameterNames.JOURNALED_ASSEMBLY,
+            GeneralParameterNames.ASYNC_WRITE_THREADS,
+            GeneralParameterNames.ASYNC_WRITE_QUEUE_DEPTH,
+            GeneralParameterNames.REM_SERIALIZATION_THREADS,
+            GeneralParameterNames.PACKAGE_MODEL_BUILDER,
+            GeneralParameterNames.PIPELINED_GENERATION,
+            GeneralParameterNames.CHECKSUM_CACHE_LOCATION,
+            GeneralParameterNames.CHECKSUM_CACHE_MIN_AGE,
+            GeneralParameterNames.VALIDATE_PACKAGE_DESCRIPTION));
+
     /**
      * Map of the Relative URIs to the Absolute resolvable URI of a file.
      */
-    private Map<URI, URI> fileURIMap = new HashMap<>();
+    private Map<URI, URI> fileURIMap = new ConcurrentHashMap<>();
 
     /**
      * Set of resolvable URIs for data files kept track of by this Assembler
      */
-    private Set<File> dataFiles = new HashSet<>();
+    private Set<File> dataFiles = ConcurrentHashMap.newKeySet();
     /**
      * Set of resolvable URIs for tag files kept track of by this Assembler
      */
-    private Set<File> tagFiles = new HashSet<>();
+    private Set<File> tagFiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Paths the data resources were reserved for. When the content of one of these resources is put from the file at
+     * its path under the content root location, the path names the file in fetch.txt.
+     */
+    private Map<URI, String> reservedDataPaths = new ConcurrentHashMap<>();
+
+    /**
+     * Executor performing asynchronous writes, created on the first one.
+     */
+    private ExecutorService writeExecutor = null;
+
+    /**
+     * Permits for asynchronous writes, bounding the number of pending writes.
+     */
+    private Semaphore writePermits = null;
+
+    /**
+     * Asynchronous writes not yet awaited.
+     */
+    private final List<CompletableFuture<URI>> pendingWrites = new ArrayList<>();
+
+    /**
+     * Set once the assembly is cancelled, after which no resource is written and the package is not assembled.
+     */
+    private volatile boolean cancelled = false;
 
     /**
      * List of checksums algs to be performed when creating bags
@@ -122,6 +244,95 @@ public class BagItPackageAssembler implements PackageAssembler {
      */
     private String compressionFormat = null;
 
+    /**
+     * Compression level as specified in the input parameters. If none is specified, the codec's default is used.
+     */
+    private Integer compressionLevel = null;
+
+    /**
+     * Number of worker threads used by compressors which support multithreaded compression. Zero means compression
+     * is performed on the calling thread.
+     */
+    private int compressionWorkers = 0;
+
+    /**
+     * Payload files which are listed in fetch.txt rather than copied into the bag. They are listed by path.
+     */
+    private List<FetchEntry> fetchEntries = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Payload files at least this large are listed in fetch.txt. Zero means no threshold.
+     */
+    private long fetchSizeThreshold = 0;
+
+    /**
+     * Maximum size of a serialized volume, in bytes. Zero means the package is not split into volumes.
+     */
+    private long maxVolumeSize = 0;
+
+    /**
+     * Strategies used to stage payload files, in order of preference. The last strategy supports any file.
+     */
+    private List<PayloadStagingStrategy> stagingStrategies = new ArrayList<>();
+
+    /**
+     * Used to stage resources which are only available as streams.
+     */
+    private BufferedCopyStagingStrategy bufferedCopy = new BufferedCopyStagingStrategy();
+
+    /**
+     * Limits the I/O performed by the assembler, if limits are set.
+     */
+    private IoThrottle ioThrottle = null;
+
+    /**
+     * Indicates whether identical payload files are stored once.
+     */
+    private boolean isDeduplicated = false;
+
+    /**
+     * Staged payload files, keyed by size, used to find the copies of a payload file when deduplicating.
+     */
+    private Map<Long, List<File>> stagedFilesBySize = new ConcurrentHashMap<>();
+
+    /**
+     * Checksums of the staged payload files which have been compared to another file when deduplicating.
+     */
+    private Map<File, List<Checksum>> stagedFileChecksums = new ConcurrentHashMap<>();
+
+    /**
+     * Journal of the resources written into the staged bag, when assembly is journaled. Null otherwise.
+     */
+    private AssemblyJournal journal = null;
+
+    /**
+     * Checksums of the resources written into the staged bag, computed as soon as each of them is written, when
+     * generation is pipelined and assembly is neither journaled nor using a checksum cache. Null otherwise.
+     */
+    private Map<Path, List<Checksum>> writtenChecksums = null;
+
+    /**
+     * Size of each resource written into the staged bag, recorded as it is written so that the size of the bag is
+     * known without walking it.
+     */
+    private Map<File, Long> resourceSizes = new ConcurrentHashMap<>();
+
+    /**
+     * Directories the payload files are spread over when the package is staged in several locations, the base
+     * directory of the bag first. Empty when it is staged in a single location.
+     */
+    private List<File> stripeDirs = new ArrayList<>();
+
+    /**
+     * File stores of the stripe directories, in the same order.
+     */
+    private List<FileStore> stripeStores = new ArrayList<>();
+
+    /**
+     * Number of bytes copied into each stripe directory, in the same order.
+     */
+    private long[] stripeSizes = new long[0];
+
     /**
      * Initializes the Assembler. Operations include:
      * <ul>
@@ -143,7 +354,25 @@ public class BagItPackageAssembler implements PackageAssembler {
      * <ul>
      *     <li> archiving-format: when not set, is defaulted to ".tar" </li>
      *     <li> compression-format: when not set, no compression will be performed on the serialized content. </li>
+     *     <li> compression-level: when not set, the default level of the compression format is used. </li>
+     *     <li> compression-workers: when not set, zstd compression is performed on the calling thread. </li>
+     *     <li> payload-staging-strategy: when not set, is defaulted to "auto" </li>
+     *     <li> package-staging-location: when set several times, payload files are spread over all locations </li>
+     *     <li> payload-read-order: when not set, payload files are checksummed in no particular order </li>
+     *     <li> io-bandwidth-limit, io-operations-limit: when not set, I/O is not throttled </li>
+     *     <li> max-volume-size: when not set, the package is not split into volumes </li>
+     *     <li> fetch-size-threshold: when not set, only files named by fetch-path are listed in fetch.txt </li>
+     *     <li> journaled-assembly: when not set, is defaulted to "false" </li>
+     *     <li> streaming-serialization: when not set, is defaulted to "false" </li>
+     *     <li> payload-deduplication: when not set, is defaulted to "false" </li>
+     *     <li> reproducible-serialization: when not set, is defaulted to "false" </li>
+     *     <li> reproducible-date: when not set, is defaulted to 1970-01-01T00:00:00Z </li>
+     *     <li> checksum-cache-location: when not set, no checksum cache is used </li>
+     *     <li> async-write-threads: when not set, is defaulted to 4 </li>
+     *     <li> async-write-queue-depth: when not set, is defaulted to 64 </li>
+     *     <li> checksum-cache-min-age: when not set, is defaulted to 1 minute </li>
      *     <li> checksum-algs: when not set, is defaulted to "md5" </li>
+     *     <li> pipelined-generation: when not set, is defaulted to "false" </li>
      * </ul>
      *
      * NOTE: If this is called a second time, the first initialization will still take effect unless parameters are
@@ -190,6 +419,90 @@ public class BagItPackageAssembler implements PackageAssembler {
             validateCompressionFormat();
         }
 
+        //retrieve compression level and workers, if they are set in the input parameters
+        String compressionLevelValue = params.getParam(GeneralParameterNames.COMPRESSION_LEVEL, 0);
+        if (compressionLevelValue != null) {
+            compressionLevel = parseIntParam(GeneralParameterNames.COMPRESSION_LEVEL, compressionLevelValue);
+            validateCompressionLevel();
+        }
+        String compressionWorkersValue = params.getParam(GeneralParameterNames.COMPRESSION_WORKERS, 0);
+        if (compressionWorkersValue != null) {
+            compressionWorkers = parseIntParam(GeneralParameterNames.COMPRESSION_WORKERS, compressionWorkersValue);
+        }
+
+        //retrieve maximum volume size, if it is set in the input parameters
+        String maxVolumeSizeValue = params.getParam(GeneralParameterNames.MAX_VOLUME_SIZE, 0);
+        if (maxVolumeSizeValue != null) {
+            maxVolumeSize = parseSizeParam(GeneralParameterNames.MAX_VOLUME_SIZE, maxVolumeSizeValue);
+            if (isExploded) {
+                log.warn("Exploded packages are not split into volumes, ignoring " +
+                        GeneralParameterNames.MAX_VOLUME_SIZE);
+            }
+        }
+
+        isStreamed = !isExploded && Boolean.valueOf(params.getParam(GeneralParameterNames.STREAMING_SERIALIZATION, 0));
+        if (isStreamed && maxVolumeSize > 0) {
+            log.warn("Packages split into volumes are not streamed, ignoring " +
+                    GeneralParameterNames.STREAMING_SERIALIZATION);
+            isStreamed = false;
+        }
+
+        isReproducible = Boolean.valueOf(params.getParam(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION, 0));
+        if (isReproducible) {
+            String reproducibleDateValue = params.getParam(GeneralParameterNames.REPRODUCIBLE_DATE, 0);
+            reproducibleDate = reproducibleDateValue != null
+                    ? parseDateParam(GeneralParameterNames.REPRODUCIBLE_DATE, reproducibleDateValue)
+                    : new DateTime(0, DateTimeZone.UTC);
+        }
+
+        //retrieve fetch size threshold, if it is set in the input parameters
+        String fetchSizeThresholdValue = params.getParam(BagItParameterNames.FETCH_SIZE_THRESHOLD, 0);
+        if (fetchSizeThresholdValue != null) {
+            fetchSizeThreshold = parseSizeParam(BagItParameterNames.FETCH_SIZE_THRESHOLD, fetchSizeThresholdValue);
+        }
+
+        //throttle I/O, if limits are set in the input parameters
+        String bandwidthLimitValue = params.getParam(GeneralParameterNames.IO_BANDWIDTH_LIMIT, 0);
+        String operationsLimitValue = params.getParam(GeneralParameterNames.IO_OPERATIONS_LIMIT, 0);
+        if (bandwidthLimitValue != null || operationsLimitValue != null) {
+            ioThrottle = new IoThrottle(
+                    bandwidthLimitValue != null
+                            ? parseSizeParam(GeneralParameterNames.IO_BANDWIDTH_LIMIT, bandwidthLimitValue) : 0,
+                    operationsLimitValue != null
+                            ? parseIntParam(GeneralParameterNames.IO_OPERATIONS_LIMIT, operationsLimitValue) : 0);
+            ioThrottle.register(params.getParam(GeneralParameterNames.PACKAGE_NAME, 0));
+            bufferedCopy = new BufferedCopyStagingStrategy(ioThrottle);
+        }
+
+        //open the checksum cache, if one is set in the input parameters
+        String checksumCacheLocation = params.getParam(GeneralParameterNames.CHECKSUM_CACHE_LOCATION, 0);
+        if (checksumCacheLocation != null && !checksumCacheLocation.isEmpty()) {
+            long minAge = 1;
+            String minAgeValue = params.getParam(GeneralParameterNames.CHECKSUM_CACHE_MIN_AGE, 0);
+            if (minAgeValue != null) {
+                minAge = parseIntParam(GeneralParameterNames.CHECKSUM_CACHE_MIN_AGE, minAgeValue);
+            }
+            try {
+                checksumCache = new ChecksumCache(new File(checksumCacheLocation), TimeUnit.MINUTES.toMillis(minAge));
+            } catch (IOException e) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                        "Exception occurred when opening checksum cache " + checksumCacheLocation);
+            }
+        }
+
+        //checksum payload files in the read order, if one is set in the input parameters
+        checksumService = new PackageChecksumServiceImpl(checksumCache, ReadSchedulerFactory.newScheduler(params),
+                ioThrottle);
+
+        isDeduplicated = Boolean.valueOf(params.getParam(GeneralParameterNames.PAYLOAD_DEDUPLICATION, 0));
+        if (isDeduplicated && !isExploded && !archivingFormat.equals(ArchiveStreamFactory.TAR)) {
+            log.warn("Archiving format " + archivingFormat + " does not support hard links, copies of payload " +
+                    "files are stored in full");
+        }
+
+        //select the strategies used for staging payload files
+        stagingStrategies = createStagingStrategies(params.getParam(GeneralParameterNames.PAYLOAD_STAGING_STRATEGY, 0));
+
         //Create a parent dir, must be in a user-controlled location. default will be set here as the users homeDir/packageStaging.
         //This can be overridden in the defaultGenerationParams file
         //This will help prevent deleting data if a user tries to create a package in place.
@@ -229,6 +542,9 @@ public class BagItPackageAssembler implements PackageAssembler {
 
         //Creating base directory
         bagBaseDir = new File(packageLocationDir, packageName);
+        boolean isJournaled = Boolean.valueOf(params.getParam(GeneralParameterNames.JOURNALED_ASSEMBLY, 0));
+        File journalFile = new File(packageLocationDir, packageName + ".journal");
+        boolean isResumed = isJournaled && journalFile.isFile() && bagBaseDir.isDirectory();
         //Creating base directory for the bag based on specified package name
         if (!bagBaseDir.exists()) {
             log.info("Creating bag base dir: " + bagBaseDir.getPath());
@@ -237,13 +553,24 @@ public class BagItPackageAssembler implements PackageAssembler {
                 throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_DIR_CREATION_EXP,
                         "Attempt to create a base directory for bag at " + bagBaseDir.getPath() + " failed.");
             }
-        } else {
+        } else if (!isResumed) {
             //If it exists remove everything in it and start fresh
             try {
                 FileUtils.cleanDirectory(bagBaseDir);
             } catch (IOException e) {
                 log.warn("Exception thrown when cleaning existing directory: " + e.getMessage());
             }
+            FileUtils.deleteQuietly(journalFile);
+        }
+
+        //spread payload files over the other staging locations, if several are set in the input parameters
+        List<String> stagingLocations = params.getParam(GeneralParameterNames.PACKAGE_STAGING_LOCATION);
+        if (stagingLocations != null && stagingLocations.size() > 1) {
+            if (isExploded) {
+                log.warn("Exploded packages are staged in their package location, ignoring the staging locations");
+            } else {
+                initStripes(stagingLocations.subList(1, stagingLocations.size()), packageName, isResumed);
+            }
         }
 
         //Creating payload directory
@@ -258,9 +585,63 @@ public class BagItPackageAssembler implements PackageAssembler {
             }
         }
 
+        //Opening the journal, keeping the resources staged by an interrupted assembly of the same package
+        if (isJournaled) {
+            try {
+                journal = new AssemblyJournal(journalFile, bagBaseDir, isResumed);
+            } catch (IOException e) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                        "Exception occurred when opening assembly journal " + journalFile.getPath());
+            }
+        }
+
+        //checksum resources as they are written, unless the journal or the checksum cache already provides checksums
+        if (Boolean.valueOf(params.getParam(GeneralParameterNames.PIPELINED_GENERATION, 0))
+                && journal == null && checksumCache == null) {
+            writtenChecksums = new ConcurrentHashMap<>();
+        }
     }
 
 
+    /**
+     * Creates the directories payload files are staged in, in the other staging locations.
+     * @param locations the staging locations other than the one the bag is staged in
+     * @param packageName the name of the package
+     * @param isResumed whether the assembly of the package is resumed, in which case staged files are kept
+     */
+    private void initStripes(List<String> locations, String packageName, boolean isResumed) {
+        stripeDirs.add(bagBaseDir.getAbsoluteFile());
+        for (String location : locations) {
+            File stripeDir = new File(location, packageName).getAbsoluteFile();
+            if (location.isEmpty() || stripeDirs.contains(stripeDir)) {
+                continue;
+            }
+            if (!stripeDir.exists()) {
+                log.info("Creating payload stripe dir: " + stripeDir.getPath());
+                if (!stripeDir.mkdirs()) {
+                    throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_DIR_CREATION_EXP,
+                            "Attempt to create a staging directory for payload at " + stripeDir.getPath() + " failed.");
+                }
+            } else if (!isResumed) {
+                try {
+                    FileUtils.cleanDirectory(stripeDir);
+                } catch (IOException e) {
+                    log.warn("Exception thrown when cleaning existing directory: " + e.getMessage());
+                }
+            }
+            stripeDirs.add(stripeDir);
+        }
+        try {
+            for (File stripeDir : stripeDirs) {
+                stripeStores.add(Files.getFileStore(stripeDir.toPath()));
+            }
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when reading the file store of a staging location.");
+        }
+        stripeSizes = new long[stripeDirs.size()];
+    }
+
     /**
      * @param path
      *        Logical file path (including filename) of the resource relative to
@@ -270,6 +651,7 @@ public class BagItPackageAssembler implements PackageAssembler {
      */
     @Override
     public URI reserveResource(String path, PackageResourceType type) {
+        checkNotCancelled();
         String decodedPath;
         try {
             decodedPath = new String(URLCodec.decodeUrl(path.getBytes()));
@@ -303,6 +685,7 @@ public class BagItPackageAssembler implements PackageAssembler {
             fileURIMap.put(relativeURI, newFile.toURI());
             if (type.equals(PackageResourceType.DATA)) {
                 dataFiles.add(newFile);
+                reservedDataPaths.put(relativeURI, path);
             } else {
                 tagFiles.add(newFile);
             }
@@ -315,207 +698,1260 @@ public class BagItPackageAssembler implements PackageAssembler {
 
     @Override
     public void putResource(URI uri, InputStream content) {
+        checkNotCancelled();
         URI resolvableURI = fileURIMap.get(uri);
         File newFile = new File(resolvableURI);
         try {
-            OutputStream fileOS = new FileOutputStream(newFile);
-            IOUtils.copy(content, fileOS);
-            fileOS.close();
-        } catch (FileNotFoundException e) {
+            resourceSizes.put(newFile, bufferedCopy.copy(content, newFile.toPath()));
+        } catch (FileNotFoundException | NoSuchFileException e) {
             throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e);
         } catch (IOException e) {
             throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e);
         }
-    }
-
-    /**
-     *
-     * @param path
-     *        Logical file path (including filename) of the resource relative to
-     *        the package.
-     * @param type
-     *        Resource type (e.g. data, metadata, etc).
-     * @param content The stream containing the resource's content
-     * @return the URI
-     */
-    @Override
-    public URI createResource(String path, PackageResourceType type, InputStream content) {
-        URI resourceUri = reserveResource(buildPath(path), type);
-        putResource(resourceUri, content);
-
-        return resourceUri;
+        recordResource(newFile, -1);
     }
 
     /**
      * {@inheritDoc}
-     * The process of assembling a BagIt bag includes these following steps:
-     * <ul>
-     *     <li>Create bagit.txt file</li>
-     *     <li>Create bag-info.text file</li>
-     *     <li>Calculate checksums for each file in bag</li>
-     *     <li>Write manifest files</li>
-     *     <li>Write tag-manifest files</li>
-     * </ul>
-     *
-     *
-     * @return A {@link org.dataconservancy.packaging.tool.api.Package} object which encapsulate the following elements
-     * regarding the package:
-     * <ul>
-     *     <li> serialize {@code InputStream} to the content of the produced package.</li>
-     *     <li> packageName {@code String} value which is the suggested file name for the package file</li>
-     *     <li> contentType {@code String} value which indicate the content type of the package content</li>
-     * </ul>
+     * <p>
+     * The content is written straight into the staged bag. The resource is journaled, if assembly is journaled, once
+     * the stream is closed.
+     * </p>
      */
     @Override
-    public Package assemblePackage() {
-        File finalFile;
-        Package pkg = null;
+    public OutputStream openResource(URI uri) {
+        checkNotCancelled();
+        final File newFile = new File(fileURIMap.get(uri));
+        OutputStream out;
         try {
+            out = new BufferedOutputStream(throttled(new FileOutputStream(newFile)));
+        } catch (FileNotFoundException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e);
+        }
+        return new CountingOutputStream(out) {
 
-            //Write bag-info.txt
-            File bagInfoFile = this.writeBagInfoTxt();
-            tagFiles.add(bagInfoFile);
-
-            //Write bagit.txt
-            File bagItFile = this.writeBagItTxt();
-            tagFiles.add(bagItFile);
-
-            //calculate payload files checksums
-            Map<File, List<Checksum>> payloadFileChecksums =
-                    checksumService.generatePackageFileChecksums(dataFiles, checksumAlgs);
-
-            //write manifest files.
-            for (String alg : checksumAlgs) {
-                String manifestName = "manifest-" + alg + ".txt";
-                File manifestFile = this.writeManifestFile(alg, payloadFileChecksums, manifestName);
-                tagFiles.add(manifestFile);
-            }
-
-            //calculate checksums for tag files, including the newly create manifest files.
-            Map<File, List<Checksum>> tagFileChecksums =
-                    checksumService.generatePackageFileChecksums(tagFiles, checksumAlgs);
-
-            for (String alg: checksumAlgs) {
-                String tagManifestName = "tagmanifest-" + alg + ".txt";
-                File tagManifestFile = this.writeManifestFile(alg, tagFileChecksums, tagManifestName);
-                tagFiles.add(tagManifestFile);
-            }
-
-            //if we are exploding the package, we don't create an archive bag
-            if(!isExploded) {
-
-                boolean useCompression = (compressionFormat != null && !compressionFormat.isEmpty() && !compressionFormat.equals("none"));
-
-                File archivedBag = this.archiveBag();
-                if (useCompression) {
-                   finalFile = this.compressFile(archivedBag);
-                } else {
-                   finalFile = archivedBag;
-                }
-
-
-                String contentType;
+            private boolean closed = false;
 
-                if (useCompression) {
-                    contentType = SupportedMimeTypes.getMimeType(compressionFormat);
-                } else {
-                    contentType = SupportedMimeTypes.getMimeType(archivingFormat);
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
                 }
+                closed = true;
+                super.close();
+                resourceSizes.put(newFile, getByteCount());
+                recordResource(newFile, -1);
+            }
+        };
+    }
 
-
-                pkg = new org.dataconservancy.packaging.tool.impl.PackageImpl(finalFile, finalFile.getName(), contentType);
-
-                //remove unneeded files
-                FileUtils.deleteDirectory(this.bagBaseDir);
-                if (useCompression) {
-                    FileUtils.forceDelete(archivedBag);
+    /**
+     * Records a resource completely written into the staged bag in the journal, along with its checksums, or, when
+     * generation is pipelined, only records its checksums, so that the file is checksummed while it is likely to be
+     * cached rather than when the bag is assembled. Does nothing otherwise.
+     * @param file the staged file
+     * @param sourceModified modification time of the file it was staged from, or -1 if it was written from a stream
+     */
+    private void recordResource(File file, long sourceModified) {
+        if (journal == null && writtenChecksums == null) {
+            return;
+        }
+        try (InputStream in = throttled(new FileInputStream(file))) {
+            Map<String, String> digests = MultiDigestReader.digest(in, checksumAlgs);
+            if (journal != null) {
+                journal.record(file, sourceModified, digests);
+            } else {
+                List<Checksum> checksums = new ArrayList<>();
+                for (String alg : checksumAlgs) {
+                    checksums.add(new ChecksumImpl(alg, digests.get(alg)));
                 }
+                writtenChecksums.put(checksumKey(file), checksums);
             }
+        } catch (NoSuchAlgorithmException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_NO_SUCH_CHECKSUM_ALGORITHM_EXCEPTION, e,
+                    checksumAlgs.toString());
         } catch (IOException e) {
-            log.warn("Could not removed files and/or directory created during package generation." + e.getMessage());
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when checksumming " + file.getPath());
         }
-
-        return pkg;
     }
 
-    @Override
-    public void addParameter(String key, String value) {
-        if (params == null) {
-            params = new PackageGenerationParameters();
+    /**
+     * Determines if a journaled file is complete, i.e. its size is the recorded one and all checksums are known.
+     * @param file the staged file
+     * @return the journal entry of the file, or null if the file is not journaled or is incomplete
+     */
+    private AssemblyJournal.Entry getJournalEntry(File file) {
+        AssemblyJournal.Entry entry = journal.getEntry(file);
+        if (entry == null || entry.size != file.length() || !entry.digests.keySet().containsAll(checksumAlgs)) {
+            return null;
         }
-
-        params.addParam(key, value);
+        return entry;
     }
 
-    private File writeManifestFile(String alg, Map<File, List<Checksum>> fileChecksums, String fileName)
-            throws PackageToolException {
-        File manifestFile = new File(bagBaseDir, fileName);
+    /**
+     * Stages a payload file, using the first applicable staging strategy. This avoids copying the file through a
+     * stream.
+     * @param uri URI naming the reserved resource
+     * @param source the payload file
+     */
+    private void stageResource(URI uri, File source) {
+        Path target = new File(fileURIMap.get(uri)).toPath();
+        IOException lastException = null;
         try {
-            FileWriter writer = new FileWriter(manifestFile);
-            String newLine = System.getProperty("line.separator");
-            String lineFormat = "%s  %s";
-
-            Set<File> files = fileChecksums.keySet();
-
-            for (File file : files) {
-                List<Checksum> checksums = fileChecksums.get(file);
-                final String filePath = FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(bagBaseDir.getPath(), file));
-                for (Checksum checksum : checksums) {
-                    if (checksum.getAlgorithm().equals(alg)) {
-                        writer.write(String.format(lineFormat, checksum.getValue(),
-                                                   filePath + newLine));
+            if (checksumCache != null) {
+                stagedSources.put(target.toFile(), new StagedSource(source));
+            }
+            if (journal != null) {
+                AssemblyJournal.Entry entry = getJournalEntry(target.toFile());
+                if (entry != null && entry.size == source.length() && entry.sourceModified == source.lastModified()) {
+                    log.debug("Skipping " + source + ", already staged");
+                    resourceSizes.put(target.toFile(), entry.size);
+                    addStagedFile(target.toFile(), null);
+                    return;
+                }
+            }
+            Files.deleteIfExists(target);
+            resourceSizes.put(target.toFile(), source.length());
+            if (isDeduplicated && linkToStagedCopy(source, target)) {
+                return;
+            }
+            //the file is staged in a stripe directory, and linked into the bag
+            Path stagedFile = target;
+            if (stripeDirs.size() > 1) {
+                stagedFile = selectStripe(source).toPath()
+                        .resolve(bagBaseDir.getAbsoluteFile().toPath().relativize(target));
+                if (!stagedFile.equals(target)) {
+                    Files.createDirectories(stagedFile.getParent());
+                    Files.deleteIfExists(stagedFile);
+                }
+            }
+            for (PayloadStagingStrategy strategy : stagingStrategies) {
+                if (strategy.supports(source.toPath(), stagedFile)) {
+                    try {
+                        strategy.stage(source.toPath(), stagedFile);
+                        if (!stagedFile.equals(target)) {
+                            Files.createSymbolicLink(target, stagedFile);
+                        }
+                        recordResource(target.toFile(), source.lastModified());
+                        if (isDeduplicated) {
+                            addStagedFile(target.toFile(), null);
+                        }
+                        return;
+                    } catch (IOException e) {
+                        log.debug("Staging " + source + " with " + strategy.getClass().getSimpleName() +
+                                " failed, falling back: " + e.getMessage());
+                        lastException = e;
                     }
                 }
             }
-            writer.close();
         } catch (IOException e) {
-            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
-                    "Exception occurred when writing one of the manifest files.");
+            lastException = e;
         }
-        return manifestFile;
+        throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, lastException,
+                "Exception occurred when staging " + source.getPath());
     }
 
-    private File writeBagInfoTxt() throws PackageToolException {
-        File bagInfoFile = new File(bagBaseDir, "bag-info.txt");
-        try {
-            FileWriter writer = new FileWriter(bagInfoFile);
-            String newLine = System.getProperty("line.separator");
-            String lineFormat = "%s: %s ";
-
-            Set<String> bagInfoFields = params.getKeys();
-            for (String field : bagInfoFields) {
-                List<String> fieldValues = params.getParam(field);
-                for (String value : fieldValues) {
-                    writer.write(String.format(lineFormat, field, value) + newLine);
+    /**
+     * Selects the stripe directory a payload file is staged in: one on the same file store as the file when files are
+     * hard linked, as linking does not copy any bytes, otherwise the one the fewest bytes have been copied into.
+     * @param source the payload file
+     * @return the stripe directory
+     */
+    private synchronized File selectStripe(File source) {
+        if (stagingStrategies.get(0) instanceof HardLinkStagingStrategy) {
+            try {
+                int sameStore = stripeStores.indexOf(Files.getFileStore(source.toPath()));
+                if (sameStore >= 0) {
+                    return stripeDirs.get(sameStore);
                 }
+            } catch (IOException | UnsupportedOperationException e) {
+                log.debug("Could not read the file store of " + source + ": " + e.getMessage());
+            }
+        }
+        int selected = 0;
+        for (int i = 1; i < stripeSizes.length; i++) {
+            if (stripeSizes[i] < stripeSizes[selected]) {
+                selected = i;
             }
+        }
+        stripeSizes[selected] += source.length();
+        return stripeDirs.get(selected);
+    }
 
-            writer.write(String.format(lineFormat, BagItParameterNames.BAG_SIZE,
-                    FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(bagBaseDir))) + newLine);
-            writer.write(String.format(lineFormat, BagItParameterNames.PAYLOAD_OXUM,
-                    FileUtils.sizeOfDirectory(payloadDir) + "." + dataFiles.size()) + newLine);
-            writer.write(String.format(lineFormat, BagItParameterNames.BAGGING_DATE, (new DateTime().toDate()) + newLine));
+    /**
+     * Stages a payload file as a hard link to an identical file already staged, if there is one. Files are compared
+     * by size first, then by checksums, so that files of a unique size are not read, and files whose checksums match
+     * are compared byte for byte, so that a checksum collision cannot merge different files.
+     * @param source the payload file
+     * @param target the staged file
+     * @return true if the file was staged as a hard link
+     */
+    private boolean linkToStagedCopy(File source, Path target) {
+        List<File> candidates = null;
+        if (stagedFilesBySize.containsKey(source.length())) {
+            List<File> stagedFiles = stagedFilesBySize.get(source.length());
+            synchronized (stagedFiles) {
+                candidates = new ArrayList<>(stagedFiles);
+            }
+        }
+        List<Checksum> sourceChecksums = null;
+        if (candidates != null) {
+            sourceChecksums = checksumService.generatePackageFileChecksums(Collections.singleton(source), checksumAlgs)
+                    .get(source);
+            for (File candidate : candidates) {
+                List<Checksum> candidateChecksums = stagedFileChecksums.computeIfAbsent(candidate, file ->
+                        checksumService.generatePackageFileChecksums(Collections.singleton(file), checksumAlgs)
+                                .get(file));
+                if (candidateChecksums.equals(sourceChecksums) && hasSameContent(source, candidate)) {
+                    try {
+                        Files.createLink(target, candidate.toPath());
+                    } catch (IOException | UnsupportedOperationException e) {
+                        log.debug("Could not link " + target + " to its copy " + candidate + ": " + e.getMessage());
+                        break;
+                    }
+                    log.debug("Staged " + source + " as a link to its copy " + candidate);
+                    if (writtenChecksums != null) {
+                        writtenChecksums.put(checksumKey(target.toFile()), sourceChecksums);
+                    } else {
+                        recordResource(target.toFile(), source.lastModified());
+                    }
+                    return true;
+                }
+            }
+        }
+        //the file is staged by a staging strategy, its checksums are kept for comparison with later files
+        if (sourceChecksums != null) {
+            stagedFileChecksums.put(target.toFile(), sourceChecksums);
+        }
+        return false;
+    }
 
-            writer.close();
+    /**
+     * Compares the content of two files byte for byte.
+     * @param file a file
+     * @param otherFile another file of the same size
+     * @return true if the files have the same content
+     */
+    private boolean hasSameContent(File file, File otherFile) {
+        try (InputStream in = new BufferedInputStream(throttled(new FileInputStream(file)));
+             InputStream otherIn = new BufferedInputStream(throttled(new FileInputStream(otherFile)))) {
+            return IOUtils.contentEquals(in, otherIn);
         } catch (IOException e) {
-            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
-                    "Exception occurred when writing bag-info.txt file.");
+            log.debug("Could not compare " + file + " to " + otherFile + ": " + e.getMessage());
+            return false;
         }
-
-        return bagInfoFile;
     }
 
-    private File writeBagItTxt() throws PackageToolException {
-        File bagItFile = new File(bagBaseDir, "bagit.txt");
+    /**
+     * Keeps track of a staged payload file, for comparison with later files when deduplicating.
+     * @param file the staged file
+     * @param checksums the checksums of the file, or null if not known yet
+     */
+    private void addStagedFile(File file, List<Checksum> checksums) {
+        stagedFilesBySize.computeIfAbsent(file.length(), size -> Collections.synchronizedList(new ArrayList<>()))
+                .add(file);
+        if (checksums != null) {
+            stagedFileChecksums.put(file, checksums);
+        }
+    }
+
+    /**
+     *
+     * @param path
+     *        Logical file path (including filename) of the resource relative to
+     *        the package.
+     * @param type
+     *        Resource type (e.g. data, metadata, etc).
+     * @param content The stream containing the resource's content
+     * @return the URI
+     */
+    @Override
+    public URI createResource(String path, PackageResourceType type, InputStream content) {
+        URI resourceUri = reserveResource(buildPath(path), type);
+        putResource(resourceUri, content);
+
+        return resourceUri;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A data resource is added from the file itself: the file is staged, or listed in fetch.txt, without being read.
+     * </p>
+     */
+    @Override
+    public URI createResource(String path, PackageResourceType type, File content) {
+        URI resourceUri = reserveResource(buildPath(path), type);
+        if (type.equals(PackageResourceType.DATA) && content.isFile()) {
+            writeFileResource(resourceUri, content);
+        } else {
+            copyFileResource(resourceUri, content);
+        }
+
+        return resourceUri;
+    }
+
+    /**
+     * Writes a data resource whose content is the given file. The file is either listed in fetch.txt or staged.
+     * Only a file at the path the resource was reserved for, under the content root location, may be fetched.
+     * @param uri URI naming the reserved resource
+     * @param source the file
+     */
+    private void writeFileResource(URI uri, File source) {
+        String path = reservedDataPaths.get(uri);
+        if (path != null && isContentFile(path, source) && isFetched(path, source)) {
+            addFetchEntry(uri, path, source);
+        } else {
+            stageResource(uri, source);
+        }
+    }
+
+    /**
+     * Writes a resource by copying the content of the given file.
+     * @param uri URI naming the reserved resource
+     * @param source the file
+     */
+    private void copyFileResource(URI uri, File source) {
+        try (InputStream in = new FileInputStream(source)) {
+            putResource(uri, in);
+        } catch (FileNotFoundException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e);
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<URI> putResourceAsync(URI uri, InputStream content) {
+        return submitWrite(uri, () -> {
+            try (InputStream in = content) {
+                putResource(uri, in);
+            } catch (IOException e) {
+                log.debug("Could not close content stream of " + uri + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A data resource is written from the file itself, as by
+     * {@link #createResource(String, PackageResourceType, File)}.
+     * </p>
+     */
+    @Override
+    public CompletableFuture<URI> putResourceAsync(URI uri, File content) {
+        return submitWrite(uri, () -> {
+            if (reservedDataPaths.containsKey(uri) && content.isFile()) {
+                writeFileResource(uri, content);
+            } else {
+                copyFileResource(uri, content);
+            }
+        });
+    }
+
+    /**
+     * Performs a write on the write executor, once a permit to do so is acquired.
+     * @param uri URI naming the resource written
+     * @param write the write
+     * @return a future completed with the URI once the resource is written
+     */
+    private CompletableFuture<URI> submitWrite(URI uri, Runnable write) {
+        checkNotCancelled();
+        ExecutorService executor = getWriteExecutor();
+        try {
+            //waits for a permit in steps, so that a cancellation while waiting is noticed
+            while (!writePermits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                checkNotCancelled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Interrupted while waiting to write " + uri);
+        }
+        CompletableFuture<URI> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    write.run();
+                    return uri;
+                } finally {
+                    writePermits.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            writePermits.release();
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Could not schedule the write of " + uri);
+        }
+        synchronized (pendingWrites) {
+            pendingWrites.add(future);
+        }
+        return future;
+    }
+
+    private synchronized ExecutorService getWriteExecutor() {
+        if (writeExecutor == null) {
+            int threads = 4;
+            int queueDepth = 64;
+            String threadsValue = params.getParam(GeneralParameterNames.ASYNC_WRITE_THREADS, 0);
+            if (threadsValue != null) {
+                threads = parseIntParam(GeneralParameterNames.ASYNC_WRITE_THREADS, threadsValue);
+            }
+            String queueDepthValue = params.getParam(GeneralParameterNames.ASYNC_WRITE_QUEUE_DEPTH, 0);
+            if (queueDepthValue != null) {
+                queueDepth = parseIntParam(GeneralParameterNames.ASYNC_WRITE_QUEUE_DEPTH, queueDepthValue);
+            }
+            if (threads < 1 || queueDepth < 0) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                        String.format("Asynchronous writes need at least one thread and a queue depth of at least " +
+                                "zero, got %d threads and a queue depth of %d.", threads, queueDepth));
+            }
+            writePermits = new Semaphore(threads + queueDepth);
+            //daemon threads, so that a package which is never assembled does not keep the JVM from exiting
+            writeExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "package-resource-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return writeExecutor;
+    }
+
+    /**
+     * Waits for all asynchronous writes to complete, and stops the threads performing them.
+     * @throws PackageToolException if one of the writes failed
+     */
+    private void awaitPendingWrites() {
+        List<CompletableFuture<URI>> writes;
+        synchronized (pendingWrites) {
+            writes = new ArrayList<>(pendingWrites);
+            pendingWrites.clear();
+        }
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[writes.size()])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PackageToolException) {
+                throw (PackageToolException) e.getCause();
+            }
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, (Exception) e.getCause(),
+                    "Exception occurred when writing package resources.");
+        } finally {
+            synchronized (this) {
+                if (writeExecutor != null) {
+                    writeExecutor.shutdown();
+                    writeExecutor = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Writes which have not started are dropped, the threads performing the others are interrupted, and the checksum
+     * cache and I/O throttle are released. The staged bag is left in place: if assembly is journaled, the journal is
+     * kept, so that the resources it records are not staged again by a later assembly of the package.
+     * </p>
+     */
+    @Override
+    public void cancel() {
+        cancelled = true;
+        List<CompletableFuture<URI>> writes;
+        synchronized (pendingWrites) {
+            writes = new ArrayList<>(pendingWrites);
+            pendingWrites.clear();
+        }
+        for (CompletableFuture<URI> write : writes) {
+            write.cancel(true);
+        }
+        synchronized (this) {
+            if (writeExecutor != null) {
+                writeExecutor.shutdownNow();
+                writeExecutor = null;
+            }
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            if (checksumCache != null) {
+                checksumCache.close();
+            }
+        } catch (IOException e) {
+            log.warn("Could not close the resources of a cancelled package assembly: " + e.getMessage());
+        }
+        if (ioThrottle != null) {
+            ioThrottle.unregister();
+        }
+    }
+
+    /**
+     * @throws PackageToolException if the assembly has been cancelled
+     */
+    private void checkNotCancelled() {
+        if (cancelled) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION,
+                    "Assembly of the package was cancelled.");
+        }
+    }
+
+    /**
+     * Determines if a payload file is listed in fetch.txt instead of being copied into the bag, either because it
+     * is named by a fetch-path parameter, or because it reaches the fetch size threshold.
+     * @param path the path of the file, relative to the content root location
+     * @param source the file
+     * @return true if the file is to be fetched
+     */
+    private boolean isFetched(String path, File source) {
+        List<String> fetchPaths = params.getParam(BagItParameterNames.FETCH_PATH);
+        if (fetchPaths != null) {
+            String unixPath = FilePathUtil.convertToUnixSlashes(path).replaceFirst("^/+", "");
+            for (String fetchPath : fetchPaths) {
+                if (FilePathUtil.convertToUnixSlashes(fetchPath).replaceFirst("^/+", "").equals(unixPath)) {
+                    return true;
+                }
+            }
+        }
+        return fetchSizeThreshold > 0 && source.length() >= fetchSizeThreshold;
+    }
+
+    /**
+     * Determines if a file is the one at the given path under the content root location.
+     * @param path the path, relative to the content root location
+     * @param source the file
+     * @return true if the content root location is set, and the file is at the path under it
+     */
+    private boolean isContentFile(String path, File source) {
+        if (params.getParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, 0) == null) {
+            return false;
+        }
+        return getContentFile(path).getAbsoluteFile().toPath().normalize()
+                .equals(source.getAbsoluteFile().toPath().normalize());
+    }
+
+    /**
+     * Records a reserved payload resource as a fetch.txt entry.
+     * @param uri URI naming the reserved resource
+     * @param path the path of the file, relative to the content root location
+     * @param source the payload file
+     */
+    private void addFetchEntry(URI uri, String path, File source) {
+        File target = new File(fileURIMap.get(uri));
+        dataFiles.remove(target);
+
+        String url;
+        String fetchBaseUrl = params.getParam(BagItParameterNames.FETCH_BASE_URL, 0);
+        if (fetchBaseUrl != null) {
+            try {
+                String encodedPath = new URI(null, null, FilePathUtil.convertToUnixSlashes(path)
+                        .replaceFirst("^/+", ""), null).getRawPath();
+                url = fetchBaseUrl.replaceFirst("/+$", "") + "/" + encodedPath;
+            } catch (URISyntaxException e) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_URI_GENERATION_EXP, e);
+            }
+        } else {
+            url = source.toURI().toString();
+        }
+
+        log.info("Listing " + path + " in fetch.txt as " + url);
+        fetchEntries.add(new FetchEntry(url, source, target));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The process of assembling a BagIt bag includes these following steps:
+     * <ul>
+     *     <li>Create bagit.txt file</li>
+     *     <li>Create bag-info.text file</li>
+     *     <li>Calculate checksums for each file in bag</li>
+     *     <li>Write manifest files</li>
+     *     <li>Write tag-manifest files</li>
+     * </ul>
+     *
+     *
+     * @return A {@link org.dataconservancy.packaging.tool.api.Package} object which encapsulate the following elements
+     * regarding the package:
+     * <ul>
+     *     <li> serialize {@code InputStream} to the content of the produced package.</li>
+     *     <li> packageName {@code String} value which is the suggested file name for the package file</li>
+     *     <li> contentType {@code String} value which indicate the content type of the package content</li>
+     * </ul>
+     */
+    @Override
+    public Package assemblePackage() {
+        checkNotCancelled();
+        awaitPendingWrites();
+        checkNotCancelled();
+
+        Package pkg = null;
+        try {
+            if (journal != null) {
+                removeUnreservedFiles();
+            }
+            if (!isExploded && maxVolumeSize > 0 && estimateBagSize() > maxVolumeSize) {
+                pkg = assembleVolumes();
+            } else if (isStreamed) {
+                assembleBag(bagBaseDir, dataFiles, fetchEntries, tagFiles,
+                        Collections.<String, String>emptyMap());
+                final File bagDir = bagBaseDir;
+                String packageFileName = bagDir.getName() + "." + archivingFormat +
+                        (useCompression() ? "." + getCompressionExtension() : "");
+                //the staged bag is kept until the package is cleaned up, as it is archived each time it is read
+                List<File> stagedContent = stripeDirs.isEmpty() ? Collections.singletonList(bagDir) : stripeDirs;
+                //the throttle limits the reads of each serialization, so it is registered while one is produced
+                final String throttleName = params.getParam(GeneralParameterNames.PACKAGE_NAME, 0);
+                pkg = new StreamingPackage(stagedContent, packageFileName, getContentType(), out -> {
+                    if (ioThrottle != null) {
+                        ioThrottle.register(throttleName);
+                    }
+                    try {
+                        writeArchive(bagDir, useCompression() ? createCompressorOutputStream(out) : out);
+                    } catch (CompressorException e) {
+                        throw new IOException("Compression format " + compressionFormat + " is not supported", e);
+                    } finally {
+                        if (ioThrottle != null) {
+                            ioThrottle.unregister();
+                        }
+                    }
+                });
+            } else {
+                File finalFile = assembleBag(bagBaseDir, dataFiles, fetchEntries, tagFiles,
+                        Collections.<String, String>emptyMap());
+
+                //if we are exploding the package, we don't create an archive bag
+                if (!isExploded) {
+                    pkg = new org.dataconservancy.packaging.tool.impl.PackageImpl(finalFile, finalFile.getName(),
+                            getContentType());
+
+                    //remove unneeded files
+                    FileUtils.deleteDirectory(this.bagBaseDir);
+                    deleteStripes();
+                }
+            }
+            if (journal != null) {
+                journal.delete();
+            }
+        } catch (IOException e) {
+            log.warn("Could not removed files and/or directory created during package generation." + e.getMessage());
+        } finally {
+            try {
+                if (checksumCache != null) {
+                    checksumCache.close();
+                }
+            } catch (IOException e) {
+                log.warn("Could not close checksum cache: " + e.getMessage());
+            }
+            if (ioThrottle != null) {
+                ioThrottle.unregister();
+            }
+        }
+
+        return pkg;
+    }
+
+    /**
+     * Writes the tag files of a staged bag and, unless the package is exploded, serializes it.
+     * @param bagDir the base directory of the staged bag
+     * @param bagDataFiles the payload files of the bag
+     * @param bagFetchEntries the payload files of the bag which are listed in fetch.txt
+     * @param bagTagFiles the tag files already in the bag. Tag files written by this method are added to it.
+     * @param extraBagInfo additional fields to write to bag-info.txt
+     * @return the serialized bag, or null if the package is exploded or streamed
+     * @throws IOException if intermediate files could not be removed
+     */
+    private File assembleBag(File bagDir, Set<File> bagDataFiles, List<FetchEntry> bagFetchEntries,
+                             Set<File> bagTagFiles, Map<String, String> extraBagInfo) throws IOException {
+        //Write bag-info.txt
+        long payloadSize = sizeOf(bagDataFiles);
+        long fetchedSize = 0;
+        for (FetchEntry entry : bagFetchEntries) {
+            fetchedSize += entry.source.length();
+        }
+        File bagInfoFile = this.writeBagInfoTxt(bagDir, payloadSize + fetchedSize,
+                bagDataFiles.size() + bagFetchEntries.size(), payloadSize + sizeOf(bagTagFiles), extraBagInfo);
+        bagTagFiles.add(bagInfoFile);
+
+        //Write bagit.txt
+        File bagItFile = this.writeBagItTxt(bagDir);
+        bagTagFiles.add(bagItFile);
+
+        //Write fetch.txt
+        if (!bagFetchEntries.isEmpty()) {
+            bagTagFiles.add(this.writeFetchTxt(bagDir, bagFetchEntries));
+        }
+
+        //calculate payload files checksums, fetched files are checksummed at their source
+        checkNotCancelled();
+        Map<File, List<Checksum>> payloadFileChecksums = generatePayloadChecksums(bagDir, bagDataFiles);
+        if (!bagFetchEntries.isEmpty()) {
+            Set<File> fetchedFiles = new HashSet<>();
+            for (FetchEntry entry : bagFetchEntries) {
+                fetchedFiles.add(entry.source);
+            }
+            Map<File, List<Checksum>> fetchedFileChecksums =
+                    checksumService.generatePackageFileChecksums(fetchedFiles, checksumAlgs);
+            for (FetchEntry entry : bagFetchEntries) {
+                payloadFileChecksums.put(entry.target, fetchedFileChecksums.get(entry.source));
+            }
+        }
+
+        //write manifest files.
+        ManifestWriter manifestWriter = new ManifestWriter(bagDir, checksumAlgs);
+        bagTagFiles.addAll(this.writeManifestFiles(manifestWriter, "manifest-", payloadFileChecksums));
+
+        //calculate checksums for tag files, including the newly create manifest files.
+        Map<File, List<Checksum>> tagFileChecksums = generateChecksums(bagDir, bagTagFiles);
+
+        bagTagFiles.addAll(this.writeManifestFiles(manifestWriter, "tagmanifest-", tagFileChecksums));
+
+        if (isExploded || isStreamed) {
+            return null;
+        }
+
+        checkNotCancelled();
+        File archivedBag = this.archiveBag(bagDir);
+        if (!useCompression()) {
+            return archivedBag;
+        }
+        File compressedBag = this.compressFile(archivedBag);
+        FileUtils.forceDelete(archivedBag);
+        return compressedBag;
+    }
+
+    /**
+     * Calculates the checksums of payload files. When assembly is journaled, the checksums recorded in the journal are
+     * used for the files which have not changed since they were staged. When checksums are cached, files are
+     * checksummed at the source they were staged from, which is the file whose checksums are cached across bags,
+     * unless the source has been modified since it was staged, in which case the staged file is checksummed.
+     * @param bagDir the base directory of the bag, which is the staged bag or one of its volumes
+     * @param bagDataFiles the payload files
+     * @return the checksums of each file
+     */
+    private Map<File, List<Checksum>> generatePayloadChecksums(File bagDir, Set<File> bagDataFiles) {
+        if (journal == null && checksumCache == null) {
+            return generateChecksums(bagDir, bagDataFiles);
+        }
+        Map<File, List<Checksum>> checksums = new HashMap<>();
+        Map<File, File> sourceFiles = new HashMap<>();
+        Set<File> unresolvedFiles = new HashSet<>();
+        for (File file : bagDataFiles) {
+            //volumes hold their payload at the same path as the staged bag
+            File stagedFile = new File(bagBaseDir, FilePathUtil.relativizePath(bagDir.getPath(), file));
+            AssemblyJournal.Entry entry = journal != null ? getJournalEntry(stagedFile) : null;
+            if (entry != null && entry.size == file.length()) {
+                List<Checksum> fileChecksums = new ArrayList<>();
+                for (String alg : checksumAlgs) {
+                    fileChecksums.add(new ChecksumImpl(alg, entry.digests.get(alg)));
+                }
+                checksums.put(file, fileChecksums);
+                continue;
+            }
+            StagedSource source = stagedSources.get(stagedFile);
+            if (source != null && source.isUnchanged() && source.length == file.length()
+                    && !sourceFiles.containsKey(source.file)) {
+                sourceFiles.put(source.file, file);
+            } else {
+                unresolvedFiles.add(file);
+            }
+        }
+        for (Map.Entry<File, List<Checksum>> sourceChecksums :
+                checksumService.generatePackageFileChecksums(sourceFiles.keySet(), checksumAlgs).entrySet()) {
+            checksums.put(sourceFiles.get(sourceChecksums.getKey()), sourceChecksums.getValue());
+        }
+        checksums.putAll(checksumService.generatePackageFileChecksums(unresolvedFiles, checksumAlgs));
+        return checksums;
+    }
+
+    /**
+     * Calculates the checksums of files of the bag, using the checksums computed when they were written, if any.
+     * @param bagDir the base directory of the bag, which is the staged bag or one of its volumes
+     * @param files the files
+     * @return the checksums of each file
+     */
+    private Map<File, List<Checksum>> generateChecksums(File bagDir, Set<File> files) {
+        if (writtenChecksums == null) {
+            return checksumService.generatePackageFileChecksums(files, checksumAlgs);
+        }
+        Map<File, List<Checksum>> checksums = new HashMap<>();
+        Set<File> unresolvedFiles = new HashSet<>();
+        for (File file : files) {
+            //volumes hold their files at the same path as the staged bag
+            File stagedFile = new File(bagBaseDir, FilePathUtil.relativizePath(bagDir.getPath(), file));
+            List<Checksum> fileChecksums = writtenChecksums.get(checksumKey(stagedFile));
+            if (fileChecksums != null) {
+                checksums.put(file, fileChecksums);
+            } else {
+                unresolvedFiles.add(file);
+            }
+        }
+        checksums.putAll(checksumService.generatePackageFileChecksums(unresolvedFiles, checksumAlgs));
+        return checksums;
+    }
+
+    private static Path checksumKey(File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    /**
+     * Removes the files left in the staged bag by an interrupted assembly which have not been reserved since, such as
+     * metadata resources with generated names and tag files.
+     * @throws IOException if a file could not be removed
+     */
+    private void removeUnreservedFiles() throws IOException {
+        Set<Path> reservedFiles = new HashSet<>();
+        for (File file : dataFiles) {
+            reservedFiles.add(file.toPath());
+        }
+        for (File file : tagFiles) {
+            reservedFiles.add(file.toPath());
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(bagBaseDir.toPath())) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            if (Files.isRegularFile(path) && !reservedFiles.contains(path)) {
+                log.debug("Removing " + path + ", left by an interrupted assembly");
+                Files.delete(path);
+            } else if (Files.isDirectory(path) && !path.equals(bagBaseDir.toPath())
+                    && !path.equals(payloadDir.toPath()) && isEmptyDirectory(path)) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static boolean isEmptyDirectory(Path dir) throws IOException {
+        try (Stream<Path> children = Files.list(dir)) {
+            return !children.findAny().isPresent();
+        }
+    }
+
+    /**
+     * Splits the staged payload into volumes no larger than the maximum volume size, and serializes each volume as
+     * a bag of its own. Volumes are assembled concurrently.
+     * <p>
+     * Each volume is a complete bag, named {@code <package-name>-<n>-of-<total>}, holding a subset of the payload
+     * at the same {@code data/} path as in the unsplit bag. Its bag-info.txt identifies the group it belongs to and
+     * its position in it. Metadata resources (e.g. ORE ReMs) describe the whole package and are placed in the first
+     * volume, as are the fetch.txt entries. A group description, {@code <package-name>-group.txt}, lists all volumes.
+     * </p>
+     * @return a {@code MultiVolumePackage} containing the volumes
+     * @throws IOException if intermediate files could not be removed
+     */
+    private Package assembleVolumes() throws IOException {
+        List<List<File>> partitions = partitionPayload(dataFiles, estimateMetadataSize());
+        final int volumeCount = partitions.size();
+        String groupId = params.getParam(BagItParameterNames.BAG_GROUP_ID, 0);
+        if (groupId == null) {
+            groupId = bagBaseDir.getName();
+        }
+        log.info("Splitting package " + bagBaseDir.getName() + " into " + volumeCount + " volumes");
+
+        //move the staged files into the volumes; a rename, as they share the staging location
+        List<Callable<File>> volumeTasks = new ArrayList<>();
+        for (int i = 0; i < volumeCount; i++) {
+            final int sequenceNo = i + 1;
+            final File volumeDir = new File(packageLocationDir,
+                    String.format("%s-%d-of-%d", bagBaseDir.getName(), sequenceNo, volumeCount));
+            if (volumeDir.exists()) {
+                FileUtils.deleteDirectory(volumeDir);
+            }
+            final File volumePayloadDir = new File(volumeDir, "data");
+            final Set<File> volumeDataFiles = moveToVolume(partitions.get(i), volumeDir);
+            final Set<File> volumeTagFiles = sequenceNo == 1 ? moveToVolume(tagFiles, volumeDir) : new HashSet<>();
+            if (!volumePayloadDir.exists() && !volumePayloadDir.mkdirs()) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_DIR_CREATION_EXP,
+                        "Attempt to create a payload directory for bag at " + volumePayloadDir.getPath() + " failed.");
+            }
+
+            final Map<String, String> volumeBagInfo = new LinkedHashMap<>();
+            volumeBagInfo.put(BagItParameterNames.BAG_GROUP_ID, groupId);
+            volumeBagInfo.put(BagItParameterNames.BAG_COUNT, sequenceNo + " of " + volumeCount);
+            volumeBagInfo.put(Metadata.GROUP_IDENTIFIER, groupId);
+            volumeBagInfo.put(Metadata.GROUP_SEQUENCE_NO, String.valueOf(sequenceNo));
+            volumeBagInfo.put(Metadata.GROUP_TOTAL_NO, String.valueOf(volumeCount));
+
+            //fetched files take no space, list them all in the first volume along with the metadata
+            final List<FetchEntry> volumeFetchEntries = new ArrayList<>();
+            if (sequenceNo == 1) {
+                for (FetchEntry entry : fetchEntries) {
+                    File target = volumeDir.toPath().resolve(bagBaseDir.toPath().relativize(entry.target.toPath()))
+                            .toFile();
+                    volumeFetchEntries.add(new FetchEntry(entry.url, entry.source, target));
+                }
+            }
+
+            volumeTasks.add(() -> {
+                File volumeFile = assembleBag(volumeDir, volumeDataFiles, volumeFetchEntries,
+                        volumeTagFiles, volumeBagInfo);
+                FileUtils.deleteDirectory(volumeDir);
+                return volumeFile;
+            });
+        }
+
+        List<File> volumeFiles = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(volumeCount, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (Future<File> volumeFile : executor.invokeAll(volumeTasks)) {
+                volumeFiles.add(volumeFile.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Interrupted while assembling package volumes.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PackageToolException) {
+                throw (PackageToolException) e.getCause();
+            }
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, (Exception) e.getCause(),
+                    "Exception occurred when assembling package volumes.");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        File groupFile = writeGroupDescription(groupId, volumeFiles);
+
+        List<Package> volumes = new ArrayList<>();
+        for (File volumeFile : volumeFiles) {
+            volumes.add(new org.dataconservancy.packaging.tool.impl.PackageImpl(volumeFile, volumeFile.getName(),
+                    getContentType()));
+        }
+
+        //remove unneeded files
+        FileUtils.deleteDirectory(this.bagBaseDir);
+        deleteStripes();
+
+        return new MultiVolumePackage(groupFile, groupFile.getName(), volumes);
+    }
+
+    /**
+     * Partitions payload files into the fewest volumes whose estimated serialized size is within the maximum volume
+     * size. Files are assigned largest first to the currently smallest volume, which balances sizes across volumes.
+     * @param files the payload files
+     * @param metadataSize size of the metadata of the first volume, which holds all metadata resources
+     * @return the files of each volume
+     */
+    private List<List<File>> partitionPayload(Collection<File> files, long metadataSize) {
+        List<File> sortedFiles = new ArrayList<>(files);
+        long tagFilesSize = estimateTagFilesSize();
+        long totalSize = metadataSize;
+        for (File file : sortedFiles) {
+            long entrySize = estimatePayloadEntrySize(file);
+            if (entrySize + metadataSize > maxVolumeSize) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                        String.format("Payload file %s (%d bytes) does not fit in a volume of the specified " +
+                                "maximum size of %d bytes.", file.getPath(), file.length(), maxVolumeSize));
+            }
+            totalSize += entrySize;
+        }
+        //files of equal size are taken in the order of their paths, so that the partitioning does not depend on the order
+        //the files were staged in
+        sortedFiles.sort((a, b) -> a.length() != b.length() ? Long.compare(b.length(), a.length()) : a.compareTo(b));
+
+        int volumeCount = (int) Math.max(1, (totalSize + maxVolumeSize - 1) / maxVolumeSize);
+        while (true) {
+            List<List<File>> volumes = new ArrayList<>();
+            long[] volumeSizes = new long[volumeCount];
+            for (int i = 0; i < volumeCount; i++) {
+                volumes.add(new ArrayList<>());
+                volumeSizes[i] = tagFilesSize;
+            }
+            volumeSizes[0] = metadataSize;
+
+            boolean fits = true;
+            for (File file : sortedFiles) {
+                int smallest = 0;
+                for (int i = 1; i < volumeCount; i++) {
+                    if (volumeSizes[i] < volumeSizes[smallest]) {
+                        smallest = i;
+                    }
+                }
+                volumes.get(smallest).add(file);
+                volumeSizes[smallest] += estimatePayloadEntrySize(file);
+                if (volumeSizes[smallest] > maxVolumeSize) {
+                    fits = false;
+                    break;
+                }
+            }
+            if (fits) {
+                return volumes;
+            }
+            volumeCount++;
+        }
+    }
+
+    /**
+     * Estimates the space the staged bag takes when serialized as a single uncompressed archive.
+     */
+    private long estimateBagSize() {
+        long size = estimateMetadataSize();
+        for (File file : dataFiles) {
+            size += estimatePayloadEntrySize(file);
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the space the metadata of the first volume takes in an uncompressed archive: its tag files, the
+     * metadata resources with their tag manifest lines, and the files listed in fetch.txt, with their fetch.txt and
+     * manifest lines.
+     */
+    private long estimateMetadataSize() {
+        long size = estimateTagFilesSize();
+        for (File tagFile : tagFiles) {
+            size += estimateEntrySize(tagFile) + estimateManifestLinesSize(tagFile);
+        }
+        for (FetchEntry entry : fetchEntries) {
+            size += entry.url.getBytes(StandardCharsets.UTF_8).length + 21 + estimateManifestLinesSize(entry.target);
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the space the tag files written when a volume is assembled take in an uncompressed archive, not
+     * counting the lines listing payload files and metadata resources: bagit.txt, bag-info.txt, fetch.txt, a manifest
+     * and a tag manifest for each checksum algorithm, and the padding at the end of the archive.
+     */
+    private long estimateTagFilesSize() {
+        int tagFileCount = 3 + 2 * checksumAlgs.size();
+        long size = tagFileCount * (ENTRY_HEADER_ALLOWANCE + 2 * TAR_RECORD_SIZE) + TAR_BLOCK_SIZE;
+        for (String field : params.getKeys()) {
+            for (String value : params.getParam(field)) {
+                size += field.length() + 4 + value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        //tag manifest lines of the tag files themselves
+        size += (long) tagFileCount * checksumAlgs.size() * (MAX_DIGEST_HEX_LENGTH + 64);
+        return size;
+    }
+
+    /**
+     * Estimates the space a payload file takes in an uncompressed archive: the entry of the file and its lines in
+     * the manifests.
+     */
+    private long estimatePayloadEntrySize(File file) {
+        return estimateEntrySize(file) + estimateManifestLinesSize(file);
+    }
+
+    /**
+     * Estimates the space a file takes in an uncompressed archive: its content padded to whole records, plus an
+     * allowance for its header, the header holding a long name, and the entry of its directory.
+     */
+    private long estimateEntrySize(File file) {
+        long records = (file.length() + TAR_RECORD_SIZE - 1) / TAR_RECORD_SIZE;
+        return records * TAR_RECORD_SIZE + ENTRY_HEADER_ALLOWANCE + 2 * roundToRecord(bagPathLength(file) + 1);
+    }
+
+    /**
+     * Estimates the size of the lines listing a file in the manifests, one per checksum algorithm.
+     */
+    private long estimateManifestLinesSize(File file) {
+        return (long) checksumAlgs.size() * (MAX_DIGEST_HEX_LENGTH + 2 + bagPathLength(file) + 2);
+    }
+
+    /* Length in bytes of the path of a file in the bag, or of its absolute path if it is not in the staged bag */
+    private long bagPathLength(File file) {
+        Path path = file.toPath().startsWith(bagBaseDir.toPath())
+                ? bagBaseDir.toPath().relativize(file.toPath()) : file.getAbsoluteFile().toPath();
+        return path.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static long roundToRecord(long size) {
+        return (size + TAR_RECORD_SIZE - 1) / TAR_RECORD_SIZE * TAR_RECORD_SIZE;
+    }
+
+    /**
+     * Moves staged files from the bag base directory to the same relative location in a volume directory.
+     * @param files the staged files
+     * @param volumeDir the base directory of the volume
+     * @return the moved files
+     * @throws IOException if a file could not be moved
+     */
+    private Set<File> moveToVolume(Collection<File> files, File volumeDir) throws IOException {
+        Set<File> movedFiles = new HashSet<>();
+        Path basePath = bagBaseDir.toPath();
+        for (File file : files) {
+            Path target = volumeDir.toPath().resolve(basePath.relativize(file.toPath()));
+            Files.createDirectories(target.getParent());
+            Files.move(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            movedFiles.add(target.toFile());
+            Long size = resourceSizes.remove(file);
+            if (size != null) {
+                resourceSizes.put(target.toFile(), size);
+            }
+        }
+        return movedFiles;
+    }
+
+    /**
+     * Writes the description of a group of volumes next to the volumes themselves.
+     * @param groupId the group identifier
+     * @param volumeFiles the serialized volumes, in sequence order
+     * @return the group description file
+     */
+    private File writeGroupDescription(String groupId, List<File> volumeFiles) {
+        File groupFile = new File(packageLocationDir, bagBaseDir.getName() + "-group.txt");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(groupFile), ENCODING))) {
+            String newLine = System.getProperty("line.separator");
+            String lineFormat = "%s: %s ";
+
+            writer.write(String.format(lineFormat, Metadata.GROUP_IDENTIFIER, groupId) + newLine);
+            writer.write(String.format(lineFormat, Metadata.GROUP_TOTAL_NO, volumeFiles.size()) + newLine);
+            for (int i = 0; i < volumeFiles.size(); i++) {
+                File volumeFile = volumeFiles.get(i);
+                writer.write(newLine);
+                writer.write(String.format(lineFormat, Metadata.GROUP_SEQUENCE_NO, i + 1) + newLine);
+                writer.write(String.format(lineFormat, BagItParameterNames.PACKAGE_NAME, volumeFile.getName()) + newLine);
+                writer.write(String.format(lineFormat, Metadata.SIZE, volumeFile.length()) + newLine);
+            }
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when writing the package group description.");
+        }
+        return groupFile;
+    }
+
+    private boolean useCompression() {
+        return compressionFormat != null && !compressionFormat.isEmpty() && !compressionFormat.equals("none");
+    }
+
+    private String getContentType() {
+        if (useCompression()) {
+            return SupportedMimeTypes.getMimeType(compressionFormat);
+        } else {
+            return SupportedMimeTypes.getMimeType(archivingFormat);
+        }
+    }
+
+    @Override
+    public void addParameter(String key, String value) {
+        if (params == null) {
+            params = new PackageGenerationParameters();
+        }
+
+        params.addParam(key, value);
+    }
+
+    /**
+     * Writes a manifest for each checksum algorithm.
+     * @param manifestWriter the writer of the manifests of the bag
+     * @param prefix the prefix of the manifest names, i.e. "manifest-" or "tagmanifest-"
+     * @param fileChecksums the checksums of the files listed in the manifests
+     * @return the manifest files
+     */
+    private List<File> writeManifestFiles(ManifestWriter manifestWriter, String prefix,
+                                          Map<File, List<Checksum>> fileChecksums) throws PackageToolException {
         try {
-            FileWriter writer = new FileWriter(bagItFile);
+            return manifestWriter.write(prefix, fileChecksums);
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when writing one of the manifest files.");
+        }
+    }
+
+    /**
+     * Computes the total size of resources written into the staged bag, from the sizes recorded as they were written.
+     * @param files the staged files
+     * @return the total size of the files
+     */
+    private long sizeOf(Collection<File> files) {
+        long size = 0;
+        for (File file : files) {
+            Long fileSize = resourceSizes.get(file);
+            size += fileSize != null ? fileSize : file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Writes bag-info.txt, listing the generation parameters and the given fields, along with the size of the bag.
+     * @param bagDir the base directory of the staged bag
+     * @param payloadSize the size of the payload files, including the ones to be fetched
+     * @param payloadFileCount the number of payload files, including the ones to be fetched
+     * @param bagSize the size of the files in the bag
+     * @param extraBagInfo additional fields
+     * @return the bag-info.txt file
+     */
+    private File writeBagInfoTxt(File bagDir, long payloadSize, int payloadFileCount, long bagSize,
+                                 Map<String, String> extraBagInfo) throws PackageToolException {
+        File bagInfoFile = new File(bagDir, "bag-info.txt");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(bagInfoFile), ENCODING))) {
+            String newLine = System.getProperty("line.separator");
+            String lineFormat = "%s: %s ";
+
+            Set<String> bagInfoFields = params.getKeys();
+            if (isReproducible) {
+                bagInfoFields = new TreeSet<>(bagInfoFields);
+                bagInfoFields.removeAll(PRODUCTION_PARAMS);
+            }
+            for (String field : bagInfoFields) {
+                List<String> fieldValues = params.getParam(field);
+                for (String value : fieldValues) {
+                    writer.write(String.format(lineFormat, field, value) + newLine);
+                }
+            }
+            for (Map.Entry<String, String> field : extraBagInfo.entrySet()) {
+                writer.write(String.format(lineFormat, field.getKey(), field.getValue()) + newLine);
+            }
+
+            writer.write(String.format(lineFormat, BagItParameterNames.BAG_SIZE,
+                    FileUtils.byteCountToDisplaySize(bagSize)) + newLine);
+            writer.write(String.format(lineFormat, BagItParameterNames.PAYLOAD_OXUM,
+                    payloadSize + "." + payloadFileCount) + newLine);
+            if (isReproducible) {
+                writer.write(String.format(lineFormat, BagItParameterNames.BAGGING_DATE,
+                        reproducibleDate.toString("yyyy-MM-dd")) + newLine);
+            } else {
+                writer.write(String.format(lineFormat, BagItParameterNames.BAGGING_DATE, (new DateTime().toDate()) + newLine));
+            }
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when writing bag-info.txt file.");
+        }
+
+        return bagInfoFile;
+    }
+
+    /**
+     * Writes fetch.txt, listing the url, length and bag path of each payload file to be fetched.
+     * @param bagDir the base directory of the staged bag
+     * @param bagFetchEntries the payload files to be fetched
+     * @return the fetch.txt file
+     */
+    private File writeFetchTxt(File bagDir, List<FetchEntry> bagFetchEntries) throws PackageToolException {
+        File fetchFile = new File(bagDir, "fetch.txt");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fetchFile), ENCODING))) {
+            String newLine = System.getProperty("line.separator");
+            String lineFormat = "%s %d %s";
+
+            //entries are added as their files are written, possibly concurrently, so they are listed by path
+            Map<String, FetchEntry> entriesByPath = new TreeMap<>();
+            for (FetchEntry entry : bagFetchEntries) {
+                entriesByPath.put(FilePathUtil.convertToUnixSlashes(
+                        FilePathUtil.relativizePath(bagDir.getPath(), entry.target)), entry);
+            }
+            for (Map.Entry<String, FetchEntry> entry : entriesByPath.entrySet()) {
+                writer.write(String.format(lineFormat, entry.getValue().url, entry.getValue().source.length(),
+                        entry.getKey()) + newLine);
+            }
+        } catch (IOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when writing fetch.txt file.");
+        }
+        return fetchFile;
+    }
+
+    private File writeBagItTxt(File bagDir) throws PackageToolException {
+        File bagItFile = new File(bagDir, "bagit.txt");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(bagItFile), ENCODING))) {
             String newLine = System.getProperty("line.separator");
             String lineFormat = "%s: %s ";
 
             writer.write(String.format(lineFormat, BagItParameterNames.BAGIT_VERSION, VERSION) + newLine);
             writer.write(String.format(lineFormat, BagItParameterNames.TAG_FILE_CHAR_ENCODING, ENCODING) + newLine);
-
-            writer.close();
         } catch (IOException e) {
             throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
                     "Exception occurred when writing bagit.txt file.");
@@ -532,9 +1968,7 @@ public class BagItPackageAssembler implements PackageAssembler {
      */
     private String buildPath(String string) {
 
-        String contentRoot = FilePathUtil.convertToUnixSlashes(params.getParam(GeneralParameterNames.CONTENT_ROOT_LOCATION,0));
-
-        File file = new File(contentRoot, string);
+        File file = getContentFile(string);
 
         if(!file.exists()){
                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_STRAY_FILE,
@@ -547,58 +1981,184 @@ public class BagItPackageAssembler implements PackageAssembler {
         return string;
     }
 
-    private File archiveBag() throws PackageToolException {
-        File archivedFile = new File(packageLocationDir, bagBaseDir.getName() + "." + archivingFormat);
-        try {
-            FileOutputStream fos = new FileOutputStream(archivedFile);
-            ArchiveOutputStream aos = new ArchiveStreamFactory()
-                    .createArchiveOutputStream(archivingFormat, new BufferedOutputStream(fos));
-            if (aos instanceof TarArchiveOutputStream) {
-                ((TarArchiveOutputStream) aos).setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
-            }
-            // Get to putting all the files in the compressed output file
-            for (File f : bagBaseDir.listFiles()) {
-                addFilesToArchive(aos, f);
+    /**
+     * Resolves a path relative to the content root location.
+     * @param path the path, relative to the content root location
+     * @return the file
+     */
+    private File getContentFile(String path) {
+        String contentRoot = FilePathUtil.convertToUnixSlashes(params.getParam(GeneralParameterNames.CONTENT_ROOT_LOCATION,0));
+        return new File(contentRoot, path);
+    }
+
+    /**
+     * Builds the list of payload staging strategies, in order of preference, for the given strategy parameter.
+     * @param strategyName value of the payload-staging-strategy parameter, may be null
+     * @return the strategies to use
+     */
+    private List<PayloadStagingStrategy> createStagingStrategies(String strategyName) {
+        List<PayloadStagingStrategy> strategies = new ArrayList<>();
+        if (strategyName == null || strategyName.equals("auto")) {
+            //the files of an exploded bag outlive assembly, so they must not share their data with the source files
+            if (!isExploded) {
+                strategies.add(new HardLinkStagingStrategy());
             }
-            aos.close();
-            fos.close();
+            strategies.add(new TransferToStagingStrategy());
+        } else if (strategyName.equals("link")) {
+            strategies.add(new HardLinkStagingStrategy());
+            strategies.add(new TransferToStagingStrategy());
+        } else if (strategyName.equals("transfer")) {
+            strategies.add(new TransferToStagingStrategy());
+        } else if (!strategyName.equals("copy")) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                    String.format("Specified payload staging strategy <%s> is not supported. The supported " +
+                            "strategies are: auto, link, transfer, copy.", strategyName));
+        }
+        strategies.add(bufferedCopy);
+        if (ioThrottle != null) {
+            //copies in the kernel cannot be throttled
+            strategies.removeIf(strategy -> strategy instanceof TransferToStagingStrategy);
+        }
+        return strategies;
+    }
+
+    private InputStream throttled(InputStream in) {
+        return ioThrottle != null ? ioThrottle.wrap(in) : in;
+    }
+
+    private OutputStream throttled(OutputStream out) {
+        return ioThrottle != null ? ioThrottle.wrap(out) : out;
+    }
+
+    /**
+     * Deletes the stripe directories payload files were staged in, other than the base directory of the bag.
+     * @throws IOException if a directory could not be deleted
+     */
+    private void deleteStripes() throws IOException {
+        for (File stripeDir : stripeDirs.subList(Math.min(1, stripeDirs.size()), stripeDirs.size())) {
+            FileUtils.deleteDirectory(stripeDir);
+        }
+    }
+
+    private File archiveBag(File bagDir) throws PackageToolException {
+        File archivedFile = new File(packageLocationDir, bagDir.getName() + "." + archivingFormat);
+        try {
+            writeArchive(bagDir, new BufferedOutputStream(throttled(new FileOutputStream(archivedFile))));
         } catch (FileNotFoundException e) {
             throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e,
                     "Exception occurred when serializing the bag.");
         } catch (IOException e) {
             throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
                     "Exception occurred when serializing the bag.");
+        }
+
+        return archivedFile;
+    }
+
+    /**
+     * Writes the archive of a bag to a stream, and closes it.
+     * @param bagDir the base directory of the bag
+     * @param out the stream
+     * @throws IOException if the archive could not be written
+     */
+    private void writeArchive(File bagDir, OutputStream out) throws IOException {
+        ArchiveOutputStream aos;
+        try {
+            aos = new ArchiveStreamFactory().createArchiveOutputStream(archivingFormat, out);
         } catch (ArchiveException e) {
+            out.close();
             throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_ARCHIVE_EXP, e,
                     "Archiving format \"" + archivingFormat+ "\" is not supported.");
         }
-
-        return archivedFile;
+        try {
+            if (aos instanceof TarArchiveOutputStream) {
+                ((TarArchiveOutputStream) aos).setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+            }
+            // Get to putting all the files in the compressed output file
+            Map<Object, String> archivedFiles = new HashMap<>();
+            //payload files spread over several staging locations are read from all of them at once
+            ArchiveReadAhead readAhead = null;
+            if (stripeDirs.size() > 1) {
+                List<File> files = new ArrayList<>();
+                listArchivedFiles(bagDir, files);
+                readAhead = new ArchiveReadAhead(files, stripeDirs, ioThrottle);
+            }
+            try {
+                for (File f : listSortedFiles(bagDir)) {
+                    addFilesToArchive(aos, f, archivedFiles, readAhead);
+                }
+            } finally {
+                if (readAhead != null) {
+                    readAhead.close();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(out);
+            throw e;
+        }
+        aos.close();
     }
 
-    private void addFilesToArchive(ArchiveOutputStream taos, File file) throws IOException {
+    /**
+     * Adds a file, or a directory and its content, to the archive.
+     * @param taos the archive
+     * @param file the file or directory
+     * @param archivedFiles entry names of the files already archived, keyed by file key. Only kept track of when
+     *                      deduplicating payload into a tar archive, in which case later links to an archived file
+     *                      are archived as hard link entries.
+     * @param readAhead the files read ahead of the archive, or null if they are not
+     * @throws IOException if the file could not be archived
+     */
+    private void addFilesToArchive(ArchiveOutputStream taos, File file, Map<Object, String> archivedFiles,
+                                   ArchiveReadAhead readAhead) throws IOException {
+        checkNotCancelled();
+        String entryName = FilePathUtil.convertToUnixSlashes(
+                FilePathUtil.relativizePath(packageLocationDir.getPath(), file));
+        if (isDeduplicated && archivingFormat.equals(ArchiveStreamFactory.TAR) && file.isFile()) {
+            Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            if (fileKey != null && archivedFiles.containsKey(fileKey)) {
+                TarArchiveEntry linkEntry = new TarArchiveEntry(entryName, TarConstants.LF_LINK);
+                linkEntry.setLinkName(archivedFiles.get(fileKey));
+                linkEntry.setModTime(file.lastModified());
+                if (isReproducible) {
+                    normalizeEntry(linkEntry, file);
+                }
+                taos.putArchiveEntry(linkEntry);
+                taos.closeArchiveEntry();
+                return;
+            }
+            if (fileKey != null) {
+                archivedFiles.put(fileKey, entryName);
+            }
+        }
         // Create an entry for the file
         //taos.putArchiveEntry(new TarArchiveEntry(file, file.getParentFile().toURI().relativize(file.toURI()).toString()));
+        ArchiveEntry entry = null;
         switch (archivingFormat) {
             case ArchiveStreamFactory.TAR:
-                taos.putArchiveEntry(new TarArchiveEntry(file, FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(packageLocationDir.getPath(), file))));
+                entry = new TarArchiveEntry(file, entryName);
                 break;
             case ArchiveStreamFactory.ZIP:
-                taos.putArchiveEntry(new ZipArchiveEntry(file, FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(packageLocationDir.getPath(), file))));
+                entry = new ZipArchiveEntry(file, entryName);
                 break;
             case ArchiveStreamFactory.JAR:
-                taos.putArchiveEntry(new JarArchiveEntry(new ZipArchiveEntry(file, FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(packageLocationDir.getPath(), file)))));
+                entry = new JarArchiveEntry(new ZipArchiveEntry(file, entryName));
                 break;
             case ArchiveStreamFactory.AR:
-                taos.putArchiveEntry(new ArArchiveEntry(file, FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(packageLocationDir.getPath(), file))));
+                entry = new ArArchiveEntry(file, entryName);
                 break;
             case ArchiveStreamFactory.CPIO:
-                taos.putArchiveEntry(new CpioArchiveEntry(file, FilePathUtil.convertToUnixSlashes(FilePathUtil.relativizePath(packageLocationDir.getPath(), file))));
+                entry = new CpioArchiveEntry(file, entryName);
                 break;
         }
+        if (isReproducible) {
+            entry = normalizeEntry(entry, file);
+        }
+        taos.putArchiveEntry(entry);
         if (file.isFile()) {
             // Add the file to the archive
-            BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
+            BufferedInputStream bis = new BufferedInputStream(
+                    readAhead != null ? readAhead.open(file) : throttled(new FileInputStream(file)));
             IOUtils.copy(bis, taos);
             taos.closeArchiveEntry();
             bis.close();
@@ -606,12 +2166,75 @@ public class BagItPackageAssembler implements PackageAssembler {
             // close the archive entry
             taos.closeArchiveEntry();
             // go through all the files in the directory and using recursion, add them to the archive
-            for (File childFile : file.listFiles()) {
-                addFilesToArchive(taos, childFile);
+            for (File childFile : listSortedFiles(file)) {
+                addFilesToArchive(taos, childFile, archivedFiles, readAhead);
+            }
+        }
+    }
+
+    /**
+     * Lists the files in a directory and its subdirectories, in the order they are archived in.
+     * @param dir the directory
+     * @param files the list the files are added to
+     */
+    private static void listArchivedFiles(File dir, List<File> files) {
+        for (File file : listSortedFiles(dir)) {
+            if (file.isDirectory()) {
+                listArchivedFiles(file, files);
+            } else {
+                files.add(file);
             }
         }
     }
 
+    /**
+     * Lists the files in a directory, in the order of their names, so that archives are written in the same order
+     * whatever the order the file system returns them in.
+     */
+    private static File[] listSortedFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Replaces the attributes of an archive entry which depend on the file system or on when the package was staged
+     * (modification time, owner and permissions) with fixed values, so that a reproducible package does not depend on
+     * them. Files are given the permissions 644 and directories 755, owned by user and group 0.
+     * @param entry the archive entry
+     * @param file the file the entry was created from
+     * @return the normalized entry, which is a new entry for formats whose entries cannot be modified
+     */
+    private ArchiveEntry normalizeEntry(ArchiveEntry entry, File file) {
+        boolean isDirectory = file.isDirectory();
+        int mode = isDirectory ? UnixStat.DIR_FLAG | 0755 : UnixStat.FILE_FLAG | 0644;
+        if (entry instanceof TarArchiveEntry) {
+            TarArchiveEntry tarEntry = (TarArchiveEntry) entry;
+            tarEntry.setModTime(reproducibleDate.toDate());
+            tarEntry.setIds(0, 0);
+            tarEntry.setNames("", "");
+            tarEntry.setMode(mode);
+        } else if (entry instanceof ZipArchiveEntry) {
+            ZipArchiveEntry zipEntry = (ZipArchiveEntry) entry;
+            //zip entries record the local time of their modification, so the fields of the date in UTC are recorded
+            zipEntry.setTime(reproducibleDate.withZoneRetainFields(DateTimeZone.getDefault()).getMillis());
+            zipEntry.setUnixMode(mode);
+        } else if (entry instanceof CpioArchiveEntry) {
+            CpioArchiveEntry cpioEntry = (CpioArchiveEntry) entry;
+            cpioEntry.setTime(reproducibleDate.getMillis() / 1000);
+            cpioEntry.setUID(0);
+            cpioEntry.setGID(0);
+            cpioEntry.setMode(mode);
+        } else if (entry instanceof ArArchiveEntry) {
+            entry = new ArArchiveEntry(entry.getName(), entry.getSize(), 0, 0, mode,
+                    reproducibleDate.getMillis() / 1000);
+        }
+        return entry;
+    }
+
     /**
      * Produce a compressed file from input file.
      * The produced compressed file will be placed at the specified package-location.
@@ -621,12 +2244,11 @@ public class BagItPackageAssembler implements PackageAssembler {
      */
     private File compressFile(File file) throws PackageToolException {
         if (compressionFormat != null) {
-            File compressedFile = new File(packageLocationDir, file.getName()+ "." + compressionFormat);
-            try {
-                CompressorOutputStream compressedStream = new CompressorStreamFactory()
-                        .createCompressorOutputStream(compressionFormat, new FileOutputStream(compressedFile));
-                IOUtils.copy(new FileInputStream(file), compressedStream);
-                compressedStream.close();
+            File compressedFile = new File(packageLocationDir, file.getName()+ "." + getCompressionExtension());
+            try (InputStream in = new BufferedInputStream(throttled(new FileInputStream(file)));
+                 OutputStream compressedStream = createCompressorOutputStream(
+                         new BufferedOutputStream(throttled(new FileOutputStream(compressedFile))))) {
+                IOUtils.copy(in, compressedStream);
             } catch (FileNotFoundException e) {
                 throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, e,
                         "Exception occurred when compressing the serialized bag.");
@@ -642,6 +2264,67 @@ public class BagItPackageAssembler implements PackageAssembler {
         } else return file;
     }
 
+    /**
+     * Creates a compressing stream for the configured compression format. Formats which take a level (gzip, bzip2,
+     * xz, zstd), multithreading (zstd) or a faster codec (lz4) are configured here; all other formats are obtained
+     * from {@code CompressorStreamFactory} with their default settings.
+     * @param out the stream receiving the compressed bytes
+     * @return the compressing stream
+     * @throws IOException if the compressor could not be initialized
+     * @throws CompressorException if the compression format is not supported
+     */
+    private OutputStream createCompressorOutputStream(OutputStream out) throws IOException, CompressorException {
+        switch (compressionFormat) {
+            case CompressorStreamFactory.ZSTANDARD:
+                ZstdOutputStream zstdStream = compressionLevel != null ? new ZstdOutputStream(out, compressionLevel)
+                        : new ZstdOutputStream(out);
+                if (compressionWorkers > 0) {
+                    zstdStream.setWorkers(compressionWorkers);
+                }
+                return zstdStream;
+            case CompressorStreamFactory.LZ4_FRAMED:
+                //commons-compress' pure java lz4 encoder is too slow for transfer-oriented bags, so use lz4-java,
+                //which writes the same standard lz4 frame format.
+                return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB);
+            case CompressorStreamFactory.XZ:
+                if (compressionLevel != null) {
+                    return new XZCompressorOutputStream(out, compressionLevel);
+                }
+                break;
+            case CompressorStreamFactory.BZIP2:
+                if (compressionLevel != null) {
+                    return new BZip2CompressorOutputStream(out, compressionLevel);
+                }
+                break;
+            case CompressorStreamFactory.GZIP:
+                if (compressionLevel != null) {
+                    GzipParameters gzipParameters = new GzipParameters();
+                    gzipParameters.setCompressionLevel(compressionLevel);
+                    return new GzipCompressorOutputStream(out, gzipParameters);
+                }
+                break;
+        }
+        CompressorOutputStream compressedStream = new CompressorStreamFactory()
+                .createCompressorOutputStream(compressionFormat, out);
+        return compressedStream;
+    }
+
+    /**
+     * Returns the file extension used for the compressed package. This is the compression format name, except for
+     * formats whose name differs from their conventional file extension.
+     * @return the file extension, without the leading dot
+     */
+    private String getCompressionExtension() {
+        switch (compressionFormat) {
+            case CompressorStreamFactory.ZSTANDARD:
+                return "zst";
+            case CompressorStreamFactory.LZ4_FRAMED:
+                return "lz4";
+            default:
+                return compressionFormat;
+        }
+    }
+
 
     /**
      * Returns a resolvable File URI given a package relative URI.
@@ -719,20 +2402,148 @@ public class BagItPackageAssembler implements PackageAssembler {
         }
     }
     private void validateCompressionFormat() {
-        // convert gzip to gz
+        // convert gzip to gz, and file extensions to their format names
         if (compressionFormat.equals("gzip")) {
             compressionFormat = CompressorStreamFactory.GZIP;
+        } else if (compressionFormat.equals("zst")) {
+            compressionFormat = CompressorStreamFactory.ZSTANDARD;
+        } else if (compressionFormat.equals("lz4")) {
+            compressionFormat = CompressorStreamFactory.LZ4_FRAMED;
         }
 
         if (!compressionFormat.equals(CompressorStreamFactory.BZIP2)
                 && !compressionFormat.equals(CompressorStreamFactory.GZIP)
                 && !compressionFormat.equals(CompressorStreamFactory.PACK200)
+                && !compressionFormat.equals(CompressorStreamFactory.XZ)
+                && !compressionFormat.equals(CompressorStreamFactory.ZSTANDARD)
+                && !compressionFormat.equals(CompressorStreamFactory.LZ4_FRAMED)
                 && !compressionFormat.equals("none")) {
             throw new PackageToolException ( PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
                     String.format("Specified compression format %s is not supported. The supported compression " +
-                            "formats are: %s (or %s), %s, %s, none.",
+                            "formats are: %s (or %s), %s, %s, %s, %s (or %s), %s (or %s), none.",
                             compressionFormat,
-                            CompressorStreamFactory.GZIP, "gzip", CompressorStreamFactory.BZIP2, CompressorStreamFactory.PACK200));
+                            CompressorStreamFactory.GZIP, "gzip", CompressorStreamFactory.BZIP2, CompressorStreamFactory.PACK200,
+                            CompressorStreamFactory.XZ, CompressorStreamFactory.ZSTANDARD, "zst",
+                            CompressorStreamFactory.LZ4_FRAMED, "lz4"));
+        }
+    }
+
+    /**
+     * Checks that the compression level is within the range of the compression format: 0-9 for gzip and xz, 1-9 (the
+     * block size in units of 100k) for bzip2 and 1-22 for zstd. Other formats do not take a level.
+     */
+    private void validateCompressionLevel() {
+        int min;
+        int max;
+        if (CompressorStreamFactory.GZIP.equals(compressionFormat)
+                || CompressorStreamFactory.XZ.equals(compressionFormat)) {
+            min = 0;
+            max = 9;
+        } else if (CompressorStreamFactory.BZIP2.equals(compressionFormat)) {
+            min = 1;
+            max = 9;
+        } else if (CompressorStreamFactory.ZSTANDARD.equals(compressionFormat)) {
+            min = 1;
+            max = 22;
+        } else {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                    String.format("Parameter %s is not supported by compression format %s. Compression levels are " +
+                            "supported by %s, %s, %s and %s.", GeneralParameterNames.COMPRESSION_LEVEL,
+                            compressionFormat != null ? compressionFormat : "none", CompressorStreamFactory.GZIP, CompressorStreamFactory.BZIP2,
+                            CompressorStreamFactory.XZ, CompressorStreamFactory.ZSTANDARD));
+        }
+
+        if (compressionLevel < min || compressionLevel > max) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                    String.format("Value <%d> of parameter %s is out of range for compression format %s, which " +
+                            "takes levels %d to %d.", compressionLevel, GeneralParameterNames.COMPRESSION_LEVEL,
+                            compressionFormat, min, max));
+        }
+    }
+
+    /**
+     * Parses a size given in bytes, optionally followed by a K, M, G or T (binary) unit.
+     */
+    static long parseSizeParam(String name, String value) {
+        Matcher matcher = Pattern.compile("(\\d+)\\s*([KMGT]?)B?", Pattern.CASE_INSENSITIVE).matcher(value.trim());
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) <= 0) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                    String.format("Value <%s> of parameter %s is not a valid size. Sizes are positive numbers of " +
+                            "bytes, optionally followed by K, M, G or T.", value, name));
+        }
+        String unit = matcher.group(2).toUpperCase();
+        int shift = unit.isEmpty() ? 0 : "KMGT".indexOf(unit) + 1;
+        long number = Long.parseLong(matcher.group(1));
+        if (number > Long.MAX_VALUE >> (10 * shift)) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                    String.format("Value <%s> of parameter %s is too large.", value, name));
+        }
+        return number << (10 * shift);
+    }
+
+    /**
+     * Parses an ISO 8601 date, in UTC unless it names its time zone.
+     */
+    static DateTime parseDateParam(String name, String value) {
+        try {
+            return new DateTime(value.trim(), DateTimeZone.UTC);
+        } catch (IllegalArgumentException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS, e,
+                    String.format("Value <%s> of parameter %s is not an ISO 8601 date.", value, name));
+        }
+    }
+
+    private int parseIntParam(String name, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS, e,
+                    String.format("Value <%s> of parameter %s is not an integer.", value, name));
+        }
+    }
+
+    /**
+     * The file a payload file was staged from, with its size and modification time when it was staged.
+     */
+    private static class StagedSource {
+
+        private final File file;
+
+        private final long length;
+
+        private final long modified;
+
+        /* Reads the size and modification time of the file before it is staged */
+        private StagedSource(File file) {
+            this.file = file;
+            this.modified = file.lastModified();
+            this.length = file.length();
+        }
+
+        /* Whether the file still has the size and modification time it had when it was staged */
+        private boolean isUnchanged() {
+            return file.lastModified() == modified && file.length() == length;
+        }
+    }
+
+    /**
+     * A payload file listed in fetch.txt rather than copied into the bag.
+     */
+    private static class FetchEntry {
+
+        /* URL the file is fetched from */
+        private final String url;
+
+        /* The file at its source, used for its length and checksums */
+        private final File source;
+
+        /* The location the file is fetched to, in the bag */
+        private final File target;
+
+        private FetchEntry(String url, File source, File target) {
+            this.url = url;
+            this.source = source;
+            this.target = target;
         }
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of the verification of a bag by a {@link BagVerifier}. A bag is valid when no error was found.
+ */
+public class BagVerificationResult {
+
+    private final List<String> errors;
+    private final Map<String, List<String>> bagInfo;
+
+    BagVerificationResult(List<String> errors, Map<String, List<String>> bagInfo) {
+        this.errors = Collections.unmodifiableList(errors);
+        this.bagInfo = Collections.unmodifiableMap(bagInfo);
+    }
+
+    /**
+     * @return true if the bag is complete and all checksums in its manifests and tag manifests match its content
+     */
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return descriptions of the problems found in the bag, empty if the bag is valid
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the fields of the bag's bag-info.txt, keyed by label, empty if the bag has no bag-info.txt
+     */
+    public Map<String, List<String>> getBagInfo() {
+        return bagInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "BagVerificationResult{valid=" + isValid() + ", errors=" + errors + "}";
+    }
+}
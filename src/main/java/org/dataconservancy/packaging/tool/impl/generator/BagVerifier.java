@@ -0,0 +1,630 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.dcs.util.MultiDigestReader;
+import org.dataconservancy.packaging.tool.model.BagItParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Verifies BagIt bags, such as the ones produced by {@link BagItPackageAssembler}. A bag may be given either as a
+ * directory (an exploded bag), or as an archive in any of the archiving and compression formats supported by the
+ * assembler. Archives are read in place, without being extracted.
+ * </p>
+ * <p>
+ * The tag files (bagit.txt, bag-info.txt, fetch.txt, and the manifest and tag manifest files) are parsed first, and
+ * the bag's file listing is checked against them: every payload file must be listed in every payload manifest, every
+ * file listed in a manifest must be present, and the Payload-Oxum must match the size and number of payload files.
+ * Checksums, which require reading the whole bag, are only verified if these checks pass.
+ * </p>
+ * <p>
+ * Each file is read once for all of the algorithms it is listed with. Files of exploded bags and zip archives are
+ * read in parallel. Other archives, e.g. tar, can only be read sequentially; their entries are digested on a pool of
+ * threads while the archive is being read.
+ * </p>
+ */
+public class BagVerifier {
+
+    private static final String BAGIT_TXT = "bagit.txt";
+    private static final String BAG_INFO_TXT = "bag-info.txt";
+    private static final String FETCH_TXT = "fetch.txt";
+    private static final String PAYLOAD_DIR = "data/";
+    private static final Pattern MANIFEST_NAME = Pattern.compile("(tag)?manifest-(\\w+)\\.txt");
+    private static final Pattern OXUM = Pattern.compile("(\\d+)\\.(\\d+)");
+
+    /**
+     * Entries of sequentially read archives up to this size are buffered and digested on the thread pool, larger
+     * ones are digested while being read.
+     */
+    private static final int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum number of bytes of archive entries buffered at any time.
+     */
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    private final int threads;
+
+    /**
+     * Creates a verifier reading files on as many threads as there are available processors.
+     */
+    public BagVerifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a verifier reading files on the given number of threads.
+     * @param threads the number of threads
+     */
+    public BagVerifier(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Verifies a bag.
+     * @param bag the bag's base directory, or a (possibly compressed) archive containing the bag
+     * @return the result of the verification
+     * @throws PackageToolException if the bag could not be read
+     */
+    public BagVerificationResult verify(File bag) throws PackageToolException {
+        if (!bag.exists()) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_FILE_NOT_FOUND_EXCEPTION, bag.getPath());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            if (bag.isDirectory()) {
+                return verifyDirectory(bag, executor);
+            }
+            return verifyArchive(bag, executor);
+        } catch (IOException | UncheckedIOException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Exception occurred when reading bag " + bag.getPath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, e,
+                    "Interrupted while verifying bag " + bag.getPath());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BagVerificationResult verifyDirectory(File dir, ExecutorService executor)
+            throws IOException, InterruptedException {
+        File baseDir = dir;
+        if (!new File(dir, BAGIT_TXT).isFile()) {
+            File[] children = dir.listFiles(File::isDirectory);
+            if (children != null && children.length == 1 && new File(children[0], BAGIT_TXT).isFile()) {
+                baseDir = children[0];
+            }
+        }
+
+        Bag bag = new Bag();
+        Path basePath = baseDir.toPath();
+        try (Stream<Path> paths = Files.walk(basePath)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                String relativePath = basePath.relativize(path).toString().replace(File.separatorChar, '/');
+                bag.files.put(relativePath, path.toFile().length());
+                if (isTagFile(relativePath)) {
+                    try {
+                        bag.tagFiles.put(relativePath, Files.readAllBytes(path));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+
+        if (checkBag(bag)) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            final File bagDir = baseDir;
+            for (String path : bag.getFilesToVerify()) {
+                tasks.add(() -> {
+                    try (InputStream content = new FileInputStream(new File(bagDir, path))) {
+                        verifyDigests(bag, path, content);
+                    }
+                    return null;
+                });
+            }
+            awaitAll(executor.invokeAll(tasks));
+        }
+        return bag.getResult();
+    }
+
+    private BagVerificationResult verifyArchive(File file, ExecutorService executor)
+            throws IOException, InterruptedException, PackageToolException {
+        String compressor = null;
+        String archiver;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            InputStream archive = in;
+            try {
+                compressor = CompressorStreamFactory.detect(in);
+            } catch (CompressorException e) {
+                //not compressed
+            }
+            if (compressor != null) {
+                archive = new BufferedInputStream(
+                        new CompressorStreamFactory().createCompressorInputStream(compressor, in));
+            }
+            archiver = ArchiveStreamFactory.detect(archive);
+        } catch (CompressorException | ArchiveException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_UNEXPECTED_PACKAGING_FORMAT, e,
+                    file.getPath() + " is neither a directory nor a supported archive.");
+        }
+
+        if (compressor == null && ArchiveStreamFactory.ZIP.equals(archiver)) {
+            return verifyZip(file, executor);
+        }
+        return verifyArchiveStream(file, compressor, archiver, executor);
+    }
+
+    /**
+     * Verifies a zip archive. Its central directory gives the list of entries up front, and entries can be read
+     * concurrently.
+     */
+    private BagVerificationResult verifyZip(File file, ExecutorService executor)
+            throws IOException, InterruptedException {
+        Bag bag = new Bag();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Map<String, ZipArchiveEntry> entries = new HashMap<>();
+            for (Enumeration<ZipArchiveEntry> e = zipFile.getEntries(); e.hasMoreElements(); ) {
+                ZipArchiveEntry entry = e.nextElement();
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), entry);
+                }
+            }
+
+            String root = findRoot(entries.keySet());
+            for (ZipArchiveEntry entry : entries.values()) {
+                if (!entry.getName().startsWith(root)) {
+                    continue;
+                }
+                String path = entry.getName().substring(root.length());
+                bag.files.put(path, entry.getSize());
+                if (isTagFile(path)) {
+                    try (InputStream content = zipFile.getInputStream(entry)) {
+                        bag.tagFiles.put(path, IOUtils.toByteArray(content));
+                    }
+                }
+            }
+
+            if (checkBag(bag)) {
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (String path : bag.getFilesToVerify()) {
+                    ZipArchiveEntry entry = entries.get(root + path);
+                    tasks.add(() -> {
+                        try (InputStream content = zipFile.getInputStream(entry)) {
+                            verifyDigests(bag, path, content);
+                        }
+                        return null;
+                    });
+                }
+                awaitAll(executor.invokeAll(tasks));
+            }
+        }
+        return bag.getResult();
+    }
+
+    /**
+     * Verifies an archive which can only be read sequentially. The archive is read twice: first to list its entries
+     * and read its tag files, then, if the listing is consistent with the tag files, to verify the checksums.
+     */
+    private BagVerificationResult verifyArchiveStream(File file, String compressor, String archiver,
+                                                      ExecutorService executor)
+            throws IOException, InterruptedException {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        Map<String, byte[]> tagFileCandidates = new HashMap<>();
+        //names of the hard link entries of the archive, keyed by the name of the entry they link to
+        Map<String, List<String>> links = new HashMap<>();
+        try (ArchiveInputStream archive = openArchive(file, compressor, archiver)) {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (isHardLink(entry)) {
+                    String linkName = ((TarArchiveEntry) entry).getLinkName();
+                    sizes.put(entry.getName(), sizes.getOrDefault(linkName, 0L));
+                    links.computeIfAbsent(linkName, name -> new ArrayList<>()).add(entry.getName());
+                    continue;
+                }
+                sizes.put(entry.getName(), entry.getSize());
+                if (entry.getName().indexOf('/') == entry.getName().lastIndexOf('/')
+                        && isTagFile(entry.getName().substring(entry.getName().indexOf('/') + 1))) {
+                    tagFileCandidates.put(entry.getName(), IOUtils.toByteArray(archive));
+                }
+            }
+        }
+
+        Bag bag = new Bag();
+        String root = findRoot(sizes.keySet());
+        for (Map.Entry<String, Long> size : sizes.entrySet()) {
+            if (size.getKey().startsWith(root)) {
+                String path = size.getKey().substring(root.length());
+                bag.files.put(path, size.getValue());
+                if (tagFileCandidates.containsKey(size.getKey()) && isTagFile(path)) {
+                    bag.tagFiles.put(path, tagFileCandidates.get(size.getKey()));
+                }
+            }
+        }
+        tagFileCandidates.clear();
+
+        if (!checkBag(bag)) {
+            return bag.getResult();
+        }
+
+        Set<String> filesToVerify = bag.getFilesToVerify();
+        Semaphore bufferPermits = new Semaphore(MAX_BUFFERED_BYTES);
+        List<Future<Void>> pending = new ArrayList<>();
+        try (ArchiveInputStream archive = openArchive(file, compressor, archiver)) {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                if (entry.isDirectory() || isHardLink(entry)) {
+                    continue;
+                }
+                //the content of the entry is also the content of the hard links to it
+                List<String> paths = new ArrayList<>();
+                List<String> names = new ArrayList<>(Collections.singletonList(entry.getName()));
+                names.addAll(links.getOrDefault(entry.getName(), Collections.<String>emptyList()));
+                for (String name : names) {
+                    if (name.startsWith(root) && filesToVerify.contains(name.substring(root.length()))) {
+                        paths.add(name.substring(root.length()));
+                    }
+                }
+                if (paths.isEmpty()) {
+                    continue;
+                }
+                if (entry.getSize() < 0 || entry.getSize() > MAX_BUFFERED_ENTRY_SIZE) {
+                    verifyDigests(bag, paths, archive);
+                    continue;
+                }
+                int size = (int) entry.getSize();
+                bufferPermits.acquire(size);
+                byte[] content;
+                try {
+                    content = IOUtils.toByteArray(archive, size);
+                } catch (IOException e) {
+                    bufferPermits.release(size);
+                    throw e;
+                }
+                pending.add(executor.submit(() -> {
+                    try {
+                        verifyDigests(bag, paths, new ByteArrayInputStream(content));
+                    } finally {
+                        bufferPermits.release(size);
+                    }
+                    return null;
+                }));
+            }
+        }
+        awaitAll(pending);
+        return bag.getResult();
+    }
+
+    private ArchiveInputStream openArchive(File file, String compressor, String archiver) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            if (compressor != null) {
+                in = new BufferedInputStream(new CompressorStreamFactory().createCompressorInputStream(compressor, in));
+            }
+            return new ArchiveStreamFactory().createArchiveInputStream(archiver, in);
+        } catch (CompressorException | ArchiveException e) {
+            in.close();
+            throw new IOException("Could not read archive " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Checks the bag's file listing against its tag files.
+     * @return true if no error was found, and the checksums are to be verified
+     */
+    private boolean checkBag(Bag bag) {
+        byte[] bagItTxt = bag.tagFiles.get(BAGIT_TXT);
+        if (bagItTxt == null) {
+            bag.errors.add(BAGIT_TXT + " is missing.");
+        } else if (!parseTagFields(bagItTxt).containsKey(BagItParameterNames.BAGIT_VERSION)) {
+            bag.errors.add(BAGIT_TXT + " does not declare a " + BagItParameterNames.BAGIT_VERSION + ".");
+        }
+        if (bag.tagFiles.containsKey(BAG_INFO_TXT)) {
+            bag.bagInfo.putAll(parseTagFields(bag.tagFiles.get(BAG_INFO_TXT)));
+        }
+
+        Map<String, String> fetchedSizes = new HashMap<>();
+        if (bag.tagFiles.containsKey(FETCH_TXT)) {
+            for (String line : readLines(bag.tagFiles.get(FETCH_TXT))) {
+                String[] fields = line.trim().split("\\s+", 3);
+                if (fields.length == 3) {
+                    fetchedSizes.put(decodePath(fields[2]), fields[1]);
+                } else if (!line.trim().isEmpty()) {
+                    bag.errors.add("Invalid line in " + FETCH_TXT + ": " + line);
+                }
+            }
+        }
+
+        Set<String> payloadFiles = new LinkedHashSet<>();
+        long payloadSize = 0;
+        for (Map.Entry<String, Long> file : bag.files.entrySet()) {
+            if (file.getKey().startsWith(PAYLOAD_DIR)) {
+                payloadFiles.add(file.getKey());
+                payloadSize += file.getValue();
+            }
+        }
+
+        boolean hasPayloadManifest = false;
+        Set<String> missingFetchedFiles = new LinkedHashSet<>();
+        for (Map.Entry<String, byte[]> tagFile : new TreeMap<>(bag.tagFiles).entrySet()) {
+            Matcher matcher = MANIFEST_NAME.matcher(tagFile.getKey());
+            if (!matcher.matches()) {
+                continue;
+            }
+            String manifestName = tagFile.getKey();
+            String algorithm = matcher.group(2);
+            boolean isPayloadManifest = matcher.group(1) == null;
+            hasPayloadManifest |= isPayloadManifest;
+            try {
+                MultiDigestReader.getMessageDigest(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                bag.errors.add("Checksum algorithm of " + manifestName + " is not supported.");
+                continue;
+            }
+
+            Set<String> listedFiles = new LinkedHashSet<>();
+            for (String line : readLines(tagFile.getValue())) {
+                String[] fields = line.trim().split("\\s+", 2);
+                if (fields.length != 2) {
+                    if (!line.trim().isEmpty()) {
+                        bag.errors.add("Invalid line in " + manifestName + ": " + line);
+                    }
+                    continue;
+                }
+                String path = decodePath(fields[1].startsWith("*") ? fields[1].substring(1) : fields[1]);
+                listedFiles.add(path);
+                bag.expected.computeIfAbsent(path, p -> new TreeMap<>()).put(algorithm, fields[0].toLowerCase());
+                if (!bag.files.containsKey(path)) {
+                    if (fetchedSizes.containsKey(path)) {
+                        missingFetchedFiles.add(path);
+                    } else {
+                        bag.errors.add(path + " is listed in " + manifestName + " but is not present in the bag.");
+                    }
+                }
+            }
+
+            if (isPayloadManifest) {
+                for (String payloadFile : payloadFiles) {
+                    if (!listedFiles.contains(payloadFile)) {
+                        bag.errors.add("Payload file " + payloadFile + " is not listed in " + manifestName + ".");
+                    }
+                }
+            }
+        }
+        if (!hasPayloadManifest) {
+            bag.errors.add("The bag has no payload manifest.");
+        }
+        for (String path : missingFetchedFiles) {
+            bag.errors.add(path + " is listed in " + FETCH_TXT + " but has not been fetched, the bag is incomplete.");
+            if (fetchedSizes.get(path).matches("\\d+")) {
+                payloadSize += Long.parseLong(fetchedSizes.get(path));
+            }
+        }
+
+        List<String> oxum = bag.bagInfo.get(BagItParameterNames.PAYLOAD_OXUM);
+        if (oxum != null && !oxum.isEmpty()) {
+            Matcher matcher = OXUM.matcher(oxum.get(0));
+            if (!matcher.matches()) {
+                bag.errors.add("Invalid " + BagItParameterNames.PAYLOAD_OXUM + ": " + oxum.get(0));
+            } else if (Long.parseLong(matcher.group(1)) != payloadSize
+                    || Long.parseLong(matcher.group(2)) != payloadFiles.size() + missingFetchedFiles.size()) {
+                bag.errors.add(BagItParameterNames.PAYLOAD_OXUM + " " + oxum.get(0) + " does not match the payload ("
+                        + payloadSize + "." + (payloadFiles.size() + missingFetchedFiles.size()) + ").");
+            }
+        }
+        return bag.errors.isEmpty();
+    }
+
+    private void verifyDigests(Bag bag, String path, InputStream content) throws IOException {
+        verifyDigests(bag, Collections.singletonList(path), content);
+    }
+
+    /**
+     * Verifies the checksums of files sharing the same content.
+     */
+    private void verifyDigests(Bag bag, List<String> paths, InputStream content) throws IOException {
+        Set<String> algorithms = new LinkedHashSet<>();
+        for (String path : paths) {
+            algorithms.addAll(bag.expected.get(path).keySet());
+        }
+        Map<String, String> actual;
+        try {
+            actual = MultiDigestReader.digest(content, algorithms);
+        } catch (NoSuchAlgorithmException e) {
+            //algorithms were checked when reading the manifests
+            throw new IllegalStateException(e);
+        }
+        for (String path : paths) {
+            for (Map.Entry<String, String> digest : bag.expected.get(path).entrySet()) {
+                if (!digest.getValue().equals(actual.get(digest.getKey()))) {
+                    bag.errors.add(String.format("%s checksum of %s is %s, expected %s.", digest.getKey(), path,
+                            actual.get(digest.getKey()), digest.getValue()));
+                }
+            }
+        }
+    }
+
+    private static boolean isHardLink(ArchiveEntry entry) {
+        return entry instanceof TarArchiveEntry && ((TarArchiveEntry) entry).isLink();
+    }
+
+    private void awaitAll(List<Future<Void>> futures) throws IOException, InterruptedException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the path of the bag's base directory in an archive, i.e. the directory containing bagit.txt.
+     */
+    private static String findRoot(Set<String> names) {
+        String root = "";
+        int depth = Integer.MAX_VALUE;
+        for (String name : names) {
+            if (name.equals(BAGIT_TXT) || name.endsWith("/" + BAGIT_TXT)) {
+                int nameDepth = name.split("/").length;
+                if (nameDepth < depth) {
+                    depth = nameDepth;
+                    root = name.substring(0, name.length() - BAGIT_TXT.length());
+                }
+            }
+        }
+        return root;
+    }
+
+    private static boolean isTagFile(String path) {
+        return path.equals(BAGIT_TXT) || path.equals(BAG_INFO_TXT) || path.equals(FETCH_TXT)
+                || MANIFEST_NAME.matcher(path).matches();
+    }
+
+    /**
+     * Parses the "label: value" fields of a tag file. Lines starting with whitespace continue the previous value.
+     */
+    private static Map<String, List<String>> parseTagFields(byte[] tagFile) {
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        String label = null;
+        StringBuilder value = new StringBuilder();
+        for (String line : readLines(tagFile)) {
+            if (label != null && !line.isEmpty() && Character.isWhitespace(line.charAt(0))) {
+                value.append(' ').append(line.trim());
+                continue;
+            }
+            if (label != null) {
+                fields.computeIfAbsent(label, l -> new ArrayList<>()).add(value.toString());
+            }
+            int separator = line.indexOf(':');
+            label = separator > 0 ? line.substring(0, separator).trim() : null;
+            value.setLength(0);
+            if (label != null) {
+                value.append(line.substring(separator + 1).trim());
+            }
+        }
+        if (label != null) {
+            fields.computeIfAbsent(label, l -> new ArrayList<>()).add(value.toString());
+        }
+        return fields;
+    }
+
+    private static List<String> readLines(byte[] tagFile) {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(tagFile),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            //reading from memory
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+
+    /**
+     * Decodes the percent-encoded line breaks and percent signs allowed in manifest and fetch.txt paths.
+     */
+    private static String decodePath(String path) {
+        if (path.indexOf('%') < 0) {
+            return path;
+        }
+        return path.replace("%0A", "\n").replace("%0a", "\n").replace("%0D", "\r").replace("%0d", "\r")
+                .replace("%25", "%");
+    }
+
+    /**
+     * The state of the verification of one bag.
+     */
+    private static class Bag {
+        /** Sizes of the bag's files, keyed by their path relative to the bag's base directory. */
+        final Map<String, Long> files = new TreeMap<>();
+        /** Content of the tag files to parse, keyed by their path. */
+        final Map<String, byte[]> tagFiles = new HashMap<>();
+        /** Expected digests of the files listed in the manifests, keyed by path and algorithm. */
+        final Map<String, Map<String, String>> expected = new TreeMap<>();
+        final Map<String, List<String>> bagInfo = new LinkedHashMap<>();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Set<String> getFilesToVerify() {
+            Set<String> filesToVerify = new LinkedHashSet<>(expected.keySet());
+            filesToVerify.retainAll(files.keySet());
+            return filesToVerify;
+        }
+
+        BagVerificationResult getResult() {
+            return new BagVerificationResult(new ArrayList<>(errors), bagInfo);
+        }
+    }
+}
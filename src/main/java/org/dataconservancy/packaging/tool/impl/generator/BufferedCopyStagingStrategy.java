@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.packaging.tool.impl.IoThrottle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stages a payload file by copying it through a large buffer. Supports any source, and is used as the last resort
+ * when no other strategy applies. The {@link #copy(InputStream, Path)} method is also used for resources which are
+ * only available as streams. Copies can be throttled, unlike the ones performed by other strategies.
+ */
+public class BufferedCopyStagingStrategy implements PayloadStagingStrategy {
+
+    /**
+     * Size of the copy buffer. Large enough to keep the number of read and write calls low for big payload files.
+     */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final IoThrottle throttle;
+
+    public BufferedCopyStagingStrategy() {
+        this(null);
+    }
+
+    /**
+     * @param throttle the throttle limiting both reading and writing copied content, may be null
+     */
+    public BufferedCopyStagingStrategy(IoThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    @Override
+    public boolean supports(Path source, Path target) {
+        return true;
+    }
+
+    @Override
+    public void stage(Path source, Path target) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            copy(throttle != null ? throttle.wrap(in) : in, target);
+        }
+    }
+
+    /**
+     * Copies the content of a stream to the target file, replacing any existing content.
+     * @param content the content to copy. The stream is not closed by this method.
+     * @param target the file to write
+     * @return the number of bytes copied
+     * @throws IOException if the content could not be copied. Any partially written target is removed before throwing.
+     */
+    public long copy(InputStream content, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target)) {
+            return IOUtils.copyLarge(content, throttle != null ? throttle.wrap(out) : out, new byte[BUFFER_SIZE]);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.dataconservancy.packaging.tool.api.generator.ReadScheduler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads files one directory at a time, in the order of their names. File systems usually place the files of a
+ * directory, and the directory entries themselves, close to each other.
+ */
+public class DirectoryReadScheduler implements ReadScheduler {
+
+    @Override
+    public List<File> schedule(Collection<File> files) {
+        List<File> scheduled = new ArrayList<>(files);
+        scheduled.sort(Comparator.comparing((File file) -> String.valueOf(file.getAbsoluteFile().getParent()))
+                .thenComparing(File::getName));
+        return scheduled;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stages a payload file as a hard link to the source file, without copying any bytes. Only applicable when the
+ * source and the staged bag reside on the same file store.
+ * <p>
+ * Note that the staged file shares its content with the source, so modifying the source after staging also modifies
+ * the file in the bag.
+ * </p>
+ */
+public class HardLinkStagingStrategy implements PayloadStagingStrategy {
+
+    @Override
+    public boolean supports(Path source, Path target) {
+        try {
+            return Files.getFileStore(source).equals(Files.getFileStore(target.getParent()));
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void stage(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Hard links are not supported for " + target, e);
+        }
+    }
+}
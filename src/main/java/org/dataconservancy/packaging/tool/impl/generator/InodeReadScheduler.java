@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.dataconservancy.packaging.tool.api.generator.ReadScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads files in the order of their inode numbers, device by device. File systems which allocate inodes and data
+ * blocks together (ext4, XFS) store files with close inode numbers close to each other, so this follows the physical
+ * layout more closely than directory order, particularly for content written in several passes.
+ * <p>
+ * Inode numbers are only available on file systems with unix attributes. Files for which they are not are read last,
+ * in {@link DirectoryReadScheduler directory order}.
+ * </p>
+ */
+public class InodeReadScheduler implements ReadScheduler {
+
+    @Override
+    public List<File> schedule(Collection<File> files) {
+        Map<File, long[]> positions = new HashMap<>();
+        List<File> unknown = new ArrayList<>();
+        for (File file : files) {
+            try {
+                Map<String, Object> attributes = Files.readAttributes(file.toPath(), "unix:dev,ino");
+                positions.put(file, new long[] {((Number) attributes.get("dev")).longValue(),
+                        ((Number) attributes.get("ino")).longValue()});
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+                unknown.add(file);
+            }
+        }
+
+        List<File> scheduled = new ArrayList<>(positions.keySet());
+        scheduled.sort(Comparator.comparingLong((File file) -> positions.get(file)[0])
+                .thenComparingLong(file -> positions.get(file)[1]));
+        scheduled.addAll(new DirectoryReadScheduler().schedule(unknown));
+        return scheduled;
+    }
+}
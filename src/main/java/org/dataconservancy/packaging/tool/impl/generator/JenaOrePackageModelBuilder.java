@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.vocabulary.FOAF;
+import org.apache.jena.vocabulary.DC;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.dataconservancy.dcs.util.DateUtility;
+import org.dataconservancy.packaging.shared.ResourceMapConstants;
+import org.dataconservancy.packaging.tool.api.generator.PackageAssembler;
+import org.dataconservancy.packaging.tool.model.PackageArtifact;
+import org.dataconservancy.packaging.tool.model.PackageArtifact.PropertyValueGroup;
+import org.dataconservancy.packaging.tool.model.PackageDescription;
+import org.dataconservancy.packaging.tool.model.PackageRelationship;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.dataconservancy.packaging.tool.model.DcsPackageDescriptionSpec.ArtifactType;
+
+/**
+ * Builds the same ORE packaging of the DCS business object model as {@link OrePackageModelBuilder}, but builds each
+ * ReM as a Jena graph, written with Jena's writers, rather than through foresite.
+ * <p>
+ * The ReMs hold the same triples as the ones built with foresite, including the creator foresite records in every ReM
+ * and the literal objects it gives to ore:isAggregatedBy, so that packages are read alike whichever builder produced
+ * them. Only the modification date of ReMs is written differently: always in UTC, as a plain literal.
+ * </p>
+ * <p>
+ * This builder is selected by setting
+ * {@link org.dataconservancy.packaging.tool.model.GeneralParameterNames#PACKAGE_MODEL_BUILDER} to its class name.
+ * </p>
+ */
+public class JenaOrePackageModelBuilder
+        extends OrePackageModelBuilder {
+
+    private static final String REM_CREATOR = "Foresite ORE Library";
+
+    private static final PrefixMapping REM_PREFIXES = PrefixMapping.Factory.create()
+            .setNsPrefix("rdf", RDF.getURI())
+            .setNsPrefix("ore", ResourceMapConstants.ORE_NS_URI)
+            .setNsPrefix("dc", DC.getURI())
+            .setNsPrefix("dcterms", DCTerms.getURI())
+            .setNsPrefix("foaf", FOAF.getURI())
+            .lock();
+
+    /* The graph of each ReM, by ReM URI */
+    private final Map<URI, Model> remModels = new LinkedHashMap<>();
+
+    private String remModifiedDate;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void buildModel(PackageDescription desc, PackageAssembler assembler) {
+        try {
+            remModifiedDate = DateUtility.toIso8601_DateTimeNoMillis(isReproducible ? reproducibleDate.toDate()
+                                                                                     : new Date());
+
+            analyzeArtifacts(desc);
+            assignREMDocuments();
+
+            /* DataItems first, then Collections, then Projects, each with all their descendants */
+            for (ArtifactType type : new ArtifactType[] {ArtifactType.DataItem, ArtifactType.Collection,
+                    ArtifactType.Project}) {
+                for (int artifact : artifactsOfType(type)) {
+                    expand(addAggregationFor(artifact, assembler),
+                           (from, predicate, object) -> addRelationship(from, predicate, object, assembler));
+                }
+            }
+
+            /* Add the properties of the artifacts to their ReMs */
+            addProperties();
+
+            /* Read the payload whose reads were scheduled */
+            putScheduledResources(assembler);
+
+            /* Now, create the package ReM */
+            URI packageRem = reserveREM("package:" + packageName, assembler);
+            Resource packageAggregation = createREM(packageRem);
+            packageAggregation.addProperty(RDF.type, ResourceMapConstants.DC_PACKAGE_TYPE);
+            packageRemURI = packageRem;
+
+            /* Add the root artifact aggregation to the package */
+            URI artifactRem = remForArtifact(desc.getRootArtifact());
+            if (artifactRem != null) {
+                aggregate(packageAggregation, aggregationURI(artifactRem))
+                        .addProperty(ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY,
+                                     packageAggregation.getModel().createResource(artifactRem.toString()));
+            }
+
+            /* The package ReM is written last, once all the ReMs it leads to have been written */
+            Map<URI, REMSerializer> documents = new LinkedHashMap<>();
+            for (Map.Entry<URI, List<URI>> document : groupByDocument(remModels.keySet()).entrySet()) {
+                if (!document.getKey().equals(packageRem)) {
+                    documents.put(document.getKey(), out -> write(merge(document.getValue()), out));
+                }
+            }
+            writeREMs(documents, assembler);
+            writeREM(packageRem, out -> write(remModels.get(packageRem), out), assembler);
+
+            /* Finally, validate that all artifacts made their way into a ReM */
+            checkArtifactsInReMs();
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * Creates the graph of a ReM, describing its aggregation, and returns the
+     * aggregation.
+     */
+    private Resource createREM(URI remURI) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefixes(REM_PREFIXES);
+
+        Resource aggregation = model.createResource(aggregationURI(remURI).toString())
+                .addProperty(RDF.type, ResourceMapConstants.AGGREGATION_TYPE);
+        model.createResource(remURI.toString())
+                .addProperty(RDF.type, ResourceMapConstants.RESOURCE_MAP_TYPE)
+                .addProperty(ResourceMapConstants.DESCRIBES_PROPERTY, aggregation)
+                .addProperty(DC.format, getRemMediaType())
+                .addProperty(DC.creator, model.createResource()
+                        .addProperty(RDF.type, DCTerms.Agent)
+                        .addProperty(FOAF.name, REM_CREATOR))
+                .addProperty(DCTerms.modified, remModifiedDate);
+
+        remModels.put(remURI, model);
+        return aggregation;
+    }
+
+    /* ReMs sharing a document are written as one graph */
+    private Model merge(List<URI> rems) {
+        if (rems.size() == 1) {
+            return remModels.get(rems.get(0));
+        }
+        Model document = ModelFactory.createDefaultModel();
+        document.setNsPrefixes(REM_PREFIXES);
+        for (URI rem : rems) {
+            document.add(remModels.get(rem));
+        }
+        return document;
+    }
+
+    /*
+     * Adds a resource to an aggregation. Like foresite, the resource is said
+     * to be aggregated by a literal holding the URI of the aggregation.
+     */
+    private static Resource aggregate(Resource aggregation, URI resourceURI) {
+        Resource resource = aggregation.getModel().createResource(resourceURI.toString());
+        aggregation.addProperty(ResourceMapConstants.AGGREGATES_PROPERTY, resource);
+        resource.addProperty(ResourceMapConstants.IS_AGGREGATED_BY_PROPERTY, aggregation.getURI());
+        return resource;
+    }
+
+    private Expansion<Resource> addAggregationFor(int artifact,
+                                                  PackageAssembler assembler) throws Exception {
+        URI remURI = reserveREM(artifact, assembler);
+        Resource aggregation = createREM(remURI);
+        aggregation.addProperty(RDF.type, aggregation.getModel()
+                .createResource(oreAggregationTypes.get(artifactType(artifact)).toString()));
+
+        /* Track the mapping of artifact to aggregation, and ReM */
+        oreIdentities[artifact] = URI.create(aggregation.getURI());
+        oreRemForArtifact[artifact] = remURI;
+
+        PackageArtifact described = artifacts.getArtifact(artifact);
+        addPropertiesLater(remURI, () -> addPropertiesTo(aggregation, described));
+        return expansion(artifact, aggregation, remURI);
+    }
+
+    /*
+     * DataFiles and MetadataFiles are the only Resources in ORE terms that
+     * aren't aggregations
+     */
+    private Expansion<Resource> addResourceFor(int artifact,
+                                               Resource aggregation,
+                                               URI remURI,
+                                               PackageAssembler assembler) throws Exception {
+        PackageArtifact described = artifacts.getArtifact(artifact);
+        URI resourceURI = putContent(described, assembler);
+        Resource resource = aggregate(aggregation, resourceURI);
+
+        /* Track */
+        oreIdentities[artifact] = resourceURI;
+        oreRemForArtifact[artifact] = remURI;
+
+        addPropertiesLater(remURI, () -> addPropertiesTo(resource, described));
+        return expansion(artifact, resource, remURI);
+    }
+
+    /*
+     * Adds a relationship of an artifact. An artifact it points to which isn't
+     * in a ReM yet is created, and returned to be expanded in turn.
+     */
+    private Expansion<Resource> addRelationship(Expansion<Resource> from,
+                                                URI relationship,
+                                                int target,
+                                                PackageAssembler assembler) throws Exception {
+        Model model = from.resource.getModel();
+        Property predicate = model.createProperty(relationship.toString());
+
+        /* Relationships that don't point to an artifact point to some external resource */
+        if (target < 0) {
+            PackageRelationship artifactRelationship =
+                    artifacts.getArtifact(from.artifact).getRelationshipByName(relationship.toString());
+            for (String targetId : artifactRelationship.getTargets()) {
+                if (artifacts.indexOf(targetId) < 0) {
+                    if (artifactRelationship.requiresUriTargets()) {
+                        from.resource.addProperty(predicate, model.createResource(targetId));
+                    } else {
+                        from.resource.addProperty(predicate, targetId);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /* If it points to an artifact that isn't in a ReM yet, create it */
+        Expansion<Resource> created = null;
+        if (oreIdentities[target] == null) {
+            if (oreAggregationTypes.containsKey(artifactType(target))) {
+                created = addAggregationFor(target, assembler);
+            } else {
+                created = addResourceFor(target, model.getResource(aggregationURI(from.remURI).toString()),
+                                         from.remURI, assembler);
+            }
+        }
+
+        /*
+         * If it's defined in another ReM, then add a resource that
+         * ore:isDescribedBy the other ReM, and point to that
+         */
+        URI targetRem = oreRemForArtifact[target];
+        if (!targetRem.equals(from.remURI)) {
+            aggregate(model.getResource(aggregationURI(from.remURI).toString()), oreIdentities[target])
+                    .addProperty(ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY,
+                                 model.createResource(targetRem.toString()));
+        }
+
+        from.resource.addProperty(predicate, model.createResource(oreIdentities[target].toString()));
+        return created;
+    }
+
+    private void addPropertiesTo(Resource resource, PackageArtifact artifact) {
+        Model model = resource.getModel();
+        for (String key : artifact.getPropertyNames()) {
+            Property predicate = model.createProperty(getPropertyURI(key).toString());
+
+            if (artifact.hasSimpleProperty(key)) {
+                for (String value : artifact.getSimplePropertyValues(key)) {
+                    addProperty(resource, predicate, key, value);
+                }
+            } else if (artifact.hasPropertyValueGroup(key)) {
+                for (PropertyValueGroup group : artifact.getPropertyValueGroups(key)) {
+                    Resource groupNode = model.createResource();
+                    for (String subKey : group.getSubPropertyNames()) {
+                        Property subPredicate = model.createProperty(getPropertyURI(subKey).toString());
+                        for (String value : group.getSubPropertyValues(subKey)) {
+                            addProperty(groupNode, subPredicate, subKey, value);
+                        }
+                    }
+                    resource.addProperty(predicate, groupNode);
+                }
+            }
+        }
+    }
+
+    private static void addProperty(Resource resource, Property predicate, String key, String value) {
+        if (isUriValued(key)) {
+            resource.addProperty(predicate, resource.getModel().createResource(URI.create(value).toString()));
+        } else {
+            resource.addProperty(predicate, value);
+        }
+    }
+}
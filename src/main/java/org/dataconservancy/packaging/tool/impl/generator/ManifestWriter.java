@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.dataconservancy.dcs.model.Checksum;
+import org.dataconservancy.dcs.util.FilePathUtil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the manifests of a bag, one for each checksum algorithm, in a single pass over the files they list. Files
+ * are listed by their path in the bag, in sorted order, so that manifests do not depend on the order files were
+ * staged in. Paths are computed once per file, not once per manifest.
+ */
+class ManifestWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File bagDir;
+
+    private final String bagDirPrefix;
+
+    private final List<String> algorithms;
+
+    private final String newLine = System.getProperty("line.separator");
+
+    /**
+     * @param bagDir the base directory of the bag
+     * @param algorithms the checksum algorithms, one manifest being written for each
+     */
+    ManifestWriter(File bagDir, List<String> algorithms) {
+        this.bagDir = bagDir;
+        this.bagDirPrefix = bagDir.getPath() + File.separator;
+        this.algorithms = algorithms;
+    }
+
+    /**
+     * Writes a manifest for each algorithm, named after the given prefix and the algorithm, e.g. "manifest-md5.txt".
+     * @param prefix the prefix of the manifest names, i.e. "manifest-" or "tagmanifest-"
+     * @param fileChecksums the checksums of the files listed in the manifests
+     * @return the manifests, in the order of the algorithms
+     * @throws IOException if a manifest could not be written
+     */
+    List<File> write(String prefix, Map<File, List<Checksum>> fileChecksums) throws IOException {
+        //the table of the files listed, sorted by path
+        Entry[] entries = new Entry[fileChecksums.size()];
+        int i = 0;
+        for (Map.Entry<File, List<Checksum>> fileChecksum : fileChecksums.entrySet()) {
+            entries[i++] = new Entry(relativePath(fileChecksum.getKey()), fileChecksum.getValue());
+        }
+        Arrays.sort(entries, (entry, other) -> entry.path.compareTo(other.path));
+
+        List<File> manifestFiles = new ArrayList<>();
+        Map<String, Writer> writers = new HashMap<>();
+        try {
+            for (String alg : algorithms) {
+                File manifestFile = new File(bagDir, prefix + alg + ".txt");
+                manifestFiles.add(manifestFile);
+                writers.put(alg, new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile),
+                        StandardCharsets.UTF_8), BUFFER_SIZE));
+            }
+            for (Entry entry : entries) {
+                for (Checksum checksum : entry.checksums) {
+                    Writer writer = writers.get(checksum.getAlgorithm());
+                    if (writer != null) {
+                        writer.write(checksum.getValue());
+                        writer.write("  ");
+                        writer.write(entry.path);
+                        writer.write(newLine);
+                    }
+                }
+            }
+        } finally {
+            IOException closeException = null;
+            for (Writer writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    closeException = e;
+                }
+            }
+            if (closeException != null) {
+                throw closeException;
+            }
+        }
+        return manifestFiles;
+    }
+
+    /**
+     * Computes the path of a file in the bag, with Unix slashes.
+     */
+    private String relativePath(File file) {
+        String path = file.getPath();
+        String relativePath = path.startsWith(bagDirPrefix)
+                ? path.substring(bagDirPrefix.length())
+                : FilePathUtil.relativizePath(bagDir.getPath(), file);
+        return File.separatorChar == '/' ? relativePath : FilePathUtil.convertToUnixSlashes(relativePath);
+    }
+
+    /**
+     * A file listed in the manifests.
+     */
+    private static class Entry {
+
+        private final String path;
+
+        private final List<Checksum> checksums;
+
+        private Entry(String path, List<Checksum> checksums) {
+            this.path = path;
+            this.checksums = checksums;
+        }
+    }
+}
@@ -16,30 +16,58 @@
 
 package org.dataconservancy.packaging.tool.impl.generator;
 
+import org.apache.jena.rdf.model.AnonId;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.sparql.vocabulary.FOAF;
 import org.apache.jena.vocabulary.DC;
 import org.apache.jena.vocabulary.DCTerms;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.client.utils.URIBuilder;
 import org.dataconservancy.dcs.model.Pair;
+import org.dataconservancy.dcs.util.DateUtility;
 import org.dataconservancy.packaging.shared.ResourceMapConstants;
+import org.dataconservancy.packaging.tool.api.generator.AsyncPackageAssembler;
 import org.dataconservancy.packaging.tool.api.generator.PackageAssembler;
 import org.dataconservancy.packaging.tool.api.generator.PackageModelBuilder;
 import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
+import org.dataconservancy.packaging.tool.api.generator.ReadScheduler;
+import org.dataconservancy.packaging.tool.model.BoremParameterNames;
 import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
 import org.dataconservancy.packaging.tool.model.PackageArtifact;
+import org.dataconservancy.packaging.tool.model.PackageArtifactGraph;
 import org.dataconservancy.packaging.tool.model.PackageArtifact.PropertyValueGroup;
 import org.dataconservancy.packaging.tool.model.PackageDescription;
 import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
 import org.dataconservancy.packaging.tool.model.PackageRelationship;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
 import org.dataconservancy.packaging.tool.model.ontologies.DcsBoPackageOntology;
 import org.dspace.foresite.*;
+import org.dspace.foresite.jena.REMValidatorJena;
+import org.dspace.foresite.jena.ResourceMapJena;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.dataconservancy.packaging.tool.model.DcsPackageDescriptionSpec.ArtifactType;
@@ -135,7 +163,7 @@ public class OrePackageModelBuilder
                 }
             };
 
-    private static final Map<ArtifactType, URI> oreAggregationTypes =
+    static final Map<ArtifactType, URI> oreAggregationTypes =
             new HashMap<ArtifactType, URI>() {
 
                 {
@@ -151,36 +179,130 @@ public class OrePackageModelBuilder
                 }
             };
 
-    private final Map<ArtifactType, Set<PackageArtifact>> artifactsByType =
-            new HashMap<>();
+    /*
+     * The artifacts which are not ignored. Artifacts are designated by their
+     * number in this graph, and what is known of them is held in arrays
+     * indexed by it.
+     */
+    PackageArtifactGraph artifacts;
 
-    private final Map<String, PackageArtifact> artifactsById =
-            new HashMap<>();
+    /* The type of each artifact */
+    private ArtifactType[] artifactTypes;
 
-    private final Map<PackageArtifact, Set<Pair<URI, PackageArtifact>>> oreRelationships =
-            new HashMap<>();
+    /*
+     * Relationships of each artifact, in the direction ORE wants: those of
+     * artifact a are oreRelationshipsStart[a] to oreRelationshipsStart[a + 1],
+     * each a predicate and the artifact it points to, or -1 if it points to
+     * something else.
+     */
+    private int[] oreRelationshipsStart;
+
+    private URI[] oreRelationshipPredicates;
+
+    private int[] oreRelationshipObjects;
 
     /* Maps an artifact to its rdf identity in a ReM */
-    private final Map<PackageArtifact, URI> oreIdentities =
-            new HashMap<>();
+    URI[] oreIdentities;
 
     /* Maps an artifact to the containing ReM */
-    private final Map<PackageArtifact, URI> oreRemForArtifact =
-            new HashMap<>();
+    URI[] oreRemForArtifact;
 
     private final Map<URI, ResourceMap> oreRems =
             new HashMap<>();
 
-    private URI packageRemURI;
+    URI packageRemURI;
 
     private File rootContentFile;
 
+    String packageName;
+
+    /* When serialization is reproducible, ReM names are derived from what they describe, and dated with this date */
+    boolean isReproducible;
+
+    DateTime reproducibleDate;
+
+    /* When set, payload is only read once all of it is named, in the order decided by the scheduler */
+    private ReadScheduler readScheduler;
+
+    private final Map<File, List<URI>> scheduledReads = new LinkedHashMap<>();
+
+    /* Number of threads adding properties to ReMs, and serializing them */
+    private int remSerializationThreads;
+
+    /* RDF syntax ReMs are written in */
+    RemSerializationFormat remFormat;
+
+    /*
+     * ReMs may share documents: the ReMs of the DataItems of a collection
+     * share its document, or else DataItem ReMs are written this many to a
+     * document.
+     */
+    private boolean isGroupedByCollection;
+
+    private int dataItemsPerDocument;
+
+    /* Names the document of each artifact whose ReM shares one */
+    private String[] remDocumentNames;
+
+    /* URIs of the documents shared by several ReMs, by name */
+    private final Map<String, URI> remDocuments = new HashMap<>();
+
+    /* Properties are added to the model of each ReM once all artifacts are in a ReM */
+    private final Map<URI, List<REMTask>> propertyAdditions = new LinkedHashMap<>();
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void init(PackageGenerationParameters params) {
         rootContentFile = new File(params.getParam(GeneralParameterNames.CONTENT_ROOT_LOCATION,0));
+        packageName = params.getParam(GeneralParameterNames.PACKAGE_NAME, 0);
+        isReproducible = Boolean.valueOf(params.getParam(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION, 0));
+        String reproducibleDateValue = params.getParam(GeneralParameterNames.REPRODUCIBLE_DATE, 0);
+        reproducibleDate = reproducibleDateValue != null
+                ? BagItPackageAssembler.parseDateParam(GeneralParameterNames.REPRODUCIBLE_DATE, reproducibleDateValue)
+                : new DateTime(0, DateTimeZone.UTC);
+        readScheduler = ReadSchedulerFactory.newScheduler(params);
+        remSerializationThreads = Runtime.getRuntime().availableProcessors();
+        String threadsValue = params.getParam(GeneralParameterNames.REM_SERIALIZATION_THREADS, 0);
+        if (threadsValue != null) {
+            try {
+                remSerializationThreads = Integer.parseInt(threadsValue.trim());
+            } catch (NumberFormatException e) {
+                remSerializationThreads = 0;
+            }
+            if (remSerializationThreads < 1) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                        String.format("Specified number of ReM serialization threads <%s> is not a positive " +
+                                "integer.", threadsValue));
+            }
+        }
+        remFormat = RemSerializationFormat.RDF_XML;
+        String formatValue = params.getParam(BoremParameterNames.REM_SERIALIZATION_FORMAT, 0);
+        if (formatValue != null) {
+            remFormat = RemSerializationFormat.forName(formatValue);
+            if (remFormat == null) {
+                throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                        String.format("Specified ReM serialization format <%s> is not supported.", formatValue));
+            }
+        }
+        String granularityValue = params.getParam(BoremParameterNames.REM_GRANULARITY, 0);
+        if (granularityValue != null && !granularityValue.trim().equalsIgnoreCase("artifact")) {
+            if (granularityValue.trim().equalsIgnoreCase("collection")) {
+                isGroupedByCollection = true;
+            } else {
+                try {
+                    dataItemsPerDocument = Integer.parseInt(granularityValue.trim());
+                } catch (NumberFormatException e) {
+                    dataItemsPerDocument = 0;
+                }
+                if (dataItemsPerDocument < 1) {
+                    throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                            String.format("Specified ReM granularity <%s> is neither \"artifact\", \"collection\" " +
+                                    "nor a positive integer.", granularityValue));
+                }
+            }
+        }
     }
 
     /**
@@ -208,6 +330,7 @@ public class OrePackageModelBuilder
              * relationships, etc
              */
             analyzeArtifacts(desc);
+            assignREMDocuments();
 
             /*
              * Now, we'll add the aggregating types and all their descendants.
@@ -216,43 +339,45 @@ public class OrePackageModelBuilder
              */
 
             /* First, add all DataItems and descendants */
-            for (PackageArtifact dataItem : artifactsByType
-                    .get(ArtifactType.DataItem)) {
-                addAggregationFor(dataItem, assembler);
+            for (int dataItem : artifactsOfType(ArtifactType.DataItem)) {
+                expand(addAggregationFor(dataItem, assembler),
+                       (from, predicate, object) -> addRelationship(from, predicate, object, assembler));
             }
 
             /*
              * Next, do Collections and all descendants.
              */
-            for (PackageArtifact dataItem : artifactsByType
-                    .get(ArtifactType.Collection)) {
-                addAggregationFor(dataItem, assembler);
+            for (int collection : artifactsOfType(ArtifactType.Collection)) {
+                expand(addAggregationFor(collection, assembler),
+                       (from, predicate, object) -> addRelationship(from, predicate, object, assembler));
             }
 
             /*
              * Finally, any Projects.
              */
-            for (PackageArtifact dataItem : artifactsByType
-                    .get(ArtifactType.Project)) {
-                addAggregationFor(dataItem, assembler);
+            for (int project : artifactsOfType(ArtifactType.Project)) {
+                expand(addAggregationFor(project, assembler),
+                       (from, predicate, object) -> addRelationship(from, predicate, object, assembler));
             }
 
+            /* Add the properties of the artifacts to their ReMs */
+            addProperties();
+
+            /* Read the payload whose reads were scheduled */
+            putScheduledResources(assembler);
+
             /* Now, create the package ReM */
-            ResourceMap packageRem = createREM(assembler);
+            ResourceMap packageRem = createREM(reserveREM("package:" + packageName, assembler));
             Aggregation packageAggregation =
-                    packageRem.createAggregation(URI.create(packageRem.getURI()
-                            .toString() + "#Aggregation"));
+                    packageRem.createAggregation(aggregationURI(packageRem.getURI()));
             packageAggregation.addType(URI
                     .create(ResourceMapConstants.DC_PACKAGE_TYPE.toString()));
             packageRemURI = packageRem.getURI();
 
-            ORESerialiser serializer =
-                    ORESerialiserFactory.getInstance("RDF/XML");
-
             /* Add the root artifact aggregation to the package */
-            if (desc.getRootArtifact() != null) {
-                ResourceMap artifactRem =
-                        oreRems.get(oreRemForArtifact.get(desc.getRootArtifact()));
+            URI rootRem = remForArtifact(desc.getRootArtifact());
+            if (rootRem != null) {
+                ResourceMap artifactRem = oreRems.get(rootRem);
                 if (artifactRem != null) {
                     AggregatedResource remAggregation =
                             packageAggregation.createAggregatedResource(artifactRem
@@ -260,126 +385,513 @@ public class OrePackageModelBuilder
                     remAggregation.addResourceMap(artifactRem.getURI());
                 }
             }
-            for (ResourceMap rem : oreRems.values()) {
-                writeREM(rem, serializer, assembler);
+            /*
+             * The package ReM is written last, once all the ReMs it leads to
+             * have been written
+             */
+            Map<URI, REMSerializer> documents = new LinkedHashMap<>();
+            for (Map.Entry<URI, List<URI>> document : groupByDocument(oreRems.keySet()).entrySet()) {
+                if (!document.getKey().equals(packageRemURI)) {
+                    List<ResourceMap> rems = new ArrayList<>();
+                    for (URI remURI : document.getValue()) {
+                        rems.add(oreRems.get(remURI));
+                    }
+                    documents.put(document.getKey(), out -> serializeREMs(rems, out));
+                }
             }
+            writeREMs(documents, assembler);
+            writeREM(packageRemURI, out -> serializeREM(packageRem, out), assembler);
 
             /* Finally, validate that all artifacts made their way into a ReM */
-            for (PackageArtifact artifact : desc.getPackageArtifacts()) {
-                if (!oreRemForArtifact.containsKey(artifact) && !artifact.isIgnored()) {
-                    throw new RuntimeException(String.format("Artifact %s (%s) is not in a ReM.  "
-                                                                     + "This is likely because it is an orphan. "
-                                                                     + "Check its relationships.",
-                                                             artifact.getId(),
-                                                             artifact.getType()));
-                }
-            }
+            checkArtifactsInReMs();
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void analyzeArtifacts(PackageDescription desc) {
-
-        /* First, initialize the maps */
-        for (ArtifactType type : ArtifactType.values()) {
-            artifactsByType.put(type, new HashSet<>());
+    void checkArtifactsInReMs() {
+        for (int artifact = 0; artifact < artifacts.size(); artifact++) {
+            if (oreRemForArtifact[artifact] == null) {
+                throw new RuntimeException(String.format("Artifact %s (%s) is not in a ReM.  "
+                                                                 + "This is likely because it is an orphan. "
+                                                                 + "Check its relationships.",
+                                                         artifacts.getArtifact(artifact).getId(),
+                                                         artifacts.getType(artifact)));
+            }
         }
+    }
+
+    /* The ReM of an artifact of the description, if it is in one */
+    URI remForArtifact(PackageArtifact artifact) {
+        int index = artifact != null ? artifacts.indexOf(artifact.getId()) : -1;
+        return index >= 0 ? oreRemForArtifact[index] : null;
+    }
 
-        /* Then categorize by id and type */
+    void analyzeArtifacts(PackageDescription desc) {
+
+        /* First, number the artifacts which are not ignored */
+        List<PackageArtifact> included = new ArrayList<>();
         for (PackageArtifact artifact : desc.getPackageArtifacts()) {
             if (!artifact.isIgnored()) {
-                /* First, categorize artifacts by ID and type */
-                ArtifactType type = ArtifactType.valueOf(artifact.getType());
+                included.add(artifact);
+            }
+        }
+        artifacts = new PackageArtifactGraph(included);
+        oreIdentities = new URI[artifacts.size()];
+        oreRemForArtifact = new URI[artifacts.size()];
+        remDocumentNames = new String[artifacts.size()];
+
+        /* Then categorize by type */
+        ArtifactType[] typesByCode = new ArtifactType[artifacts.getTypeCount()];
+        for (int typeCode = 0; typeCode < typesByCode.length; typeCode++) {
+            typesByCode[typeCode] = ArtifactType.valueOf(artifacts.getTypeName(typeCode));
+        }
+        artifactTypes = new ArtifactType[artifacts.size()];
+        for (int artifact = 0; artifact < artifacts.size(); artifact++) {
+            artifactTypes[artifact] = typesByCode[artifacts.getTypeCode(artifact)];
+        }
 
-                artifactsByType.get(type).add(artifact);
-                artifactsById.put(artifact.getId(), artifact);
-                oreRelationships.put(artifact,
-                        new HashSet<>());
+        /*
+         * Finally, categorize relationships, in the direction ORE wants. Some
+         * are reversed with respect to their representation in the
+         * PackageArtifact, some are forward. The ORE relationships of each
+         * artifact are first gathered in the order they are found, then laid
+         * out in arrays.
+         */
+        Map<String, URI[]> predicates = new HashMap<>();
+        List<List<Pair<URI, Integer>>> found = new ArrayList<>(artifacts.size());
+        for (int artifact = 0; artifact < artifacts.size(); artifact++) {
+            found.add(new ArrayList<>());
+        }
+        for (int artifact = 0; artifact < artifacts.size(); artifact++) {
+            for (int rel = artifacts.getRelationshipsStart(artifact);
+                 rel < artifacts.getRelationshipsEnd(artifact); rel++) {
+                /* Reverse and forward predicates (if defined) of the relationship name */
+                URI[] oreRels = predicates.computeIfAbsent(artifacts.getRelationshipName(rel), this::getOrePredicates);
+
+                if (oreRels[0] != null) {
+                    registerRels(true, artifact, oreRels[0], rel, found);
+                }
+                if (oreRels[1] != null) {
+                    registerRels(false, artifact, oreRels[1], rel, found);
+                }
             }
         }
 
-        /* Finally, categorize relationships */
-        for (PackageArtifact artifact : desc.getPackageArtifacts()) {
-            if (!artifact.isIgnored()) {
-                /*
-                 * Then, construct a map relationships, in the direction ORE wants.
-                 * Some are reversed with respect to their representation in the
-                 * PackageArtifact, some are forward.
-                 */
-                for (PackageRelationship rel : artifact.getRelationships()) {
-
-                /* Record reverse relationship (if defined) */
-                    URI oreRel = getReverseRelationshipURI(rel.getName());
-
-                    if (oreRel != null) {
-                        registerRels(true, artifact, oreRel, rel.getTargets());
-
-                        // Hack to handle relationships present in both forward and reverse maps
-                        if (oreForwardRelationshipMap.containsKey(rel.getName())) {
-                            registerRels(false, artifact, getForwardRelationshipURI(rel.getName()), rel.getTargets());
-                        }
-                    } else {
-                        oreRel = getForwardRelationshipURI(rel.getName());
+        oreRelationshipsStart = new int[artifacts.size() + 1];
+        int count = 0;
+        for (List<Pair<URI, Integer>> relationships : found) {
+            count += relationships.size();
+        }
+        oreRelationshipPredicates = new URI[count];
+        oreRelationshipObjects = new int[count];
+        int next = 0;
+        for (int artifact = 0; artifact < artifacts.size(); artifact++) {
+            oreRelationshipsStart[artifact] = next;
+            for (Pair<URI, Integer> relationship : found.get(artifact)) {
+                oreRelationshipPredicates[next] = relationship.getKey();
+                oreRelationshipObjects[next] = relationship.getValue();
+                next++;
+            }
+        }
+        oreRelationshipsStart[artifacts.size()] = next;
+    }
 
-                        if (oreRel != null) {
-                            registerRels(false, artifact, oreRel, rel.getTargets());
-                        } else {
-                            registerRels(false, artifact, URI.create(rel.getName()), rel.getTargets());
-                        }
-                    }
-                }
+    /*
+     * The ORE predicates of a relationship name: the one of the reverse
+     * relationship, if defined, and the one of the forward relationship, if
+     * the name has no reverse or also has a forward one.
+     */
+    private URI[] getOrePredicates(String relationshipName) {
+        URI reverse = getReverseRelationshipURI(relationshipName);
+        URI forward = null;
+        if (reverse == null) {
+            forward = getForwardRelationshipURI(relationshipName);
+            if (forward == null) {
+                forward = URI.create(relationshipName);
             }
+        } else if (oreForwardRelationshipMap.containsKey(relationshipName)) {
+            // Hack to handle relationships present in both forward and reverse maps
+            forward = getForwardRelationshipURI(relationshipName);
         }
+        return new URI[] {reverse, forward};
     }
 
     private void registerRels(boolean relationshipIsReversed,
-                              PackageArtifact artifact,
+                              int artifact,
                               URI rel,
-                              Set<String> targets) {
-        for (String target : targets) {
-            PackageArtifact subject;
-            PackageArtifact object;
-
-            /* target may be an artifact ID, or may not.  If it's an artifact ID, it'll 
-             * match an artifact, which will be the object of the relationship.  If not, 
-             * the object will be null.
+                              int relationship,
+                              List<List<Pair<URI, Integer>>> found) {
+        for (int target = artifacts.getTargetsStart(relationship);
+             target < artifacts.getTargetsEnd(relationship); target++) {
+
+            /* target may be an artifact, or may not.  If it's an artifact, it'll
+             * be the object of the relationship.  If not, the object will be -1.
              */
+            int subject;
+            int object;
             if (relationshipIsReversed) {
-                subject = artifactsById.get(target);
+                subject = artifacts.getTarget(target);
                 object = artifact;
             } else {
                 subject = artifact;
-                object = artifactsById.get(target);
+                object = artifacts.getTarget(target);
             }
 
-            if (subject != null ) {
-                oreRelationships.get(subject)
-                        .add(new Pair<>(rel, object));
+            if (subject >= 0) {
+                found.get(subject).add(new Pair<>(rel, object));
             }
-
         }
     }
 
-    private ResourceMap createREM(PackageAssembler assembler)
+    /* The artifacts of a type, in the order they are numbered */
+    int[] artifactsOfType(ArtifactType type) {
+        return artifacts.getArtifactsOfType(type.name());
+    }
+
+    ArtifactType artifactType(int artifact) {
+        return artifactTypes[artifact];
+    }
+
+    private ResourceMap createREM(URI remURI)
             throws OREException {
-        URI remURI =
-                assembler.reserveResource(String.format("/ORE-REM/%s-REM.xml",
-                                                        UUID.randomUUID()
-                                                                .toString()),
-                                          PackageResourceType.METADATA);
         ResourceMap rem = OREFactory.createResourceMap(remURI);
         rem.clearCreators();
         oreRems.put(remURI, rem);
         return rem;
     }
 
-    private void writeREM(ResourceMap rem,
-                          ORESerialiser serializer,
-                          PackageAssembler assembler) throws OREException,
-            ORESerialiserException {
+    /*
+     * The ReM is named by a random UUID, or, when serialization is
+     * reproducible, by a UUID derived from the given name, which must be
+     * unique to the ReM.
+     */
+    URI reserveREM(String name, PackageAssembler assembler) {
+        return assembler.reserveResource(String.format("/ORE-REM/%s-REM.%s",
+                                                       remId(name),
+                                                       remFormat.getExtension()),
+                                         PackageResourceType.METADATA);
+    }
+
+    private UUID remId(String name) {
+        return isReproducible
+                ? UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8))
+                : UUID.randomUUID();
+    }
+
+    /*
+     * Reserves the ReM of an artifact. A ReM sharing a document with others
+     * is named by a fragment of the document's URI.
+     */
+    URI reserveREM(int artifact, PackageAssembler assembler) {
+        String id = artifacts.getArtifact(artifact).getId();
+        String documentName = remDocumentNames[artifact];
+        if (documentName == null) {
+            return reserveREM(id, assembler);
+        }
+        URI document = remDocuments.get(documentName);
+        if (document == null) {
+            document = reserveREM("document:" + documentName, assembler);
+            remDocuments.put(documentName, document);
+        }
+        return URI.create(document + "#" + remId(id) + "-REM");
+    }
+
+    /*
+     * The aggregation of a ReM is named by the "Aggregation" fragment of the
+     * ReM's URI, or, for a ReM which is itself a fragment, by replacing "REM"
+     * with "Aggregation".
+     */
+    static URI aggregationURI(URI remURI) {
+        String rem = remURI.toString();
+        return URI.create(remURI.getFragment() == null
+                                  ? rem + "#Aggregation"
+                                  : rem.substring(0, rem.length() - "REM".length()) + "Aggregation");
+    }
+
+    /*
+     * Decides which artifacts have their ReMs written to shared documents,
+     * according to the granularity of ReMs.
+     */
+    void assignREMDocuments() {
+        if (isGroupedByCollection) {
+            /* A DataItem in several collections goes with the first of them, by id */
+            for (int parent = 0; parent < artifacts.size(); parent++) {
+                ArtifactType parentType = artifactType(parent);
+                if (parentType != ArtifactType.Collection && parentType != ArtifactType.Project) {
+                    continue;
+                }
+                String parentId = artifacts.getArtifact(parent).getId();
+                for (int rel = oreRelationshipsStart[parent]; rel < oreRelationshipsStart[parent + 1]; rel++) {
+                    int child = oreRelationshipObjects[rel];
+                    if (ORE_AGGREGATES.equals(oreRelationshipPredicates[rel]) && child >= 0
+                            && artifactType(child) == ArtifactType.DataItem) {
+                        if (remDocumentNames[child] == null || parentId.compareTo(remDocumentNames[child]) < 0) {
+                            remDocumentNames[child] = parentId;
+                        }
+                        remDocumentNames[parent] = parentId;
+                    }
+                }
+            }
+        } else if (dataItemsPerDocument > 0) {
+            int[] dataItems = artifactsOfType(ArtifactType.DataItem);
+            String[] ids = new String[dataItems.length];
+            for (int i = 0; i < dataItems.length; i++) {
+                ids[i] = artifacts.getArtifact(dataItems[i]).getId();
+            }
+            Integer[] byId = new Integer[dataItems.length];
+            for (int i = 0; i < byId.length; i++) {
+                byId[i] = i;
+            }
+            Arrays.sort(byId, Comparator.comparing(i -> ids[i]));
+            for (int i = 0; i < byId.length; i++) {
+                remDocumentNames[dataItems[byId[i]]] = "DataItems " + i / dataItemsPerDocument;
+            }
+        }
+    }
+
+    /*
+     * Groups ReMs by the document they are written in, which is named by the
+     * ReM's URI without its fragment.
+     */
+    static Map<URI, List<URI>> groupByDocument(Collection<URI> remURIs) {
+        Map<URI, List<URI>> documents = new LinkedHashMap<>();
+        for (URI remURI : remURIs) {
+            String rem = remURI.toString();
+            URI document = remURI.getFragment() == null ? remURI : URI.create(rem.substring(0, rem.indexOf('#')));
+            documents.computeIfAbsent(document, d -> new ArrayList<>()).add(remURI);
+        }
+        return documents;
+    }
+
+    /* Serializes a ReM into a stream */
+    interface REMSerializer {
+
+        void serialize(OutputStream out) throws Exception;
+    }
+
+    /*
+     * ReMs are independent of one another, so they are serialized
+     * concurrently. Asynchronous assemblers support concurrent writes, so the
+     * ReMs are serialized straight into them. Others are handed one
+     * serialized ReM at a time.
+     */
+    void writeREMs(Map<URI, REMSerializer> rems, PackageAssembler assembler)
+            throws Exception {
+        if (remSerializationThreads == 1 || rems.size() < 2) {
+            for (Map.Entry<URI, REMSerializer> rem : rems.entrySet()) {
+                writeREM(rem.getKey(), rem.getValue(), assembler);
+            }
+            return;
+        }
+
+        boolean isConcurrent = assembler instanceof AsyncPackageAssembler;
+        List<REMTask> writes = new ArrayList<>();
+        for (Map.Entry<URI, REMSerializer> rem : rems.entrySet()) {
+            writes.add(() -> {
+                if (isConcurrent) {
+                    writeREM(rem.getKey(), rem.getValue(), assembler);
+                } else {
+                    ByteArrayOutputStream serialized =
+                            new ByteArrayOutputStream();
+                    rem.getValue().serialize(serialized);
+                    synchronized (assembler) {
+                        try (OutputStream out =
+                                assembler.openResource(rem.getKey())) {
+                            serialized.writeTo(out);
+                        }
+                    }
+                }
+            });
+        }
+        runConcurrently("rem-serializer", writes);
+    }
+
+    /* Work on the model of a ReM */
+    interface REMTask {
+
+        void run() throws Exception;
+    }
+
+    /*
+     * Runs tasks on as many threads as ReMs are serialized on, and throws the
+     * first exception any of them throws.
+     */
+    private void runConcurrently(String threadName, List<REMTask> tasks)
+            throws Exception {
+        if (remSerializationThreads == 1 || tasks.size() < 2) {
+            for (REMTask task : tasks) {
+                task.run();
+            }
+            return;
+        }
+
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(remSerializationThreads,
+                                                      tasks.size()),
+                                             runnable -> {
+                                                 Thread thread =
+                                                         new Thread(runnable,
+                                                                    threadName);
+                                                 thread.setDaemon(true);
+                                                 return thread;
+                                             });
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (REMTask task : tasks) {
+                results.add(executor.submit(() -> {
+                    task.run();
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
+    /*
+     * Properties only ever go to the ReM of the artifact they belong to, so
+     * they are added after the artifacts are all placed in ReMs, to each ReM
+     * concurrently.
+     */
+    void addPropertiesLater(URI remURI, REMTask addition) {
+        propertyAdditions.computeIfAbsent(remURI, rem -> new ArrayList<>()).add(addition);
+    }
+
+    void addProperties() throws Exception {
+        List<REMTask> tasks = new ArrayList<>();
+        for (List<REMTask> additions : propertyAdditions.values()) {
+            tasks.add(() -> {
+                for (REMTask addition : additions) {
+                    addition.run();
+                }
+            });
+        }
+        propertyAdditions.clear();
+        runConcurrently("rem-builder", tasks);
+    }
+
+    /* An artifact, as a resource in a ReM, and its relationships yet to be added */
+    static class Expansion<R> {
+
+        final int artifact;
+
+        final R resource;
+
+        final URI remURI;
+
+        /* The next of the artifact's ORE relationships to add, and the end of them */
+        int nextRelationship;
+
+        final int endOfRelationships;
+
+        Expansion(int artifact, R resource, URI remURI,
+                  int firstRelationship, int endOfRelationships) {
+            this.artifact = artifact;
+            this.resource = resource;
+            this.remURI = remURI;
+            this.nextRelationship = firstRelationship;
+            this.endOfRelationships = endOfRelationships;
+        }
+    }
+
+    /*
+     * Adds a relationship of an artifact, to the artifact numbered object, or
+     * to something else if it is -1, returning the artifact it creates, if any
+     */
+    interface RelationshipAdder<R> {
+
+        Expansion<R> add(Expansion<R> from, URI predicate, int object)
+                throws Exception;
+    }
+
+    <R> Expansion<R> expansion(int artifact, R resource, URI remURI) {
+        return new Expansion<>(artifact, resource, remURI,
+                               oreRelationshipsStart[artifact], oreRelationshipsStart[artifact + 1]);
+    }
+
+    /*
+     * Adds the relationships of an artifact, and of the artifacts they lead
+     * to, depth first. The artifacts being expanded are kept on a stack rather
+     * than on the call stack, so that deeply nested descriptions do not
+     * overflow it.
+     */
+    <R> void expand(Expansion<R> root, RelationshipAdder<R> adder)
+            throws Exception {
+        Deque<Expansion<R>> expansions = new ArrayDeque<>();
+        expansions.push(root);
+        while (!expansions.isEmpty()) {
+            Expansion<R> expansion = expansions.peek();
+            if (expansion.nextRelationship == expansion.endOfRelationships) {
+                expansions.pop();
+                continue;
+            }
+            int relationship = expansion.nextRelationship++;
+            Expansion<R> created = adder.add(expansion,
+                                             oreRelationshipPredicates[relationship],
+                                             oreRelationshipObjects[relationship]);
+            if (created != null) {
+                expansions.push(created);
+            }
+        }
+    }
+
+    void writeREM(URI remURI, REMSerializer serializer, PackageAssembler assembler)
+            throws Exception {
+        try (OutputStream out = assembler.openResource(remURI)) {
+            serializer.serialize(out);
+        }
+    }
+
+    /*
+     * Writes the ReMs sharing a document. Foresite cannot write several ReMs
+     * as one, so they are merged in a Jena model.
+     */
+    private void serializeREMs(List<ResourceMap> rems, OutputStream out)
+            throws OREException {
+        if (rems.size() == 1) {
+            serializeREM(rems.get(0), out);
+            return;
+        }
+        Model document = ModelFactory.createDefaultModel();
+        for (ResourceMap rem : rems) {
+            prepareREM(rem);
+            Model model = toModel(rem);
+            if (document.isEmpty()) {
+                document.setNsPrefixes(model);
+            }
+            document.add(model);
+        }
+        write(document, out);
+    }
+
+    private void serializeREM(ResourceMap rem, OutputStream out)
+            throws OREException {
+        prepareREM(rem);
+
+        /*
+         * Foresite only writes RDF/XML, so ReMs which are canonicalized, or
+         * written in another syntax, are read back into a Jena model first.
+         */
+        if (isReproducible || remFormat != RemSerializationFormat.RDF_XML) {
+            write(toModel(rem), out);
+        } else {
+            serialize(rem, out);
+        }
+    }
+
+    private void prepareREM(ResourceMap rem) throws OREException {
         Aggregation aggregation = rem.getAggregation();
         aggregation.clearReMSerialisations();
         aggregation
@@ -390,11 +902,111 @@ public class OrePackageModelBuilder
                                                       rem));
         rem.clearCreators();
 
-        assembler.putResource(rem.getURI(), IOUtils.toInputStream(serializer
-                .serialise(rem).toString()));
+        /*
+         * Foresite dates a ReM when it is created, and writes the date in the
+         * local time zone, so replace it with the fixed date, in UTC.
+         */
+        if (isReproducible) {
+            rem.removeModified();
+            rem.addTriple(OREFactory.createTriple(rem,
+                                                  new Predicate(URI.create(DCTerms.modified
+                                                          .getURI())),
+                                                  DateUtility.toIso8601_DateTimeNoMillis(reproducibleDate
+                                                          .toDate())));
+        }
+    }
+
+    private Model toModel(ResourceMap rem) throws OREException {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        serialize(rem, serialized);
+        Model model = ModelFactory.createDefaultModel();
+        model.read(new ByteArrayInputStream(serialized.toByteArray()), null, "RDF/XML");
+        Resource remResource = model.getResource(rem.getURI().toString());
+        model.removeAll(remResource, DC.format, null);
+        model.add(remResource, DC.format, getRemMediaType());
+        return model;
+    }
+
+    /*
+     * The dc:format of ReMs. RDF/XML ReMs keep the type foresite always gave
+     * them.
+     */
+    String getRemMediaType() {
+        return remFormat == RemSerializationFormat.RDF_XML ? "application/octet-stream" : remFormat.getMediaType();
+    }
+
+    void write(Model rem, OutputStream out) {
+        if (isReproducible) {
+            canonicalize(rem, out);
+        } else {
+            RDFDataMgr.write(out, rem, remFormat.getRdfFormat());
+        }
+    }
+
+    /*
+     * Serializes the ReM as RDF/XML, as foresite's serializer does, but into
+     * the given stream rather than into a String, so that large ReMs are not
+     * held in memory once serialized.
+     */
+    private void serialize(ResourceMap rem, OutputStream out)
+            throws OREException {
+        ResourceMap copy = rem.copy();
+        new REMValidatorJena().prepForSerialisation(copy);
+        ((ResourceMapJena) copy).getModel().write(out, "RDF/XML");
+    }
+
+    /*
+     * The order in which a ReM's resources are written depends on the order
+     * its triples were added in, and on the identity of its blank nodes, which
+     * differs from one run to the next. So re-create the ReM by adding its
+     * triples in sorted order, after naming each blank node after the triples
+     * it is part of.
+     */
+    private void canonicalize(Model model, OutputStream out) {
+        Map<Resource, List<String>> blankNodeTriples = new HashMap<>();
+        for (Statement statement : model.listStatements().toList()) {
+            if (statement.getSubject().isAnon()) {
+                blankNodeTriples.computeIfAbsent(statement.getSubject(), node -> new ArrayList<>())
+                        .add(String.format("_ <%s> %s", statement.getPredicate(),
+                                           statement.getObject().isAnon() ? "_" : statement.getObject()));
+            }
+            if (statement.getObject().isAnon()) {
+                blankNodeTriples.computeIfAbsent(statement.getObject().asResource(), node -> new ArrayList<>())
+                        .add(String.format("%s <%s> _", statement.getSubject().isAnon() ? "_" : statement.getSubject(),
+                                           statement.getPredicate()));
+            }
+        }
+        Map<Resource, String> signatures = new HashMap<>();
+        for (Map.Entry<Resource, List<String>> node : blankNodeTriples.entrySet()) {
+            Collections.sort(node.getValue());
+            signatures.put(node.getKey(), String.join("\n", node.getValue()));
+        }
+        List<Resource> blankNodes = new ArrayList<>(signatures.keySet());
+        blankNodes.sort(Comparator.comparing(signatures::get));
+
+        Model canonical = ModelFactory.createDefaultModel();
+        canonical.setNsPrefixes(model.getNsPrefixMap());
+        Map<RDFNode, Resource> names = new HashMap<>();
+        for (int i = 0; i < blankNodes.size(); i++) {
+            names.put(blankNodes.get(i), canonical.createResource(new AnonId("b" + i)));
+        }
+
+        SortedMap<String, Statement> statements = new TreeMap<>();
+        for (Statement statement : model.listStatements().toList()) {
+            Resource subject = names.getOrDefault(statement.getSubject(), statement.getSubject());
+            RDFNode object = names.containsKey(statement.getObject())
+                    ? names.get(statement.getObject()) : statement.getObject();
+            Statement renamed = canonical.createStatement(subject, statement.getPredicate(), object);
+            statements.put(String.format("%s <%s> %s", subject, renamed.getPredicate(), object), renamed);
+        }
+        for (Statement statement : statements.values()) {
+            canonical.add(statement);
+        }
+
+        RDFDataMgr.write(out, canonical, remFormat.getRdfFormat());
     }
 
-    private URI getPropertyURI(String pkgDescriptionPropertyName) {
+    URI getPropertyURI(String pkgDescriptionPropertyName) {
 
         if (!orePropertyMap.containsKey(pkgDescriptionPropertyName)) {
             try {
@@ -413,6 +1025,13 @@ public class OrePackageModelBuilder
         return orePropertyMap.get(pkgDescriptionPropertyName);
     }
 
+    /* Phone numbers, pages and email addresses are resources rather than literals */
+    static boolean isUriValued(String pkgDescriptionPropertyName) {
+        return pkgDescriptionPropertyName.equals(DcsBoPackageOntology.PHONE)
+                || pkgDescriptionPropertyName.equals(DcsBoPackageOntology.PAGE)
+                || pkgDescriptionPropertyName.equals(DcsBoPackageOntology.EMAIL);
+    }
+
     private URI getReverseRelationshipURI(String pkgDescriptionRelName) {
         return oreReverseRelationshipMap.get(pkgDescriptionRelName);
     }
@@ -437,15 +1056,14 @@ public class OrePackageModelBuilder
         return oreForwardRelationshipMap.get(pkgDescriptionRelName);
     }
 
-    private void addAggregationFor(PackageArtifact artifact,
-                                   PackageAssembler assembler) throws Exception {
+    private Expansion<OREResource> addAggregationFor(int artifact,
+                                                     PackageAssembler assembler) throws Exception {
 
-        ResourceMap rem = createREM(assembler);
+        ResourceMap rem = createREM(reserveREM(artifact, assembler));
 
         /* Create the aggregation */
         Aggregation aggregation =
-                rem.createAggregation(new URI(rem.getURI().toString()
-                        + "#Aggregation"));
+                rem.createAggregation(aggregationURI(rem.getURI()));
         aggregation.clearReMSerialisations();
         aggregation
                 .removeTriple(OREFactory.createTriple(aggregation,
@@ -453,43 +1071,30 @@ public class OrePackageModelBuilder
                                 .create(ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY
                                         .getURI())),
                         rem));
-        aggregation.addType(oreAggregationTypes.get(ArtifactType
-                .valueOf(artifact.getType())));
+        aggregation.addType(oreAggregationTypes.get(artifactType(artifact)));
 
         /* Track the mapping of artifact to aggregation, and ReM */
-        oreIdentities.put(artifact, aggregation.getURI());
-        oreRemForArtifact.put(artifact, rem.getURI());
+        oreIdentities[artifact] = aggregation.getURI();
+        oreRemForArtifact[artifact] = rem.getURI();
 
         /* Add properties */
-        addPropertiesTo(aggregation, artifact);
-
-        /* Add Relationships */
-        addRelationshipsFrom(artifact, aggregation, rem, assembler);
+        PackageArtifact described = artifacts.getArtifact(artifact);
+        addPropertiesLater(rem.getURI(), () -> addPropertiesTo(aggregation, described));
 
+        /* Its relationships are added once it is expanded */
+        return expansion(artifact, aggregation, rem.getURI());
     }
 
     /*
      * DataFiles and MetadataFiles are the only Resources in ORE terms that
      * aren't aggregations
      */
-    private void addResourceFor(PackageArtifact artifact,
-                                Aggregation aggregation,
-                                ResourceMap rem,
-                                PackageAssembler assembler) throws Exception {
-        /* Get file content */
-        URI artifactFileURI = artifact.getArtifactRef().getResolvedAbsoluteRefPath(rootContentFile).toUri();
-        URIBuilder urib = new URIBuilder(artifactFileURI);
-        urib.setScheme("file");
-
-        URL contentLocation = urib.build().toURL();
-
-        /* If file path isn't set, use the artifact ref */
-        String path = artifact.getArtifactRef().getRefString().replace(File.separatorChar, '/');
-
-        URI resourceURI =
-                assembler.createResource(path,
-                                         PackageResourceType.DATA,
-                                         contentLocation.openStream());
+    private Expansion<OREResource> addResourceFor(int artifact,
+                                                  Aggregation aggregation,
+                                                  ResourceMap rem,
+                                                  PackageAssembler assembler) throws Exception {
+        PackageArtifact described = artifacts.getArtifact(artifact);
+        URI resourceURI = putContent(described, assembler);
 
         AggregatedResource aggregatedResource =
                 aggregation.createAggregatedResource(resourceURI);
@@ -501,95 +1106,147 @@ public class OrePackageModelBuilder
                                                    aggregatedResource));
 
         /* Track */
-        oreIdentities.put(artifact, aggregatedResource.getURI());
-        oreRemForArtifact.put(artifact, rem.getURI());
+        oreIdentities[artifact] = aggregatedResource.getURI();
+        oreRemForArtifact[artifact] = rem.getURI();
 
         /* Add properties */
-        addPropertiesTo(aggregatedResource, artifact);
+        addPropertiesLater(rem.getURI(), () -> addPropertiesTo(aggregatedResource, described));
 
-        /* Add Relationships */
-        addRelationshipsFrom(artifact, aggregatedResource, rem, assembler);
+        return expansion(artifact, aggregatedResource, rem.getURI());
     }
 
-    private void addRelationshipsFrom(PackageArtifact fromArtifact,
-                                      OREResource toOreResource,
-                                      ResourceMap inRem,
-                                      PackageAssembler assembler)
+    /* Puts the content of a DataFile or MetadataFile into the package, and returns its URI */
+    URI putContent(PackageArtifact artifact, PackageAssembler assembler)
             throws Exception {
+        /* Get file content */
+        URI artifactFileURI = artifact.getArtifactRef().getResolvedAbsoluteRefPath(rootContentFile).toUri();
+        URIBuilder urib = new URIBuilder(artifactFileURI);
+        urib.setScheme("file");
 
-        if (!oreRelationships.containsKey(fromArtifact)) {
-            return;
-        }
+        URL contentLocation = urib.build().toURL();
+
+        /* If file path isn't set, use the artifact ref */
+        String path = artifact.getArtifactRef().getRefString().replace(File.separatorChar, '/');
 
         /*
-         * Add it's outward pointing relationships. If the target of the
-         * relationship doesn't exist anywhere, create is as appropriate.
+         * Name the resource right away, but let an asynchronous assembler
+         * write its content while the model is being built, or defer reading
+         * it until the reads can be scheduled.
          */
-        for (Pair<URI, PackageArtifact> relationship : oreRelationships
-                .get(fromArtifact)) {
-            
-            /* For relationships that don't point to a artifact, assume that they 
-             * point to some external resource.
-             */
-            if (relationship.getValue() == null) {
-                PackageRelationship artifactRelationship =  fromArtifact.getRelationshipByName(relationship.getKey().toString());
-                for (String target : artifactRelationship.getTargets()) {
-                    
-                    /* We only care about relationship targets that *aren't* package artifacts here.*/
-                    if (!artifactsById.containsKey(target)) {
-
-                        if (artifactRelationship.requiresUriTargets()) {
-                            /* Just put in a triple with the target (external resource) as a URI */
-                            toOreResource.createTriple(relationship.getKey(), URI.create(target));
-                        } else {
-                            toOreResource.createTriple(relationship.getKey(), target);
-                        }
-                    }
-                }
-                continue;
-            }
+        URI resourceURI;
+        if (readScheduler != null) {
+            resourceURI = assembler.reserveResource(path, PackageResourceType.DATA);
+            scheduledReads.computeIfAbsent(new File(contentLocation.toURI()), file -> new ArrayList<>())
+                    .add(resourceURI);
+        } else if (assembler instanceof AsyncPackageAssembler) {
+            resourceURI = assembler.reserveResource(path, PackageResourceType.DATA);
+            ((AsyncPackageAssembler) assembler)
+                    .putResourceAsync(resourceURI, new File(contentLocation.toURI()));
+        } else {
+            resourceURI =
+                    assembler.createResource(path,
+                                             PackageResourceType.DATA,
+                                             new File(contentLocation.toURI()));
+        }
+        return resourceURI;
+    }
 
-            /*
-             * If it points to an artifact that isn't in a ReM yet, create it.
-             */
-            if (!oreIdentities.containsKey(relationship.getValue())) {
-                if (oreAggregationTypes.containsKey(ArtifactType
-                        .valueOf(relationship.getValue().getType()))) {
-                    addAggregationFor(relationship.getValue(), assembler);
+    /*
+     * Puts the content of the payload resources whose reads were deferred,
+     * reading each file in the order decided by the read scheduler.
+     */
+    void putScheduledResources(PackageAssembler assembler)
+            throws IOException {
+        if (readScheduler == null) {
+            return;
+        }
+        for (File file : readScheduler.schedule(scheduledReads.keySet())) {
+            for (URI resourceURI : scheduledReads.get(file)) {
+                if (assembler instanceof AsyncPackageAssembler) {
+                    ((AsyncPackageAssembler) assembler)
+                            .putResourceAsync(resourceURI, file);
                 } else {
-                    addResourceFor(relationship.getValue(),
-                            inRem.getAggregation(),
-                            inRem,
-                            assembler);
+                    try (InputStream content = new FileInputStream(file)) {
+                        assembler.putResource(resourceURI, content);
+                    }
                 }
             }
+        }
+        scheduledReads.clear();
+    }
 
+    /*
+     * Adds one of the outward pointing relationships of an artifact. If the
+     * target of the relationship doesn't exist anywhere, it is created as
+     * appropriate, and returned to be expanded in turn.
+     */
+    private Expansion<OREResource> addRelationship(Expansion<OREResource> from,
+                                                   URI predicate,
+                                                   int object,
+                                                   PackageAssembler assembler)
+            throws Exception {
+        PackageArtifact fromArtifact = artifacts.getArtifact(from.artifact);
+        OREResource toOreResource = from.resource;
+        ResourceMap inRem = oreRems.get(from.remURI);
 
-            /*
-             * If it's defined in another ReM, then add a resource that
-             * ore:isDescribedBy the other ReM, and point to that
-             */
-            if (!oreRemForArtifact.get(relationship.getValue())
-                    .equals(inRem.getURI())) {
-                AggregatedResource resource =
-                        inRem.getAggregation()
-                                .createAggregatedResource(oreIdentities.get(relationship
-                                        .getValue()));
-                resource.clearResourceMaps();
-                resource.removeTriple(OREFactory.createTriple(resource,
-                                                              new Predicate(URI
-                                                                      .create(ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY
-                                                                              .getURI())),
-                                                              toOreResource));
-                resource.addResourceMap(oreRemForArtifact.get(relationship
-                        .getValue()));
+        /* For relationships that don't point to a artifact, assume that they 
+         * point to some external resource.
+         */
+        if (object < 0) {
+            PackageRelationship artifactRelationship =  fromArtifact.getRelationshipByName(predicate.toString());
+            for (String target : artifactRelationship.getTargets()) {
+                
+                /* We only care about relationship targets that *aren't* package artifacts here.*/
+                if (artifacts.indexOf(target) < 0) {
+
+                    if (artifactRelationship.requiresUriTargets()) {
+                        /* Just put in a triple with the target (external resource) as a URI */
+                        toOreResource.createTriple(predicate, URI.create(target));
+                    } else {
+                        toOreResource.createTriple(predicate, target);
+                    }
+                }
+            }
+            return null;
+        }
 
+        /*
+         * If it points to an artifact that isn't in a ReM yet, create it.
+         */
+        Expansion<OREResource> created = null;
+        if (oreIdentities[object] == null) {
+            if (oreAggregationTypes.containsKey(artifactType(object))) {
+                created = addAggregationFor(object, assembler);
+            } else {
+                created = addResourceFor(object,
+                        inRem.getAggregation(),
+                        inRem,
+                        assembler);
             }
+        }
 
-            toOreResource.createTriple(relationship.getKey(), oreIdentities
-                    .get(relationship.getValue()));
+
+        /*
+         * If it's defined in another ReM, then add a resource that
+         * ore:isDescribedBy the other ReM, and point to that
+         */
+        if (!oreRemForArtifact[object].equals(inRem.getURI())) {
+            AggregatedResource resource =
+                    inRem.getAggregation()
+                            .createAggregatedResource(oreIdentities[object]);
+            resource.clearResourceMaps();
+            resource.removeTriple(OREFactory.createTriple(resource,
+                                                          new Predicate(URI
+                                                                  .create(ResourceMapConstants.IS_DESCRIBED_BY_PROPERTY
+                                                                          .getURI())),
+                                                          toOreResource));
+            resource.addResourceMap(oreRemForArtifact[object]);
 
         }
+
+        toOreResource.createTriple(predicate, oreIdentities[object]);
+
+        return created;
     }
 
     /* Add property triples one by one */
@@ -603,8 +1260,7 @@ public class OrePackageModelBuilder
 
             if (artifact.hasSimpleProperty(key)) {
                 for (String value : artifact.getSimplePropertyValues(key)) {
-                    if (key.equals(DcsBoPackageOntology.PHONE) || key.equals(DcsBoPackageOntology.PAGE)
-                            || key.equals(DcsBoPackageOntology.EMAIL)) {
+                    if (isUriValued(key)) {
                         oreResource.createTriple(predicate, URI.create(value));
                     } else {
                         oreResource.createTriple(predicate, value);
@@ -621,8 +1277,7 @@ public class OrePackageModelBuilder
                         URI subPropPredicate = getPropertyURI(subKey);
 
                         for (String value : group.getSubPropertyValues(subKey)) {
-                            if (subKey.equals(DcsBoPackageOntology.PHONE) || subKey.equals(DcsBoPackageOntology.PAGE)
-                                    || subKey.equals(DcsBoPackageOntology.EMAIL)) {
+                            if (isUriValued(subKey)) {
                                 groupAgent.addProperty(subPropPredicate, URI.create(value));
                             } else {
                                 groupAgent.addProperty(subPropPredicate, value);
@@ -75,7 +75,8 @@ public class PackageModelBuilderFactory {
 
         for (String builderId : builders.keySet()) {
             if (builderId.equals(getModelBuilderId(desc.getPackageOntologyIdentifier(), formatId))) {
-                Class<? extends PackageModelBuilder> builderClass = builders.get(builderId);
+                Class<? extends PackageModelBuilder> builderClass =
+                        getBuilderClass(builders.get(builderId), params);
                 PackageModelBuilder builder = builderClass.newInstance();
                 builder.init(params);
                 return builder;
@@ -85,6 +86,30 @@ public class PackageModelBuilderFactory {
         return null;
     }
 
+    /*
+     * The registered builder may be replaced by one of its subclasses, which
+     * builds the same model in another way.
+     */
+    private static Class<? extends PackageModelBuilder> getBuilderClass(Class<? extends PackageModelBuilder> builderClass,
+                                                                        PackageGenerationParameters params) {
+        String builderClassName = params.getParam(GeneralParameterNames.PACKAGE_MODEL_BUILDER, 0);
+        if (builderClassName == null) {
+            return builderClass;
+        }
+
+        Class<?> replacement;
+        try {
+            replacement = Class.forName(builderClassName.trim());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Package model builder class " + builderClassName + " was not found", e);
+        }
+        if (!builderClass.isAssignableFrom(replacement)) {
+            throw new IllegalArgumentException("Package model builder class " + builderClassName
+                    + " does not extend " + builderClass.getName());
+        }
+        return replacement.asSubclass(PackageModelBuilder.class);
+    }
+
     public static String getModelBuilderId(String ontologyId, String formatId) {
         return ontologyId + "-" + formatId;
     }
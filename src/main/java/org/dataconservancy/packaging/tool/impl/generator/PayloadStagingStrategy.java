@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Places the content of a payload file at its location in a staged bag.
+ * <p>
+ * The {@link BagItPackageAssembler} consults its strategies in order of preference, and uses the first one which
+ * supports a given source and target. If a strategy fails with an {@code IOException}, the assembler falls back to
+ * the next supporting strategy, so implementations may be optimistic in {@link #supports(Path, Path)}.
+ * </p>
+ */
+public interface PayloadStagingStrategy {
+
+    /**
+     * Determines if this strategy can stage the given source file to the given target.
+     * @param source the existing payload file
+     * @param target the location of the file in the staged bag. It does not exist yet, but its parent directory does.
+     * @return true if the strategy is applicable
+     */
+    boolean supports(Path source, Path target);
+
+    /**
+     * Stages the source file at the target location.
+     * @param source the existing payload file
+     * @param target the location of the file in the staged bag
+     * @throws IOException if the file could not be staged. Any partially staged target is removed before throwing.
+     */
+    void stage(Path source, Path target) throws IOException;
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.dataconservancy.packaging.tool.api.generator.ReadScheduler;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
+
+/**
+ * Provides the {@link ReadScheduler} named by the
+ * {@link GeneralParameterNames#PAYLOAD_READ_ORDER} parameter.
+ */
+public class ReadSchedulerFactory {
+
+    /**
+     * Provide the read scheduler selected by the given parameters.
+     *
+     * @param params
+     *        Package Generation Parameters.
+     * @return the scheduler, or null if files are to be read in the order they are added to the package.
+     * @throws PackageToolException if the parameter names neither a known order nor a scheduler class.
+     */
+    public static ReadScheduler newScheduler(PackageGenerationParameters params) {
+        String order = params.getParam(GeneralParameterNames.PAYLOAD_READ_ORDER, 0);
+        if (order == null || order.equals("none")) {
+            return null;
+        } else if (order.equals("directory")) {
+            return new DirectoryReadScheduler();
+        } else if (order.equals("inode")) {
+            return new InodeReadScheduler();
+        }
+
+        try {
+            Class<?> schedulerClass = Class.forName(order);
+            if (ReadScheduler.class.isAssignableFrom(schedulerClass)) {
+                return (ReadScheduler) schedulerClass.newInstance();
+            }
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS, e,
+                    String.format("Specified payload read order <%s> is not supported. The supported orders are: " +
+                            "none, directory, inode, or the class name of a ReadScheduler.", order));
+        }
+        throw new PackageToolException(PackagingToolReturnInfo.PKG_ASSEMBLER_INVALID_PARAMS,
+                String.format("Class <%s> named as payload read order is not a ReadScheduler.", order));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import org.apache.jena.riot.RDFFormat;
+
+/**
+ * RDF syntaxes ReMs may be written in, as named by
+ * {@link org.dataconservancy.packaging.tool.model.BoremParameterNames#REM_SERIALIZATION_FORMAT}.
+ */
+enum RemSerializationFormat {
+    RDF_XML("RDF/XML", RDFFormat.RDFXML_PLAIN, "xml", "application/rdf+xml"),
+    TURTLE("Turtle", RDFFormat.TURTLE_BLOCKS, "ttl", "text/turtle"),
+    N_TRIPLES("N-Triples", RDFFormat.NTRIPLES, "nt", "application/n-triples"),
+    RDF_THRIFT("RDF-Thrift", RDFFormat.RDF_THRIFT, "trdf", "application/rdf+thrift");
+
+    private final String name;
+
+    private final RDFFormat rdfFormat;
+
+    private final String extension;
+
+    private final String mediaType;
+
+    RemSerializationFormat(String name, RDFFormat rdfFormat, String extension, String mediaType) {
+        this.name = name;
+        this.rdfFormat = rdfFormat;
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    /* Returns the format of the given name, ignoring case, or null if there is none */
+    static RemSerializationFormat forName(String name) {
+        for (RemSerializationFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    RDFFormat getRdfFormat() {
+        return rdfFormat;
+    }
+
+    String getExtension() {
+        return extension;
+    }
+
+    String getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stages a payload file by copying it channel to channel with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}. The copy is performed by the operating system (sendfile or
+ * copy_file_range, which may reflink on file systems supporting it) without moving the bytes through the Java heap.
+ */
+public class TransferToStagingStrategy implements PayloadStagingStrategy {
+
+    @Override
+    public boolean supports(Path source, Path target) {
+        return Files.isRegularFile(source);
+    }
+
+    @Override
+    public void stage(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            //transferTo may transfer fewer bytes than requested, so loop until everything is copied
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Could not transfer " + source + " to " + target + " at offset " + position);
+                }
+                position += transferred;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+}
@@ -48,4 +48,22 @@ public class BagItParameterNames extends GeneralParameterNames {
      * Addtional element names
      */
     public static final String BAGIT_PROFILE_ID = "BagIt-Profile-Identifier";
+
+    /**
+     * Payload files at least this large are not copied into the bag, but listed in fetch.txt instead. The value
+     * is a number of bytes, optionally followed by one of the (binary) units K, M, G or T.
+     */
+    public static final String FETCH_SIZE_THRESHOLD = "Fetch-Size-Threshold";
+
+    /**
+     * Path of a payload file, relative to the content root location, which is listed in fetch.txt instead of being
+     * copied into the bag. May be given multiple times.
+     */
+    public static final String FETCH_PATH = "Fetch-Path";
+
+    /**
+     * Base URL under which the content root location is reachable by the recipients of the bag. URLs in fetch.txt
+     * are resolved against it. When not set, the file URL of the payload file is used.
+     */
+    public static final String FETCH_BASE_URL = "Fetch-Base-URL";
 }
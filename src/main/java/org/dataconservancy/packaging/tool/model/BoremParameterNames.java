@@ -25,4 +25,21 @@ package org.dataconservancy.packaging.tool.model;
 public class BoremParameterNames extends BagItParameterNames {
     public static final String BAGIT_PROFILE_IDENTIFIER = "BagIt-Profile-Identifier";
     public static final String PKG_ORE_REM = "PKG-ORE-REM";
+
+    /**
+     * RDF syntax in which ReMs are written: "RDF/XML" (the default), "Turtle", "N-Triples" or "RDF-Thrift" (binary),
+     * non-case-sensitive. ReM files are named with the matching extension (.xml, .ttl, .nt or .trdf), which is how
+     * {@link org.dataconservancy.packaging.shared.ResourceMapUtil} tells which syntax to read, and ReMs in a syntax
+     * other than RDF/XML give its media type as their dc:format.
+     */
+    public static final String REM_SERIALIZATION_FORMAT = "ReM-Serialization-Format";
+
+    /**
+     * How many ReMs are written to each ReM document: "artifact" (the default) for a document per ReM, "collection"
+     * for the ReMs of the DataItems of a collection to share the collection's document, or a number of DataItem ReMs
+     * per document. Each artifact still has a ReM of its own, describing its aggregation. A ReM sharing a document is
+     * named by a fragment of the document's URI, and its aggregation by the same fragment with "REM" replaced with
+     * "Aggregation".
+     */
+    public static final String REM_GRANULARITY = "ReM-Granularity";
 }
@@ -19,6 +19,14 @@ public class GeneralParameterNames {
 
 	public static final String PACKAGE_FORMAT_ID = "Package-Format-Id";
 	public static final String PACKAGE_LOCATION = "Package-Location";
+
+	/**
+	 * Directory in which packages are staged before they are serialized. May be given several values, ideally on
+	 * different devices: the package is then staged in the first, and its payload files are spread over all of them,
+	 * balancing the number of bytes staged in each, so that they are read concurrently when the package is archived.
+	 * Payload files staged elsewhere than in the first location are linked into the package with symbolic links.
+	 * Only the first value is used for packages which are not archived.
+	 */
 	public static final String PACKAGE_STAGING_LOCATION = "Package-Staging-Location";
 	public static final String CONTENT_ROOT_LOCATION = "Content-Root-Location";
 	public static final String PACKAGE_NAME = "Package-Name";
@@ -27,6 +35,173 @@ public class GeneralParameterNames {
 	public static final String ARCHIVING_FORMAT = "Archiving-Format";
     public static final String EXTERNAL_PROJECT_ID = "External-Project-Id";
 
+	/**
+	 * Compression level passed to the compressor, for formats which support one
+	 * (gzip and xz: 0-9, bzip2: 1-9, zstd: 1-22). Levels out of range, and levels given for other formats, are
+	 * rejected. When not set, the codec's default level is used.
+	 */
+	public static final String COMPRESSION_LEVEL = "Compression-Level";
+
+	/**
+	 * Number of worker threads used by compressors capable of multithreaded compression (currently zstd).
+	 * When not set, compression is performed on the calling thread.
+	 */
+	public static final String COMPRESSION_WORKERS = "Compression-Workers";
+
+	/**
+	 * How payload files are placed into the staged package. Acceptable values are "auto" (the default: hard link the
+	 * file when the package is archived and the file is on the same file store as the staging location, otherwise
+	 * copy it in the kernel via FileChannel.transferTo), "link" (hard link the file when it is on the same file store,
+	 * exploded packages included), "transfer" (never hard link) and "copy" (always copy through a buffer).
+	 * <p>
+	 * A hard linked payload file shares its data with the source file, so changing the file in an exploded package
+	 * changes the source file too. Use "link" only for exploded packages which are not modified.
+	 * </p>
+	 */
+	public static final String PAYLOAD_STAGING_STRATEGY = "Payload-Staging-Strategy";
+
+	/**
+	 * Order in which payload files are read, when they are staged and when they are checksummed. Acceptable values
+	 * are "none" (the default: in the order they are added to the package), "directory" (one directory at a time),
+	 * "inode" (by inode number, which approximates their physical location on most file systems), or the class name
+	 * of an implementation of {@link org.dataconservancy.packaging.tool.api.generator.ReadScheduler}. The order of the
+	 * entries of a serialized package does not depend on it. For storage which cannot serve concurrent reads well, also
+	 * set {@link #ASYNC_WRITE_THREADS} to 1.
+	 */
+	public static final String PAYLOAD_READ_ORDER = "Payload-Read-Order";
+
+	/**
+	 * Maximum number of bytes per second read and written by the assembly of a package, counting payload staging,
+	 * checksumming, archiving and compression alike. The value is a number of bytes, optionally followed by one of
+	 * the (binary) units K, M, G or T, e.g. "50M". When set, payload files which cannot be hard linked are copied
+	 * through a buffer rather than in the kernel, so that the copy can be throttled. When neither this nor
+	 * {@link #IO_OPERATIONS_LIMIT} is set, I/O is not throttled.
+	 * <p>
+	 * The limits of a package being assembled can be changed through the JMX bean
+	 * "org.dataconservancy.packaging:type=IoThrottle,name=<package name>". The bean is removed once the package is
+	 * assembled, or assembly fails; for a streamed package, it is registered again while each serialization is produced.
+	 * </p>
+	 */
+	public static final String IO_BANDWIDTH_LIMIT = "IO-Bandwidth-Limit";
+
+	/**
+	 * Maximum number of read and write operations per second performed by the assembly of a package. See
+	 * {@link #IO_BANDWIDTH_LIMIT}.
+	 */
+	public static final String IO_OPERATIONS_LIMIT = "IO-Operations-Limit";
+
+	/**
+	 * Maximum size of a serialized package. When set, a package whose content exceeds it is split into several
+	 * volumes, each of them a complete package. The value is a number of bytes, optionally followed by one of the
+	 * (binary) units K, M, G or T, e.g. "50G". Applies to the uncompressed content of the package.
+	 */
+	public static final String MAX_VOLUME_SIZE = "Max-Volume-Size";
+
+	/**
+	 * Parameter to indicate whether identical payload files are stored once. When they are, copies of a payload file
+	 * are hard links to the same staged file, and are serialized as hard link entries in tar archives. Other archiving
+	 * formats still hold every copy. Manifests list every copy either way. Files whose checksums match are compared
+	 * byte for byte before they are taken for copies.
+	 * <p>
+	 * This is a boolean, so acceptable values are "true" or "false", non-case-sensitive. Defaults to "false".
+	 * </p>
+	 */
+	public static final String PAYLOAD_DEDUPLICATION = "Payload-Deduplication";
+
+	/**
+	 * Parameter to indicate whether a serialized package is produced while it is read, rather than written to a file
+	 * when the package is assembled. This avoids holding both the staged content and its serialization on disk. Does
+	 * not apply to packages split into volumes.
+	 * <p>
+	 * This is a boolean, so acceptable values are "true" or "false", non-case-sensitive. Defaults to "false".
+	 * </p>
+	 */
+	public static final String STREAMING_SERIALIZATION = "Streaming-Serialization";
+
+	/**
+	 * Parameter to indicate whether serialization is reproducible, i.e. whether generating a package twice from the
+	 * same description and content yields byte-identical packages. When it is, archive entries are written in sorted
+	 * order with normalized owners, permissions and modification times, ReMs are given names derived from the
+	 * artifacts they describe, and the date given by {@link #REPRODUCIBLE_DATE} is used in place of the current date.
+	 * Parameters which only tune how the package is produced, such as locations, thread counts and I/O limits, are left
+	 * out of bag-info.txt.
+	 * <p>
+	 * This is a boolean, so acceptable values are "true" or "false", non-case-sensitive. Defaults to "false".
+	 * </p>
+	 */
+	public static final String REPRODUCIBLE_SERIALIZATION = "Reproducible-Serialization";
+
+	/**
+	 * Date recorded as the bagging date, the modification date of ReMs and the modification time of archive entries
+	 * when serialization is reproducible. The value is an ISO 8601 date or date-time, e.g. "2016-03-01" or
+	 * "2016-03-01T12:00:00Z"; dates without a time zone are taken to be UTC. Defaults to 1970-01-01T00:00:00Z.
+	 */
+	public static final String REPRODUCIBLE_DATE = "Reproducible-Date";
+
+	/**
+	 * Parameter to indicate whether the assembly of a package is journaled. When it is, every resource written into
+	 * the staged package is recorded, with its size and checksums, in a journal next to it. If assembly is interrupted,
+	 * a later assembly of a package with the same name skips the resources which are already staged. Each resource is
+	 * forced to storage before it is recorded, so assembly also resumes after a power loss, at the cost of a sync per
+	 * resource.
+	 * <p>
+	 * This is a boolean, so acceptable values are "true" or "false", non-case-sensitive. Defaults to "false".
+	 * </p>
+	 */
+	public static final String JOURNALED_ASSEMBLY = "Journaled-Assembly";
+
+	/**
+	 * Number of threads writing resource content for assemblers which support asynchronous writes. Defaults to 4.
+	 */
+	public static final String ASYNC_WRITE_THREADS = "Async-Write-Threads";
+
+	/**
+	 * Number of asynchronous writes which may be waiting for a thread, in addition to the ones being performed, before
+	 * submitting another write blocks. Defaults to 64.
+	 */
+	public static final String ASYNC_WRITE_QUEUE_DEPTH = "Async-Write-Queue-Depth";
+
+	/**
+	 * Number of threads adding the properties of artifacts to the ReMs of a package, and serializing the ReMs. When not
+	 * set, as many threads as there are processors are used. The package ReM is always written last.
+	 */
+	public static final String REM_SERIALIZATION_THREADS = "ReM-Serialization-Threads";
+
+	/**
+	 * Class name of the {@link org.dataconservancy.packaging.tool.api.generator.PackageModelBuilder} building the
+	 * package model, in place of the one registered for the package's ontology and format. It must be a subclass of the
+	 * registered builder, e.g. "org.dataconservancy.packaging.tool.impl.generator.JenaOrePackageModelBuilder", which
+	 * builds BOREM ReMs with Jena rather than foresite. When not set, the registered builder is used.
+	 */
+	public static final String PACKAGE_MODEL_BUILDER = "Package-Model-Builder";
+
+	/**
+	 * Parameter to indicate whether the stages of package generation overlap. When they do, the package description is
+	 * validated while the package model is built and its resources written, and every resource is checksummed as soon
+	 * as it is written into the staged package, by the thread which wrote it, rather than when the package is
+	 * assembled. Resources written asynchronously are bounded by {@link #ASYNC_WRITE_QUEUE_DEPTH}, so that the model
+	 * builder is held back when writing and checksumming fall behind. Generation is cancelled as soon as the description
+	 * turns out to be invalid; a serialized package generated by then is cleaned up, an exploded one is left in place.
+	 * Resources are not checksummed early when assembly is journaled or checksums are cached, as the journal or the
+	 * cache provides their checksums.
+	 * <p>
+	 * This is a boolean, so acceptable values are "true" or "false", non-case-sensitive. Defaults to "false".
+	 * </p>
+	 */
+	public static final String PIPELINED_GENERATION = "Pipelined-Generation";
+
+	/**
+	 * Location of a file caching the checksums of packaged files across package generations. When set, files which
+	 * have not changed since their checksums were cached are not read again. When not set, no cache is used.
+	 */
+	public static final String CHECKSUM_CACHE_LOCATION = "Checksum-Cache-Location";
+
+	/**
+	 * Files modified less than this number of minutes ago are always read rather than looked up in the checksum
+	 * cache, as their modification time may not yet reflect all changes. Defaults to 1.
+	 */
+	public static final String CHECKSUM_CACHE_MIN_AGE = "Checksum-Cache-Min-Age";
+
 	/**
 	 * Parameter to indicate whether a PackageDescription shall be validated
 	 * before processing.
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.packaging.tool.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An indexed, read-only view of the artifacts of a {@link PackageDescription} and of their relationships.
+ * <p>
+ * Artifacts are numbered densely, from 0, in the order they are given. Looking an artifact up by its number, or the
+ * number of an artifact by its id, is constant time, and does not involve hashing the artifact itself, whose hash code
+ * covers all its properties and relationships. Relationships are held in primitive arrays: the relationships of
+ * artifact {@code a} are numbered from {@link #getRelationshipsStart(int) getRelationshipsStart(a)} to
+ * {@link #getRelationshipsEnd(int) getRelationshipsEnd(a)}, exclusive, in the order the artifact lists them, and the
+ * targets of relationship {@code r} likewise from {@link #getTargetsStart(int) getTargetsStart(r)} to
+ * {@link #getTargetsEnd(int) getTargetsEnd(r)}. Types and relationship names are held as codes into tables of the
+ * distinct values.
+ * </p>
+ * <p>
+ * The graph is a snapshot: it does not follow later changes to the artifacts. Ids are not required to be unique, nor
+ * relationships well-formed, so that invalid descriptions can be examined; an id shared by several artifacts is
+ * resolved to the first of them. A missing list of relationships, or set of targets, is taken to be empty.
+ * </p>
+ */
+public class PackageArtifactGraph {
+
+    /* Types are held in a byte column, as an unsigned code into the table of types */
+    private static final int MAX_TYPES = 256;
+
+    private final PackageArtifact[] artifacts;
+
+    private final Map<String, Integer> artifactsById;
+
+    private final byte[] types;
+
+    private final List<String> typeNames = new ArrayList<>();
+
+    /* Relationships of artifact a are relationshipsStart[a] to relationshipsStart[a + 1] */
+    private final int[] relationshipsStart;
+
+    private final int[] relationshipNames;
+
+    private final List<String> relationshipNameTable = new ArrayList<>();
+
+    /* Targets of relationship r are targetsStart[r] to targetsStart[r + 1] */
+    private final int[] targetsStart;
+
+    /* A target is the number of an artifact, or the complement of an index into externalTargets */
+    private final int[] targets;
+
+    private final List<String> externalTargets = new ArrayList<>();
+
+    /**
+     * Indexes artifacts.
+     *
+     * @param artifacts the artifacts
+     * @throws IllegalArgumentException if the artifacts have more than 256 distinct types
+     */
+    public PackageArtifactGraph(Collection<PackageArtifact> artifacts) {
+        this.artifacts = artifacts.toArray(new PackageArtifact[artifacts.size()]);
+        this.artifactsById = new HashMap<>(this.artifacts.length * 4 / 3 + 1);
+        this.types = new byte[this.artifacts.length];
+        this.relationshipsStart = new int[this.artifacts.length + 1];
+
+        Map<String, Integer> typeCodes = new HashMap<>();
+        int relationshipCount = 0;
+        int targetCount = 0;
+        for (int a = 0; a < this.artifacts.length; a++) {
+            PackageArtifact artifact = this.artifacts[a];
+            if (artifact.getId() != null) {
+                artifactsById.putIfAbsent(artifact.getId(), a);
+            }
+            Integer typeCode = typeCodes.get(artifact.getType());
+            if (typeCode == null) {
+                if (typeNames.size() == MAX_TYPES) {
+                    throw new IllegalArgumentException(String.format("Artifacts may have at most %d distinct types",
+                                                                     MAX_TYPES));
+                }
+                typeCode = typeNames.size();
+                typeNames.add(artifact.getType());
+                typeCodes.put(artifact.getType(), typeCode);
+            }
+            types[a] = (byte) (int) typeCode;
+
+            for (PackageRelationship relationship : relationshipsOf(artifact)) {
+                relationshipCount++;
+                targetCount += targetsOf(relationship).size();
+            }
+        }
+
+        this.relationshipNames = new int[relationshipCount];
+        this.targetsStart = new int[relationshipCount + 1];
+        this.targets = new int[targetCount];
+
+        Map<String, Integer> nameCodes = new HashMap<>();
+        Map<String, Integer> externalTargetIndexes = new HashMap<>();
+        int r = 0;
+        int t = 0;
+        for (int a = 0; a < this.artifacts.length; a++) {
+            relationshipsStart[a] = r;
+            for (PackageRelationship relationship : relationshipsOf(this.artifacts[a])) {
+                relationshipNames[r] = nameCodes.computeIfAbsent(relationship.getName(), name -> {
+                    relationshipNameTable.add(name);
+                    return relationshipNameTable.size() - 1;
+                });
+                targetsStart[r] = t;
+                for (String target : targetsOf(relationship)) {
+                    Integer targetArtifact = target != null ? artifactsById.get(target) : null;
+                    targets[t++] = targetArtifact != null
+                            ? targetArtifact
+                            : ~externalTargetIndexes.computeIfAbsent(target, id -> {
+                                externalTargets.add(id);
+                                return externalTargets.size() - 1;
+                            });
+                }
+                r++;
+            }
+        }
+        relationshipsStart[this.artifacts.length] = r;
+        targetsStart[relationshipCount] = t;
+    }
+
+    /**
+     * Indexes the artifacts of a package description.
+     *
+     * @param description the package description
+     * @return the graph of its artifacts
+     * @throws IllegalArgumentException if the artifacts have more than 256 distinct types
+     */
+    public static PackageArtifactGraph of(PackageDescription description) {
+        return new PackageArtifactGraph(description.getPackageArtifacts());
+    }
+
+    private static List<PackageRelationship> relationshipsOf(PackageArtifact artifact) {
+        return artifact.getRelationships() != null ? artifact.getRelationships()
+                                                   : Collections.emptyList();
+    }
+
+    private static Set<String> targetsOf(PackageRelationship relationship) {
+        return relationship.getTargets() != null ? relationship.getTargets()
+                                                 : Collections.emptySet();
+    }
+
+    /**
+     * @return the number of artifacts
+     */
+    public int size() {
+        return artifacts.length;
+    }
+
+    /**
+     * @param artifact the number of an artifact
+     * @return the artifact
+     */
+    public PackageArtifact getArtifact(int artifact) {
+        return artifacts[artifact];
+    }
+
+    /**
+     * @param id an artifact id
+     * @return the number of the first artifact with that id, or -1 if there is none
+     */
+    public int indexOf(String id) {
+        Integer artifact = id != null ? artifactsById.get(id) : null;
+        return artifact != null ? artifact : -1;
+    }
+
+    /**
+     * @param artifact the number of an artifact
+     * @return the code of its type, from 0 to {@link #getTypeCount()}, exclusive
+     */
+    public int getTypeCode(int artifact) {
+        return types[artifact] & 0xff;
+    }
+
+    /**
+     * @param artifact the number of an artifact
+     * @return its type
+     */
+    public String getType(int artifact) {
+        return typeNames.get(getTypeCode(artifact));
+    }
+
+    /**
+     * @return the number of distinct artifact types
+     */
+    public int getTypeCount() {
+        return typeNames.size();
+    }
+
+    /**
+     * @param typeCode the code of a type
+     * @return the type
+     */
+    public String getTypeName(int typeCode) {
+        return typeNames.get(typeCode);
+    }
+
+    /**
+     * @param type an artifact type
+     * @return the numbers of the artifacts of that type, in increasing order
+     */
+    public int[] getArtifactsOfType(String type) {
+        int typeCode = typeNames.indexOf(type);
+        int count = 0;
+        for (int a = 0; a < artifacts.length && typeCode >= 0; a++) {
+            if (getTypeCode(a) == typeCode) {
+                count++;
+            }
+        }
+        int[] ofType = new int[count];
+        for (int a = 0, i = 0; i < count; a++) {
+            if (getTypeCode(a) == typeCode) {
+                ofType[i++] = a;
+            }
+        }
+        return ofType;
+    }
+
+    /**
+     * @param artifact the number of an artifact
+     * @return the number of its first relationship
+     */
+    public int getRelationshipsStart(int artifact) {
+        return relationshipsStart[artifact];
+    }
+
+    /**
+     * @param artifact the number of an artifact
+     * @return the number following that of its last relationship
+     */
+    public int getRelationshipsEnd(int artifact) {
+        return relationshipsStart[artifact + 1];
+    }
+
+    /**
+     * @param relationship the number of a relationship
+     * @return its name
+     */
+    public String getRelationshipName(int relationship) {
+        return relationshipNameTable.get(relationshipNames[relationship]);
+    }
+
+    /**
+     * Finds a relationship of an artifact by name, as {@link PackageArtifact#getRelationshipByName(String)} does.
+     *
+     * @param artifact the number of an artifact
+     * @param name a relationship name
+     * @return the number of the first relationship of the artifact with that name, or -1 if there is none
+     */
+    public int getRelationship(int artifact, String name) {
+        int nameCode = relationshipNameTable.indexOf(name);
+        for (int r = getRelationshipsStart(artifact); r < getRelationshipsEnd(artifact) && nameCode >= 0; r++) {
+            if (relationshipNames[r] == nameCode) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param relationship the number of a relationship
+     * @return the number of its first target
+     */
+    public int getTargetsStart(int relationship) {
+        return targetsStart[relationship];
+    }
+
+    /**
+     * @param relationship the number of a relationship
+     * @return the number following that of its last target
+     */
+    public int getTargetsEnd(int relationship) {
+        return targetsStart[relationship + 1];
+    }
+
+    /**
+     * @param target the number of a relationship target
+     * @return the number of the artifact it designates, or -1 if it does not designate an artifact of this graph
+     */
+    public int getTarget(int target) {
+        return targets[target] >= 0 ? targets[target] : -1;
+    }
+
+    /**
+     * @param target the number of a relationship target
+     * @return the target as the relationship gives it: the id of an artifact, or some other value
+     */
+    public String getTargetId(int target) {
+        return targets[target] >= 0 ? artifacts[targets[target]].getId() : externalTargets.get(~targets[target]);
+    }
+}
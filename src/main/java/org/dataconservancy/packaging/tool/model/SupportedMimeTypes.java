@@ -25,7 +25,7 @@ public class SupportedMimeTypes {
     /**
      * <p>
      * Returns mimetype for file format that could be produced by a {@code PackageAssembler}. So far the supported
-     * formats and mimetypes are the one supported by the Apache Commons Compress library v1.3.
+     * formats and mimetypes are the one supported by the Apache Commons Compress library v1.18.
      * </p>
      *
      * Returns a generic "application/octet-stream" mimetype for format not supported.
@@ -46,6 +46,11 @@ public class SupportedMimeTypes {
             mimeTypesMap.put("gzip", "application/x-gzip");
             mimeTypesMap.put("bzip2", "application/x-bzip2");
             mimeTypesMap.put("pack200", "application/x-java-pack200");
+            mimeTypesMap.put("xz", "application/x-xz");
+            mimeTypesMap.put("zstd", "application/zstd");
+            mimeTypesMap.put("zst", "application/zstd");
+            mimeTypesMap.put("lz4-framed", "application/x-lz4");
+            mimeTypesMap.put("lz4", "application/x-lz4");
         }
         String mimeType = mimeTypesMap.get(format);
         if (mimeType == null) {
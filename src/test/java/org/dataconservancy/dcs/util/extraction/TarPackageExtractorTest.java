@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.dcs.util.extraction;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class TarPackageExtractorTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File extractDir;
+
+    private File secret;
+
+    private TarPackageExtractor extractor;
+
+    @Before
+    public void setUp() throws Exception {
+        extractDir = tmpfolder.newFolder("extract");
+        secret = tmpfolder.newFile("secret.txt");
+        FileUtils.write(secret, "secret", StandardCharsets.UTF_8);
+
+        extractor = new TarPackageExtractor();
+        extractor.setExtractDirectory(extractDir.getPath());
+    }
+
+    /* Verify that a hard link is extracted with the content of the entry it refers to */
+    @Test
+    public void hardLinkTest() throws Exception {
+        File tar = tar("link.tar", "pkg/file.txt", "pkg/link.txt");
+        extractor.getFilesFromPackageFile("", tar);
+        assertEquals("content", FileUtils.readFileToString(new File(extractDir, "pkg/link.txt"),
+                StandardCharsets.UTF_8));
+    }
+
+    /* Verify that hard links to files outside the extraction directory are rejected */
+    @Test
+    public void hardLinkTraversalTest() throws Exception {
+        String[] linkNames = {"../secret.txt", "pkg/../../secret.txt", secret.getAbsolutePath()};
+        for (int i = 0; i < linkNames.length; i++) {
+            File tar = tar("traversal" + i + ".tar", linkNames[i], "pkg/link" + i + ".txt");
+            try {
+                extractor.getFilesFromPackageFile("", tar);
+                fail("Extracted a hard link to " + linkNames[i]);
+            } catch (UnpackException e) {
+                //expected
+            }
+            assertFalse(new File(extractDir, "pkg/link" + i + ".txt").exists());
+        }
+    }
+
+    /* Verify that hard links to files which were not extracted from the archive are rejected */
+    @Test
+    public void hardLinkNotExtractedTest() throws Exception {
+        FileUtils.write(new File(extractDir, "pkg/other.txt"), "other", StandardCharsets.UTF_8);
+        File tar = tar("other.tar", "pkg/other.txt", "pkg/link.txt");
+        try {
+            extractor.getFilesFromPackageFile("", tar);
+            fail("Extracted a hard link to a file which is not in the archive");
+        } catch (UnpackException e) {
+            //expected
+        }
+        assertFalse(new File(extractDir, "pkg/link.txt").exists());
+    }
+
+    /* Writes a tar of the file pkg/file.txt, followed by a hard link with the given name */
+    private File tar(String name, String linkName, String entryName) throws IOException {
+        File tar = tmpfolder.newFile(name);
+        byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(new FileOutputStream(tar))) {
+            TarArchiveEntry file = new TarArchiveEntry("pkg/file.txt");
+            file.setSize(content.length);
+            out.putArchiveEntry(file);
+            out.write(content);
+            out.closeArchiveEntry();
+
+            TarArchiveEntry link = new TarArchiveEntry(entryName, TarConstants.LF_LINK);
+            link.setLinkName(linkName);
+            out.putArchiveEntry(link);
+            out.closeArchiveEntry();
+        }
+        return tar;
+    }
+}
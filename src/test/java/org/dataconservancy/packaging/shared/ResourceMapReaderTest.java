@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.shared;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.packaging.tool.impl.generator.BagItPackageAssembler;
+import org.dataconservancy.packaging.tool.impl.generator.OrePackageModelBuilder;
+import org.dataconservancy.packaging.tool.model.BagItParameterNames;
+import org.dataconservancy.packaging.tool.model.BoremParameterNames;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.dataconservancy.packaging.tool.impl.generator.PackageFixtures.collectionOfDataItems;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResourceMapReaderTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private static final int DATA_ITEMS = 3;
+
+    private static final String ORE = "http://www.openarchives.org/ore/terms/";
+
+    private static final URI ORE_AGGREGATION = URI.create(ORE + "Aggregation");
+
+    private static final URI PACKAGE = URI.create("http://dataconservancy.org/ns/types/Package");
+
+    private static final URI DATA_ITEM = URI.create("http://dataconservancy.org/ns/types/DataItem");
+
+    private static final String DC_TITLE = "http://purl.org/dc/terms/title";
+
+    private File contentDir;
+
+    private int packages;
+
+    @Before
+    public void setUp() throws Exception {
+        contentDir = tmpfolder.newFolder("content");
+        for (int i = 0; i < DATA_ITEMS; i++) {
+            FileUtils.write(new File(contentDir, "file" + i + ".txt"), "file " + i, StandardCharsets.UTF_8);
+        }
+    }
+
+    /* Verify that the aggregations of an exploded bag are read, whatever the syntax of its ReMs */
+    @Test
+    public void explodedBagTest() throws Exception {
+        checkAggregations(assemble("exploded", "none", null, null), "xml", false);
+        checkAggregations(assemble("exploded", "none", "RDF/XML", "collection"), "xml", true);
+        checkAggregations(assemble("exploded", "none", "Turtle", null), "ttl", false);
+        checkAggregations(assemble("exploded", "none", "RDF-Thrift", "collection"), "trdf", true);
+    }
+
+    /* Verify that the aggregations of a bag are read from a zip archive */
+    @Test
+    public void zipTest() throws Exception {
+        checkAggregations(assemble("zip", "none", null, null), "xml", false);
+        checkAggregations(assemble("zip", "none", "Turtle", "collection"), "ttl", true);
+    }
+
+    /* Verify that the aggregations of a bag are read from a compressed tar archive */
+    @Test
+    public void tarGzTest() throws Exception {
+        checkAggregations(assemble("tar", "gz", null, "collection"), "xml", true);
+        checkAggregations(assemble("tar", "gz", "N-Triples", null), "nt", false);
+    }
+
+    /* Verify that a package which does not record its ReM in bag-info.txt is not read */
+    @Test
+    public void noPackageRemTest() throws Exception {
+        File bag = assemble("exploded", "none", null, null);
+        File bagInfo = new File(bag, "bag-info.txt");
+        List<String> lines = FileUtils.readLines(bagInfo, StandardCharsets.UTF_8);
+        lines.removeIf(line -> line.startsWith(BoremParameterNames.PKG_ORE_REM + ":"));
+        FileUtils.writeLines(bagInfo, StandardCharsets.UTF_8.name(), lines);
+
+        try (ResourceMapReader reader = ResourceMapReader.open(bag)) {
+            assertNull(reader.getPackageRemUri());
+            reader.read(aggregation -> fail("Read aggregation " + aggregation.getUri()));
+            fail("Read a package without a ReM");
+        } catch (PackageException e) {
+            //expected
+        }
+    }
+
+    /* Verify that resource maps outside of the package are not read, whether it is exploded or archived */
+    @Test
+    public void outsidePackageTest() throws Exception {
+        String secret = "<file:///secret> <http://www.openarchives.org/ore/terms/describes> <file:///secret#agg> .\n";
+        FileUtils.write(tmpfolder.newFile("secret.nt"), secret, StandardCharsets.UTF_8);
+
+        for (File pkg : new File[] {assemble("exploded", "none", null, null), assemble("tar", "gz", null, null)}) {
+            for (String uri : new String[] {"file:///../secret.nt", "file:///bag/../../secret.nt",
+                    "file:///../../../../../../../../.." + tmpfolder.getRoot().getAbsolutePath() + "/secret.nt"}) {
+                try (ResourceMapReader reader = ResourceMapReader.open(pkg)) {
+                    reader.read(URI.create(uri), aggregation -> fail("Read aggregation " + aggregation.getUri()));
+                    fail("Read " + uri + " from " + pkg);
+                } catch (PackageException e) {
+                    assertFalse(e.getMessage(), e.getMessage().contains("secret#agg"));
+                }
+            }
+        }
+    }
+
+    /*
+     * Reads the package, checking that each of its aggregations is handed to the handler once, with its types, the
+     * ReM describing it, and its files. The ReMs of the collection and its data items share a document if asked to.
+     */
+    private static void checkAggregations(File pkg, String extension, boolean shared) throws Exception {
+        List<ResourceMapReader.Aggregation> aggregations = new ArrayList<>();
+        URI packageRemUri;
+        try (ResourceMapReader reader = ResourceMapReader.open(pkg)) {
+            packageRemUri = reader.getPackageRemUri();
+            reader.read(aggregations::add);
+        }
+
+        assertEquals(2 + DATA_ITEMS, aggregations.size());
+        Set<URI> uris = new HashSet<>();
+        Set<URI> aggregated = new HashSet<>();
+        Set<String> documents = new HashSet<>();
+        Set<String> fileTitles = new HashSet<>();
+        Map<URI, Integer> typeCounts = new HashMap<>();
+        for (ResourceMapReader.Aggregation aggregation : aggregations) {
+            assertTrue(uris.add(aggregation.getUri()));
+            assertTrue(aggregation.getTypes().contains(ORE_AGGREGATION));
+            for (URI type : aggregation.getTypes()) {
+                typeCounts.merge(type, 1, Integer::sum);
+            }
+            aggregated.addAll(aggregation.getRelationships().getOrDefault(ORE + "aggregates",
+                    Collections.emptyList()));
+
+            URI remUri = aggregation.getRemUri();
+            assertTrue(remUri.getPath(), remUri.getPath().startsWith("/bag/ORE-REM/"));
+            assertTrue(remUri.getPath(), remUri.getPath().endsWith("." + extension));
+            assertEquals(remUri.getScheme() + ":" + remUri.getSchemeSpecificPart(),
+                    aggregation.getUri().getScheme() + ":" + aggregation.getUri().getSchemeSpecificPart());
+
+            if (aggregation.getTypes().contains(PACKAGE)) {
+                assertEquals(packageRemUri, remUri);
+                assertTrue(aggregation.getFiles().isEmpty());
+                continue;
+            }
+            documents.add(remUri.getPath());
+
+            if (aggregation.getTypes().contains(DATA_ITEM)) {
+                assertEquals(1, aggregation.getFiles().size());
+                ResourceMapReader.Description file = aggregation.getFiles().get(0);
+                String title = file.getProperties().get(DC_TITLE).get(0);
+                assertEquals("/bag/data/" + title, file.getUri().getPath());
+                fileTitles.add(title);
+            } else {
+                assertTrue(aggregation.getFiles().isEmpty());
+            }
+        }
+
+        assertEquals(Integer.valueOf(1), typeCounts.get(PACKAGE));
+        assertEquals(Integer.valueOf(DATA_ITEMS), typeCounts.get(DATA_ITEM));
+        assertEquals(shared ? 1 : 1 + DATA_ITEMS, documents.size());
+        for (int i = 0; i < DATA_ITEMS; i++) {
+            assertTrue(fileTitles.contains("file" + i + ".txt"));
+        }
+
+        /* Every aggregation but that of the package is aggregated, so none was missed */
+        assertEquals(DATA_ITEMS + 1, aggregated.size());
+        assertTrue(uris.containsAll(aggregated));
+    }
+
+    /* Assembles the package, returning its bag directory or archive */
+    private File assemble(String archivingFormat, String compressionFormat, String remFormat, String granularity)
+            throws Exception {
+        packages++;
+        File location = tmpfolder.newFolder("location" + packages);
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_FORMAT_ID, "BOREM");
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "bag");
+        params.addParam(GeneralParameterNames.PACKAGE_LOCATION, location.getPath());
+        params.addParam(GeneralParameterNames.PACKAGE_STAGING_LOCATION, tmpfolder.newFolder("staging" + packages).getPath());
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, contentDir.getPath());
+        params.addParam(GeneralParameterNames.ARCHIVING_FORMAT, archivingFormat);
+        params.addParam(GeneralParameterNames.COMPRESSION_FORMAT, compressionFormat);
+        params.addParam(BagItParameterNames.BAGIT_PROFILE_ID, "http://example.org/profile");
+        params.addParam(BagItParameterNames.PKG_BAG_DIR, "bag");
+        if (remFormat != null) {
+            params.addParam(BoremParameterNames.REM_SERIALIZATION_FORMAT, remFormat);
+        }
+        if (granularity != null) {
+            params.addParam(BoremParameterNames.REM_GRANULARITY, granularity);
+        }
+
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        OrePackageModelBuilder builder = new OrePackageModelBuilder();
+        builder.init(params);
+        builder.buildModel(collectionOfDataItems(DATA_ITEMS), assembler);
+        assembler.addParameter(BoremParameterNames.PKG_ORE_REM, builder.getPackageRemURI().toString());
+        Package pkg = assembler.assemblePackage();
+
+        if (archivingFormat.equals("exploded")) {
+            return new File(location, "bag");
+        }
+        File archive = new File(location, pkg.getPackageName());
+        try (InputStream in = pkg.serialize()) {
+            Files.copy(in, archive.toPath());
+        }
+        pkg.cleanupPackage();
+        return archive;
+    }
+}
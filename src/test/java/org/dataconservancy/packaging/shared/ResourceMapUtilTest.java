@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.shared;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceMapUtilTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private static final String PREFIXES = "@prefix ore: <http://www.openarchives.org/ore/terms/> .\n" +
+            "@prefix dcterms: <http://purl.org/dc/terms/> .\n" +
+            "@prefix rem: <file:///pkg/ORE-REM/> .\n";
+
+    private File remDir;
+
+    /*
+     * The package ReM, in RDF/XML, describes a collection whose ReM shares a Turtle document with the ReMs of its two
+     * data items. The collection links to each data item ReM twice, once by fragment and once by document, and both
+     * data items link to the same N-Triples document of their files. Each document has a creator blank node, so that a
+     * document loaded twice shows in the unified model.
+     */
+    @Before
+    public void setUp() throws Exception {
+        remDir = new File(tmpfolder.getRoot(), "pkg/ORE-REM");
+        write("package.xml", "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n" +
+                "    xmlns:ore=\"http://www.openarchives.org/ore/terms/\"\n" +
+                "    xmlns:dcterms=\"http://purl.org/dc/terms/\">\n" +
+                "  <ore:ResourceMap rdf:about=\"file:///pkg/ORE-REM/package.xml\">\n" +
+                "    <ore:describes rdf:resource=\"file:///pkg/ORE-REM/package.xml#Aggregation\"/>\n" +
+                "    <dcterms:creator><dcterms:Agent><dcterms:title>packager</dcterms:title></dcterms:Agent>" +
+                "</dcterms:creator>\n" +
+                "  </ore:ResourceMap>\n" +
+                "  <ore:Aggregation rdf:about=\"file:///pkg/ORE-REM/package.xml#Aggregation\">\n" +
+                "    <ore:aggregates rdf:resource=\"file:///pkg/ORE-REM/shared.ttl#c-Aggregation\"/>\n" +
+                "  </ore:Aggregation>\n" +
+                "  <rdf:Description rdf:about=\"file:///pkg/ORE-REM/shared.ttl#c-Aggregation\">\n" +
+                "    <ore:isDescribedBy rdf:resource=\"file:///pkg/ORE-REM/shared.ttl#c-REM\"/>\n" +
+                "  </rdf:Description>\n" +
+                "</rdf:RDF>\n");
+        write("shared.ttl", PREFIXES +
+                "<file:///pkg/ORE-REM/shared.ttl#c-REM> a ore:ResourceMap ; " +
+                "    ore:describes <file:///pkg/ORE-REM/shared.ttl#c-Aggregation> ; " +
+                "    dcterms:creator [ dcterms:title \"collection packager\" ] .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#c-Aggregation> a ore:Aggregation ; " +
+                "    ore:aggregates <file:///pkg/ORE-REM/shared.ttl#i1-Aggregation>, " +
+                "        <file:///pkg/ORE-REM/shared.ttl#i2-Aggregation> .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#i1-Aggregation> " +
+                "    ore:isDescribedBy <file:///pkg/ORE-REM/shared.ttl#i1-REM>, rem:shared.ttl .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#i2-Aggregation> " +
+                "    ore:isDescribedBy <file:///pkg/ORE-REM/shared.ttl#i2-REM>, rem:shared.ttl .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#i1-REM> a ore:ResourceMap ; " +
+                "    ore:describes <file:///pkg/ORE-REM/shared.ttl#i1-Aggregation> .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#i2-REM> a ore:ResourceMap ; " +
+                "    ore:describes <file:///pkg/ORE-REM/shared.ttl#i2-Aggregation> .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#i1-Aggregation> ore:aggregates <file:///pkg/data/file1.txt> .\n" +
+                "<file:///pkg/ORE-REM/shared.ttl#i2-Aggregation> ore:aggregates <file:///pkg/data/file2.txt> .\n" +
+                "<file:///pkg/data/file1.txt> ore:isDescribedBy rem:files.nt .\n" +
+                "<file:///pkg/data/file2.txt> ore:isDescribedBy rem:files.nt .\n");
+        write("files.nt",
+                "<file:///pkg/data/file1.txt> <http://purl.org/dc/terms/title> \"file one\" .\n" +
+                "<file:///pkg/data/file2.txt> <http://purl.org/dc/terms/title> \"file two\" .\n" +
+                "<file:///pkg/data/file2.txt> <http://purl.org/dc/terms/creator> _:creator .\n" +
+                "_:creator <http://purl.org/dc/terms/title> \"file packager\" .\n" +
+                "<file:///pkg/data/file1.txt> <http://www.openarchives.org/ore/terms/isDescribedBy> " +
+                "<file:///pkg/ORE-REM/files.nt> .\n");
+    }
+
+    /* Verify that every document is loaded once, whether it is linked to several times or holds several ReMs */
+    @Test
+    public void loadRemsTest() throws Exception {
+        Model expected = ModelFactory.createDefaultModel();
+        for (String document : new String[] {"package.xml", "shared.ttl", "files.nt"}) {
+            RDFDataMgr.read(expected, new File(remDir, document).toURI().toString());
+        }
+        /* One creator blank node per document, which would be duplicated by loading a document again */
+        assertEquals(3, expected.listSubjects().filterKeep(r -> r.isAnon()).toList().size());
+
+        for (int threads : new int[] {1, 4}) {
+            Model loaded = ResourceMapUtil.loadRems(URI.create("file:///pkg/ORE-REM/package.xml"),
+                    tmpfolder.getRoot(), threads);
+            assertTrue(threads + " threads", expected.isIsomorphicWith(loaded));
+        }
+    }
+
+    private void write(String name, String content) throws Exception {
+        FileUtils.write(new File(remDir, name), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl;
+
+import java.util.Collections;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.packaging.tool.api.PackageGenerator;
+import org.dataconservancy.packaging.tool.api.PackagingFormat;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageDescription;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.dataconservancy.packaging.tool.model.PackagingToolReturnInfo;
+import org.dataconservancy.packaging.validation.PackageValidationException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BasicPackageGenerationServiceTest {
+
+    /* Verify that pipelined generation is cancelled once validation fails, and fails with the validation failure */
+    @Test
+    public void cancelOnValidationFailureTest() {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        PackageGenerator generator = new PackageGenerator() {
+            @Override
+            public Package generatePackage(PackageDescription desc, PackageGenerationParameters params) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Package generatePackage(PackageDescription desc, PackageGenerationParameters params,
+                                           CompletionStage<?> cancellation) {
+                cancellation.thenRun(cancelled::countDown);
+                try {
+                    //generation takes longer than validation, unless it is cancelled
+                    if (cancelled.await(10, TimeUnit.SECONDS)) {
+                        throw new PackageToolException(PackagingToolReturnInfo.PKG_IO_EXCEPTION, "Cancelled");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                fail("Generation was not cancelled");
+                return null;
+            }
+        };
+
+        BasicPackageGenerationService service = new BasicPackageGenerationService();
+        service.setGeneratorMap(Collections.singletonMap(PackagingFormat.BOREM, generator));
+        service.setPackageDescriptionValidator(new PackageDescriptionValidator() {
+            @Override
+            public void validate(PackageDescription description) throws PackageValidationException {
+                throw new PackageValidationException("Invalid description");
+            }
+        });
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_FORMAT_ID, PackagingFormat.BOREM.name());
+        params.addParam(GeneralParameterNames.VALIDATE_PACKAGE_DESCRIPTION, "true");
+        params.addParam(GeneralParameterNames.PIPELINED_GENERATION, "true");
+
+        try {
+            service.generatePackage(new PackageDescription(), params);
+            fail("Invalid description was packaged");
+        } catch (PackageToolException e) {
+            assertEquals(PackagingToolReturnInfo.PKG_VALIDATION_FAIL.returnCode(), e.getCode());
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0].getMessage().contains("Cancelled"));
+        }
+        assertEquals(0, cancelled.getCount());
+    }
+}
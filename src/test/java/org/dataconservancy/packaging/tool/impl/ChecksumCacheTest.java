@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChecksumCacheTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File cacheFile;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = new File(tmpfolder.getRoot(), "cache/checksums");
+        file = new File(tmpfolder.getRoot(), "file.txt");
+        FileUtils.write(file, "file one", StandardCharsets.UTF_8);
+    }
+
+    /* Verify that cached checksums are found across caches sharing a file, until the file changes */
+    @Test
+    public void cacheTest() throws Exception {
+        try (ChecksumCache cache = new ChecksumCache(cacheFile, 0)) {
+            cache.put(file, Collections.singletonMap("md5", "abc"));
+        }
+
+        try (ChecksumCache cache = new ChecksumCache(cacheFile, 0)) {
+            Map<String, String> cached = cache.get(file, Arrays.asList("md5", "sha1"));
+            assertEquals(Collections.singletonMap("md5", "abc"), cached);
+
+            FileUtils.write(file, "file 1!!", StandardCharsets.UTF_8);
+            assertTrue(file.setLastModified(file.lastModified() - 10000));
+            assertTrue(cache.get(file, Collections.singletonList("md5")).isEmpty());
+        }
+    }
+
+    /* Verify that files modified less than the minimum age ago are not cached */
+    @Test
+    public void minAgeTest() throws Exception {
+        try (ChecksumCache cache = new ChecksumCache(cacheFile, 60000)) {
+            cache.put(file, Collections.singletonMap("md5", "abc"));
+            assertTrue(cache.get(file, Collections.singletonList("md5")).isEmpty());
+        }
+    }
+
+    /* Verify that checksums of files which changed or were removed are dropped when the cache file is compacted */
+    @Test
+    public void compactionTest() throws Exception {
+        File removedFile = new File(tmpfolder.getRoot(), "removed.txt");
+        FileUtils.write(removedFile, "removed", StandardCharsets.UTF_8);
+        try (ChecksumCache cache = new ChecksumCache(cacheFile, 0)) {
+            cache.put(removedFile, Collections.singletonMap("md5", "def"));
+            for (int i = 0; i < 5; i++) {
+                assertTrue(file.setLastModified(1000000000L + i * 1000));
+                cache.put(file, Collections.singletonMap("md5", "abc" + i));
+            }
+        }
+        assertEquals(6, FileUtils.readLines(cacheFile, StandardCharsets.UTF_8).size());
+        assertTrue(removedFile.delete());
+
+        try (ChecksumCache cache = new ChecksumCache(cacheFile, 0)) {
+            assertEquals("abc4", cache.get(file, Collections.singletonList("md5")).get("md5"));
+        }
+        assertEquals(1, FileUtils.readLines(cacheFile, StandardCharsets.UTF_8).size());
+    }
+}
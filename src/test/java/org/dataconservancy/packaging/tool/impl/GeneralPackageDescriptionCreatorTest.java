@@ -35,6 +35,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +51,7 @@ import org.dataconservancy.packaging.tool.model.PackageDescription;
 import org.dataconservancy.packaging.tool.model.PackageDescriptionRulesBuilder;
 import org.dataconservancy.packaging.tool.model.builder.xstream.JaxbPackageDescriptionRulesBuilder;
 import org.dataconservancy.packaging.tool.model.ontologies.DcsBoPackageOntology;
+import org.dataconservancy.packaging.validation.PackageValidationException;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -168,6 +170,23 @@ public class GeneralPackageDescriptionCreatorTest {
         validator.validate(desc);
     }
 
+    /* Verify that a description whose artifacts have too many distinct types is reported as invalid */
+    @Test(expected = PackageValidationException.class)
+    public void tooManyTypesValidationTest() throws Exception {
+        Set<PackageArtifact> artifacts = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            PackageArtifact artifact = new PackageArtifact();
+            artifact.setId("artifact" + i);
+            artifact.setType("Type" + i);
+            artifacts.add(artifact);
+        }
+        PackageDescription description = new PackageDescription();
+        description.setPackageOntologyIdentifier(desc.getPackageOntologyIdentifier());
+        description.setPackageArtifacts(artifacts);
+
+        new PackageDescriptionValidator().validate(description);
+    }
+
     /* verify that we can create the same description twice in a row. */
     @Test
     public void repeatSamePackageDescriptionCreationTest()
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingPackageTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    /* Verify that the serialization can be read by threads which exit in turn, while the producer waits on a full
+       pipe */
+    @Test
+    public void readerThreadsTest() throws Exception {
+        byte[] content = new byte[4 * 1024 * 1024];
+        new Random(0).nextBytes(content);
+        StreamingPackage pkg = new StreamingPackage(tmpfolder.newFolder("staged"), "package.tar",
+                "application/x-tar", out -> {
+                    out.write(content);
+                    out.close();
+                });
+
+        InputStream in = pkg.serialize();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    read.write(IOUtils.toByteArray(in, 2 * 1024 * 1024));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            reader.start();
+            reader.join();
+            //let the producer wait on the full pipe while no reader is alive, long enough for it to notice
+            Thread.sleep(1500);
+        }
+        assertEquals(-1, in.read());
+        in.close();
+
+        assertArrayEquals(content, read.toByteArray());
+    }
+
+    /* Verify that a failure of the producer is reported once the bytes produced before it are read */
+    @Test
+    public void producerFailureTest() throws Exception {
+        StreamingPackage pkg = new StreamingPackage(tmpfolder.newFolder("staged"), "package.tar",
+                "application/x-tar", out -> {
+                    out.write(new byte[] {1, 2, 3});
+                    throw new IOException("disk failure");
+                });
+
+        try (InputStream in = pkg.serialize()) {
+            byte[] read = new byte[3];
+            IOUtils.readFully(in, read);
+            assertTrue(Arrays.equals(new byte[] {1, 2, 3}, read));
+            in.read();
+            fail("Failure of the producer was not reported");
+        } catch (IOException e) {
+            assertEquals("disk failure", e.getCause().getMessage());
+        }
+    }
+
+    /* Verify that an error thrown by the producer is reported at the end of the stream too */
+    @Test
+    public void producerErrorTest() throws Exception {
+        StreamingPackage pkg = new StreamingPackage(tmpfolder.newFolder("staged"), "package.tar",
+                "application/x-tar", out -> {
+                    out.write(new byte[] {1, 2, 3});
+                    throw new NoClassDefFoundError("Archiver");
+                });
+
+        try (InputStream in = pkg.serialize()) {
+            byte[] read = new byte[3];
+            IOUtils.readFully(in, read);
+            assertTrue(Arrays.equals(new byte[] {1, 2, 3}, read));
+            in.read();
+            fail("Error of the producer was not reported");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof NoClassDefFoundError);
+        }
+    }
+
+    /* Verify that closing the stream before its end stops the producer */
+    @Test
+    public void closeTest() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        StreamingPackage pkg = new StreamingPackage(tmpfolder.newFolder("staged"), "package.tar",
+                "application/x-tar", out -> {
+                    try {
+                        byte[] chunk = new byte[8192];
+                        while (true) {
+                            out.write(chunk);
+                        }
+                    } finally {
+                        stopped.countDown();
+                    }
+                });
+
+        InputStream in = pkg.serialize();
+        assertEquals(0, in.read());
+        in.close();
+        assertTrue("Producer was not stopped", stopped.await(10, TimeUnit.SECONDS));
+    }
+
+    /* Verify that a package cannot be serialized once cleaned up, and its staged content is removed */
+    @Test
+    public void cleanupTest() throws Exception {
+        StreamingPackage pkg = new StreamingPackage(tmpfolder.newFolder("staged"), "package.tar",
+                "application/x-tar", OutputStream::close);
+        pkg.cleanupPackage();
+
+        assertFalse(new File(tmpfolder.getRoot(), "staged").exists());
+        try {
+            pkg.serialize();
+            fail("Cleaned up package was serialized");
+        } catch (FileNotFoundException e) {
+            //expected
+        }
+    }
+}
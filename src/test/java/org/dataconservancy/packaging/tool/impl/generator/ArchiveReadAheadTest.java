@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveReadAheadTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File bagDir;
+
+    private List<File> stripeDirs;
+
+    private List<File> files;
+
+    @Before
+    public void setUp() throws Exception {
+        bagDir = tmpfolder.newFolder("bag");
+        stripeDirs = Arrays.asList(bagDir, tmpfolder.newFolder("stripe1"), tmpfolder.newFolder("stripe2"));
+        files = new ArrayList<>();
+        Random random = new Random(0);
+        //small and large files in each location, the largest exceeding the read ahead budget of its location
+        int[] sizes = {10, 3 * 1024 * 1024, 0, 24 * 1024 * 1024 + 5, 100, 1024 * 1024};
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] bytes = new byte[sizes[i]];
+            random.nextBytes(bytes);
+            File file = new File(bagDir, "data/file" + i + ".bin");
+            File stripeDir = stripeDirs.get(i % stripeDirs.size());
+            if (stripeDir.equals(bagDir)) {
+                FileUtils.writeByteArrayToFile(file, bytes);
+            } else {
+                File stagedFile = new File(stripeDir, "data/file" + i + ".bin");
+                FileUtils.writeByteArrayToFile(stagedFile, bytes);
+                Files.createSymbolicLink(file.toPath(), stagedFile.toPath());
+            }
+            files.add(file);
+        }
+    }
+
+    /* Verify that the files of every location are read in full, in the order they are archived */
+    @Test
+    public void readAheadTest() throws Exception {
+        try (ArchiveReadAhead readAhead = new ArchiveReadAhead(files, stripeDirs, null)) {
+            for (File file : files) {
+                //let the readers fill their budgets before the writer takes anything
+                Thread.sleep(100);
+                assertContent(file, readAhead);
+            }
+        }
+    }
+
+    /* Verify that a file linked several times into the bag is read ahead once, and read again when it is opened
+       again */
+    @Test
+    public void linkedFileTest() throws Exception {
+        File link = new File(bagDir, "data/link.bin");
+        Files.createSymbolicLink(link.toPath(), new File(stripeDirs.get(1), "data/file1.bin").toPath());
+        files.add(2, link);
+
+        try (ArchiveReadAhead readAhead = new ArchiveReadAhead(files, stripeDirs, null)) {
+            for (File file : files) {
+                assertContent(file, readAhead);
+            }
+        }
+    }
+
+    private static void assertContent(File file, ArchiveReadAhead readAhead) throws Exception {
+        try (InputStream in = readAhead.open(file)) {
+            assertTrue(file.getName(), Arrays.equals(Files.readAllBytes(file.toPath()), IOUtils.toByteArray(in)));
+        }
+    }
+}
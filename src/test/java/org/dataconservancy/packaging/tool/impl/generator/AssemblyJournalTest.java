@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AssemblyJournalTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File bagDir;
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        bagDir = tmpfolder.newFolder("bag");
+        journalFile = new File(tmpfolder.getRoot(), "bag.journal");
+        FileUtils.write(new File(bagDir, "data/file1.txt"), "file one", StandardCharsets.UTF_8);
+        FileUtils.write(new File(bagDir, "data/file\ttwo.txt"), "file two", StandardCharsets.UTF_8);
+    }
+
+    /* Verify that the entries of a journal are read back when assembly is resumed */
+    @Test
+    public void resumeTest() throws Exception {
+        AssemblyJournal journal = new AssemblyJournal(journalFile, bagDir, false);
+        journal.record(new File(bagDir, "data/file1.txt"), 42, Collections.singletonMap("md5", "abc"));
+        journal.record(new File(bagDir, "data/file\ttwo.txt"), -1, Collections.singletonMap("md5", "def"));
+        journal.close();
+
+        journal = new AssemblyJournal(journalFile, bagDir, true);
+        AssemblyJournal.Entry entry = journal.getEntry(new File(bagDir, "data/file1.txt"));
+        assertNotNull(entry);
+        assertEquals(8, entry.size);
+        assertEquals(42, entry.sourceModified);
+        assertEquals("abc", entry.digests.get("md5"));
+        assertEquals("def", journal.getEntry(new File(bagDir, "data/file\ttwo.txt")).digests.get("md5"));
+        journal.close();
+    }
+
+    /* Verify that entries of files which changed or disappeared since they were journaled, and a truncated last line,
+       are dropped */
+    @Test
+    public void staleEntriesTest() throws Exception {
+        AssemblyJournal journal = new AssemblyJournal(journalFile, bagDir, false);
+        journal.record(new File(bagDir, "data/file1.txt"), 42, Collections.singletonMap("md5", "abc"));
+        journal.record(new File(bagDir, "data/file\ttwo.txt"), -1, Collections.singletonMap("md5", "def"));
+        journal.close();
+        FileUtils.write(journalFile, "data/file3.txt\t8\t-1", StandardCharsets.UTF_8, true);
+        FileUtils.write(new File(bagDir, "data/file1.txt"), "file one, changed", StandardCharsets.UTF_8);
+
+        journal = new AssemblyJournal(journalFile, bagDir, true);
+        assertNull(journal.getEntry(new File(bagDir, "data/file1.txt")));
+        assertNotNull(journal.getEntry(new File(bagDir, "data/file\ttwo.txt")));
+        assertNull(journal.getEntry(new File(bagDir, "data/file3.txt")));
+        journal.close();
+
+        //the journal is rewritten with the valid entries only
+        assertEquals(1, FileUtils.readLines(journalFile, StandardCharsets.UTF_8).size());
+    }
+
+    /* Verify that an existing journal is discarded when assembly is not resumed, and removed once it is complete */
+    @Test
+    public void discardTest() throws Exception {
+        AssemblyJournal journal = new AssemblyJournal(journalFile, bagDir, false);
+        journal.record(new File(bagDir, "data/file1.txt"), 42, Collections.singletonMap("md5", "abc"));
+        journal.close();
+
+        journal = new AssemblyJournal(journalFile, bagDir, false);
+        assertNull(journal.getEntry(new File(bagDir, "data/file1.txt")));
+        assertTrue(journalFile.isFile());
+        journal.delete();
+        assertFalse(journalFile.exists());
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
+import org.dataconservancy.packaging.tool.impl.MultiVolumePackage;
+import org.dataconservancy.packaging.tool.model.BagItParameterNames;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BagItPackageAssemblerTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private static final ObjectName THROTTLE_NAME;
+
+    static {
+        try {
+            THROTTLE_NAME = new ObjectName("org.dataconservancy.packaging:type=IoThrottle,name=\"bag\"");
+        } catch (MalformedObjectNameException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private File contentDir;
+
+    @Before
+    public void setUp() throws Exception {
+        contentDir = tmpfolder.newFolder("content");
+        FileUtils.write(new File(contentDir, "file1.txt"), "file one", StandardCharsets.UTF_8);
+        FileUtils.write(new File(contentDir, "dir/file2.txt"), "file two", StandardCharsets.UTF_8);
+    }
+
+    /* Verify that compression levels are passed to the formats which take one */
+    @Test
+    public void compressionLevelTest() throws Exception {
+        for (String[] formatAndLevel : new String[][] {{"gz", "1"}, {"bzip2", "9"}, {"xz", "0"}, {"zstd", "19"}}) {
+            PackageGenerationParameters params = params("tar", formatAndLevel[0]);
+            params.addParam(GeneralParameterNames.COMPRESSION_LEVEL, formatAndLevel[1]);
+            assemble(params);
+
+            File bag = new File(tmpfolder.getRoot(), "staging/bag.tar." +
+                    (formatAndLevel[0].equals("zstd") ? "zst" : formatAndLevel[0]));
+            BagVerificationResult result = new BagVerifier(2).verify(bag);
+            assertTrue(formatAndLevel[0] + ": " + result.getErrors(), result.isValid());
+        }
+    }
+
+    /* Verify that a compression level out of the range of the compression format is rejected */
+    @Test(expected = PackageToolException.class)
+    public void compressionLevelOutOfRangeTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "gz");
+        params.addParam(GeneralParameterNames.COMPRESSION_LEVEL, "10");
+        new BagItPackageAssembler().init(params);
+    }
+
+    /* Verify that a compression level is rejected for a compression format which does not take one */
+    @Test(expected = PackageToolException.class)
+    public void compressionLevelUnsupportedTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "lz4");
+        params.addParam(GeneralParameterNames.COMPRESSION_LEVEL, "1");
+        new BagItPackageAssembler().init(params);
+    }
+
+    /* Verify that the payload files of an exploded bag are not hard links to their sources, unless asked for */
+    @Test
+    public void explodedBagStagingTest() throws Exception {
+        assemble(params("exploded", "none"));
+        File bagFile = new File(tmpfolder.getRoot(), "location/bag/data/file1.txt");
+        assertFalse(Files.isSameFile(bagFile.toPath(), new File(contentDir, "file1.txt").toPath()));
+        FileUtils.write(bagFile, "file 1!!", StandardCharsets.UTF_8);
+        assertEquals("file one", FileUtils.readFileToString(new File(contentDir, "file1.txt"), StandardCharsets.UTF_8));
+
+        FileUtils.deleteDirectory(new File(tmpfolder.getRoot(), "location"));
+        PackageGenerationParameters params = params("exploded", "none");
+        params.addParam(GeneralParameterNames.PAYLOAD_STAGING_STRATEGY, "link");
+        assemble(params);
+        assertTrue(Files.isSameFile(new File(tmpfolder.getRoot(), "location/bag/data/dir/file2.txt").toPath(),
+                new File(contentDir, "dir/file2.txt").toPath()));
+    }
+
+    /* Verify that a resource created from a stream has the content of the stream, not that of the file at its path */
+    @Test
+    public void streamContentTest() throws Exception {
+        PackageGenerationParameters params = params("exploded", "none");
+        params.addParam(BagItParameterNames.FETCH_SIZE_THRESHOLD, "1");
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        assembler.createResource("file1.txt", PackageResourceType.DATA,
+                new ByteArrayInputStream("transformed".getBytes(StandardCharsets.UTF_8)));
+        assembler.putResourceAsync(assembler.reserveResource("dir/file2.txt", PackageResourceType.DATA),
+                new ByteArrayInputStream("written".getBytes(StandardCharsets.UTF_8)));
+        assembler.assemblePackage();
+
+        File bagDir = new File(tmpfolder.getRoot(), "location/bag");
+        assertFalse(new File(bagDir, "fetch.txt").exists());
+        assertEquals("transformed", FileUtils.readFileToString(new File(bagDir, "data/file1.txt"),
+                StandardCharsets.UTF_8));
+        assertEquals("written", FileUtils.readFileToString(new File(bagDir, "data/dir/file2.txt"),
+                StandardCharsets.UTF_8));
+    }
+
+    /* Verify that a file other than the one at the path of its resource is staged, but not fetched */
+    @Test
+    public void otherFileTest() throws Exception {
+        File other = tmpfolder.newFile("other.txt");
+        FileUtils.write(other, "other", StandardCharsets.UTF_8);
+        PackageGenerationParameters params = params("exploded", "none");
+        params.addParam(BagItParameterNames.FETCH_SIZE_THRESHOLD, "1");
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        assembler.createResource("file1.txt", PackageResourceType.DATA, other);
+        assembler.putResourceAsync(assembler.reserveResource("dir/file2.txt", PackageResourceType.DATA),
+                new File(contentDir, "dir/file2.txt"));
+        assembler.assemblePackage();
+
+        File bagDir = new File(tmpfolder.getRoot(), "location/bag");
+        assertEquals("other", FileUtils.readFileToString(new File(bagDir, "data/file1.txt"), StandardCharsets.UTF_8));
+        List<String> lines = FileUtils.readLines(new File(bagDir, "fetch.txt"), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith(" 8 data/dir/file2.txt"));
+    }
+
+    /* Verify that a malformed reproducible date is rejected alike by the assembler and the model builder */
+    @Test
+    public void invalidReproducibleDateTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION, "true");
+        params.addParam(GeneralParameterNames.REPRODUCIBLE_DATE, "2016-13-45");
+        PackageToolException assemblerFailure = null;
+        try {
+            new BagItPackageAssembler().init(params);
+        } catch (PackageToolException e) {
+            assemblerFailure = e;
+        }
+        try {
+            new OrePackageModelBuilder().init(params);
+            fail("The model builder accepted the date");
+        } catch (PackageToolException e) {
+            assertNotNull("The assembler accepted the date", assemblerFailure);
+            assertEquals(assemblerFailure.getCode(), e.getCode());
+            assertEquals(assemblerFailure.getMessage(), e.getMessage());
+        }
+    }
+
+    /* Verify that sizes are parsed as bytes, or in the binary unit which follows them */
+    @Test
+    public void parseSizeTest() {
+        assertEquals(1, BagItPackageAssembler.parseSizeParam("size", "1"));
+        assertEquals(1, BagItPackageAssembler.parseSizeParam("size", "1B"));
+        assertEquals(1024, BagItPackageAssembler.parseSizeParam("size", "1K"));
+        assertEquals(3L << 30, BagItPackageAssembler.parseSizeParam("size", "3G"));
+        assertEquals(50L << 20, BagItPackageAssembler.parseSizeParam("size", "50 mb"));
+    }
+
+    /* Verify that a size too large to be represented is rejected */
+    @Test(expected = PackageToolException.class)
+    public void parseSizeOverflowTest() {
+        BagItPackageAssembler.parseSizeParam("size", "10000000T");
+    }
+
+    /* Verify that a package smaller than the maximum volume size is not split */
+    @Test
+    public void singleVolumeTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.MAX_VOLUME_SIZE, "1M");
+        Package pkg = assemble(params);
+
+        assertFalse(pkg instanceof MultiVolumePackage);
+        assertEquals("bag.tar", pkg.getPackageName());
+    }
+
+    /* Verify that a package larger than the maximum volume size is split into valid volumes within that size */
+    @Test
+    public void multiVolumeTest() throws Exception {
+        Random random = new Random(0);
+        byte[] bytes = new byte[100 * 1024];
+        for (int i = 0; i < 6; i++) {
+            random.nextBytes(bytes);
+            FileUtils.writeByteArrayToFile(new File(contentDir, "large/file" + i + ".bin"), bytes);
+        }
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.MAX_VOLUME_SIZE, "300K");
+        BagItPackageAssembler assembler = createAssembler(params);
+        for (int i = 0; i < 6; i++) {
+            try (InputStream in = new FileInputStream(new File(contentDir, "large/file" + i + ".bin"))) {
+                assembler.createResource("large/file" + i + ".bin", PackageResourceType.DATA, in);
+            }
+        }
+        Package pkg = assembler.assemblePackage();
+
+        assertTrue(pkg instanceof MultiVolumePackage);
+        List<Package> volumes = ((MultiVolumePackage) pkg).getVolumes();
+        assertTrue(volumes.size() > 2);
+        for (Package volume : volumes) {
+            File volumeFile = new File(tmpfolder.getRoot(), "staging/" + volume.getPackageName());
+            assertTrue(volumeFile.length() + " bytes", volumeFile.length() <= 300 * 1024);
+            BagVerificationResult result = new BagVerifier(2).verify(volumeFile);
+            assertTrue(result.getErrors().toString(), result.isValid());
+        }
+    }
+
+    /* Verify that a bag whose payload is spread over several staging locations is archived in full */
+    @Test
+    public void stripedStagingTest() throws Exception {
+        Random random = new Random(0);
+        byte[] bytes = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < 4; i++) {
+            random.nextBytes(bytes);
+            FileUtils.writeByteArrayToFile(new File(contentDir, "large/file" + i + ".bin"), bytes);
+        }
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.PACKAGE_STAGING_LOCATION,
+                new File(tmpfolder.getRoot(), "stripe").getPath());
+        params.addParam(GeneralParameterNames.PAYLOAD_STAGING_STRATEGY, "copy");
+        BagItPackageAssembler assembler = createAssembler(params);
+        for (int i = 0; i < 4; i++) {
+            assembler.createResource("large/file" + i + ".bin", PackageResourceType.DATA,
+                    new File(contentDir, "large/file" + i + ".bin"));
+        }
+        File[] stripedFiles = new File(tmpfolder.getRoot(), "stripe/bag/data/large").listFiles();
+        assertTrue(stripedFiles != null && stripedFiles.length > 0);
+        assembler.assemblePackage();
+
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "staging/bag.tar"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+        assertEquals((4 * bytes.length + 16) + ".6",
+                result.getBagInfo().get(BagItParameterNames.PAYLOAD_OXUM).get(0));
+    }
+
+    /* Verify that an interrupted journaled assembly is resumed without staging its files again, into a valid bag */
+    @Test
+    public void resumeTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.JOURNALED_ASSEMBLY, "true");
+        params.addParam(GeneralParameterNames.PAYLOAD_STAGING_STRATEGY, "copy");
+
+        //interrupt assembly after the first file is staged
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        assembler.createResource("file1.txt", PackageResourceType.DATA, new File(contentDir, "file1.txt"));
+        File stagedFile = new File(tmpfolder.getRoot(), "staging/bag/data/file1.txt");
+        assertTrue(stagedFile.setLastModified(1000000000L));
+        assertTrue(new File(tmpfolder.getRoot(), "staging/bag.journal").isFile());
+
+        assembler = createAssembler(params);
+        assertEquals("file1.txt was staged again", 1000000000L, stagedFile.lastModified());
+        Package pkg = assembler.assemblePackage();
+
+        assertEquals("bag.tar", pkg.getPackageName());
+        assertFalse(new File(tmpfolder.getRoot(), "staging/bag.journal").exists());
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "staging/bag.tar"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+        assertEquals("16.2", result.getBagInfo().get(BagItParameterNames.PAYLOAD_OXUM).get(0));
+    }
+
+    /* Verify that a payload file whose source changed after it was staged is checksummed as staged, not at its source,
+       when checksums are cached */
+    @Test
+    public void checksumCacheSourceChangedTest() throws Exception {
+        PackageGenerationParameters params = params("exploded", "none");
+        params.addParam(GeneralParameterNames.CHECKSUM_CACHE_LOCATION,
+                new File(tmpfolder.getRoot(), "checksums").getPath());
+        params.addParam(GeneralParameterNames.CHECKSUM_CACHE_MIN_AGE, "0");
+        BagItPackageAssembler assembler = createAssembler(params);
+
+        File source = new File(contentDir, "file1.txt");
+        FileUtils.write(source, "file 1!!", StandardCharsets.UTF_8);
+        assertTrue(source.setLastModified(source.lastModified() - 10000));
+        assembler.assemblePackage();
+
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "location/bag"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+    }
+
+    /* Verify that identical payload files are staged once when deduplicating, and files of the same size are not */
+    @Test
+    public void deduplicationTest() throws Exception {
+        FileUtils.write(new File(contentDir, "copy.txt"), "file one", StandardCharsets.UTF_8);
+        FileUtils.write(new File(contentDir, "other.txt"), "file 1!!", StandardCharsets.UTF_8);
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.PAYLOAD_DEDUPLICATION, "true");
+        params.addParam(GeneralParameterNames.PAYLOAD_STAGING_STRATEGY, "copy");
+        BagItPackageAssembler assembler = createAssembler(params);
+        for (String path : new String[] {"copy.txt", "other.txt"}) {
+            assembler.createResource(path, PackageResourceType.DATA, new File(contentDir, path));
+        }
+
+        File payloadDir = new File(tmpfolder.getRoot(), "staging/bag/data");
+        assertTrue(Files.isSameFile(new File(payloadDir, "file1.txt").toPath(),
+                new File(payloadDir, "copy.txt").toPath()));
+        assertFalse(Files.isSameFile(new File(payloadDir, "file1.txt").toPath(),
+                new File(payloadDir, "other.txt").toPath()));
+
+        assembler.assemblePackage();
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "staging/bag.tar"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+    }
+
+    /* Verify that cancelling an assembly stops its pending writes, including a caller waiting to submit one */
+    @Test
+    public void cancelTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.ASYNC_WRITE_THREADS, "1");
+        params.addParam(GeneralParameterNames.ASYNC_WRITE_QUEUE_DEPTH, "0");
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InputStream blockingStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                reading.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                throw new InterruptedIOException();
+            }
+        };
+        CompletableFuture<URI> write = assembler.putResourceAsync(
+                assembler.reserveResource("a.txt", PackageResourceType.METADATA), blockingStream);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        //the writer is busy, so the next write waits for it until the assembly is cancelled
+        ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor();
+        canceller.schedule(assembler::cancel, 200, TimeUnit.MILLISECONDS);
+        canceller.shutdown();
+        try {
+            assembler.putResourceAsync(assembler.reserveResource("b.txt", PackageResourceType.METADATA),
+                    new ByteArrayInputStream(new byte[0]));
+            fail("Write submitted to a cancelled assembly");
+        } catch (PackageToolException e) {
+            //expected
+        }
+
+        //the waiting caller may notice the cancellation before the canceller is done
+        assertTrue(canceller.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(write.isCancelled());
+        assertTrue("Writer thread was not interrupted", interrupted.await(10, TimeUnit.SECONDS));
+        try {
+            assembler.assemblePackage();
+            fail("Cancelled package was assembled");
+        } catch (PackageToolException e) {
+            //expected
+        }
+    }
+
+    /* Verify that fetch.txt lists files by path, whatever the order they were written in */
+    @Test
+    public void fetchOrderTest() throws Exception {
+        PackageGenerationParameters params = params("exploded", "none");
+        params.addParam(BagItParameterNames.FETCH_BASE_URL, "http://example.org/content");
+        params.addParam(BagItParameterNames.FETCH_SIZE_THRESHOLD, "1");
+        assemble(params);
+
+        List<String> lines = FileUtils.readLines(new File(tmpfolder.getRoot(), "location/bag/fetch.txt"),
+                StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("http://example.org/content/dir/file2.txt 8 data/dir/file2.txt", lines.get(0));
+        assertEquals("http://example.org/content/file1.txt 8 data/file1.txt", lines.get(1));
+    }
+
+    /* Verify that parameters which only tune how a reproducible package is produced are left out of bag-info.txt */
+    @Test
+    public void reproducibleBagInfoTest() throws Exception {
+        PackageGenerationParameters params = params("exploded", "none");
+        params.addParam(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION, "true");
+        params.addParam(GeneralParameterNames.ASYNC_WRITE_THREADS, "2");
+        params.addParam(GeneralParameterNames.REM_SERIALIZATION_THREADS, "2");
+        assemble(params);
+
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "location/bag"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+        Map<String, List<String>> bagInfo = result.getBagInfo();
+        for (String param : new String[] {GeneralParameterNames.PACKAGE_LOCATION,
+                GeneralParameterNames.PACKAGE_STAGING_LOCATION, GeneralParameterNames.CONTENT_ROOT_LOCATION,
+                GeneralParameterNames.ASYNC_WRITE_THREADS, GeneralParameterNames.REM_SERIALIZATION_THREADS}) {
+            assertFalse(param, bagInfo.containsKey(param));
+        }
+        assertEquals("bag", bagInfo.get(GeneralParameterNames.PACKAGE_NAME).get(0));
+        assertEquals("true", bagInfo.get(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION).get(0));
+    }
+
+    /* Verify that the I/O throttle is unregistered when assembly fails */
+    @Test
+    public void ioThrottleFailureTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.IO_BANDWIDTH_LIMIT, "1G");
+        BagItPackageAssembler assembler = createAssembler(params);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(THROTTLE_NAME));
+
+        FileUtils.forceDelete(new File(tmpfolder.getRoot(), "staging/bag/data/file1.txt"));
+        try {
+            assembler.assemblePackage();
+            fail("Bag missing a payload file was assembled");
+        } catch (PackageToolException e) {
+            //expected
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(THROTTLE_NAME));
+    }
+
+    /* Verify that the I/O throttle of a streamed package is registered only while a serialization is produced */
+    @Test
+    public void ioThrottleStreamingTest() throws Exception {
+        PackageGenerationParameters params = params("tar", "none");
+        params.addParam(GeneralParameterNames.IO_BANDWIDTH_LIMIT, "1G");
+        params.addParam(GeneralParameterNames.STREAMING_SERIALIZATION, "true");
+        //a payload larger than the pipe, so that the serialization is still being produced once it is first read
+        byte[] bytes = new byte[4 * 1024 * 1024];
+        new Random(0).nextBytes(bytes);
+        FileUtils.writeByteArrayToFile(new File(contentDir, "large.bin"), bytes);
+        BagItPackageAssembler assembler = createAssembler(params);
+        try (InputStream in = new FileInputStream(new File(contentDir, "large.bin"))) {
+            assembler.createResource("large.bin", PackageResourceType.DATA, in);
+        }
+        Package pkg = assembler.assemblePackage();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(THROTTLE_NAME));
+
+        File bag = new File(tmpfolder.getRoot(), "bag.tar");
+        try (InputStream in = pkg.serialize(); OutputStream out = new FileOutputStream(bag)) {
+            out.write(in.read());
+            assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(THROTTLE_NAME));
+            IOUtils.copy(in, out);
+        }
+        //the serialization ends before the producer unregisters the throttle
+        for (int i = 0; i < 100 && ManagementFactory.getPlatformMBeanServer().isRegistered(THROTTLE_NAME); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(THROTTLE_NAME));
+        pkg.cleanupPackage();
+
+        BagVerificationResult result = new BagVerifier(2).verify(bag);
+        assertTrue(result.getErrors().toString(), result.isValid());
+    }
+
+    private PackageGenerationParameters params(String archivingFormat, String compressionFormat) {
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_FORMAT_ID, "BOREM");
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "bag");
+        params.addParam(GeneralParameterNames.PACKAGE_LOCATION, new File(tmpfolder.getRoot(), "location").getPath());
+        params.addParam(GeneralParameterNames.PACKAGE_STAGING_LOCATION,
+                new File(tmpfolder.getRoot(), "staging").getPath());
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, contentDir.getPath());
+        params.addParam(GeneralParameterNames.ARCHIVING_FORMAT, archivingFormat);
+        params.addParam(GeneralParameterNames.COMPRESSION_FORMAT, compressionFormat);
+        params.addParam(BagItParameterNames.BAGIT_PROFILE_ID, "http://example.org/profile");
+        params.addParam(BagItParameterNames.PKG_BAG_DIR, "bag");
+        return params;
+    }
+
+    /* Assembles a bag of the two content files */
+    private Package assemble(PackageGenerationParameters params) throws Exception {
+        return createAssembler(params).assemblePackage();
+    }
+
+    /* Creates an assembler with the two content files added to the bag */
+    private BagItPackageAssembler createAssembler(PackageGenerationParameters params) throws Exception {
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        assembler.createResource("file1.txt", PackageResourceType.DATA, new File(contentDir, "file1.txt"));
+        assembler.createResource("dir/file2.txt", PackageResourceType.DATA, new File(contentDir, "dir/file2.txt"));
+        return assembler;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
+import org.dataconservancy.packaging.tool.model.BagItParameterNames;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BagVerifierTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File contentDir;
+
+    @Before
+    public void setUp() throws Exception {
+        contentDir = tmpfolder.newFolder("content");
+        FileUtils.write(new File(contentDir, "file1.txt"), "file one", StandardCharsets.UTF_8);
+        FileUtils.write(new File(contentDir, "dir/file2.txt"), "file two", StandardCharsets.UTF_8);
+    }
+
+    /* Verify that an exploded bag produced by the assembler is valid */
+    @Test
+    public void explodedBagTest() throws Exception {
+        assemble("exploded", "none");
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "location/bag"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+        assertEquals("16.2", result.getBagInfo().get(BagItParameterNames.PAYLOAD_OXUM).get(0));
+    }
+
+    /* Verify that compressed tar and zip bags are verified without being extracted */
+    @Test
+    public void archivedBagTest() throws Exception {
+        assemble("tar", "gz");
+        BagVerificationResult result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "staging/bag.tar.gz"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+
+        assemble("zip", "none");
+        result = new BagVerifier(2).verify(new File(tmpfolder.getRoot(), "staging/bag.zip"));
+        assertTrue(result.getErrors().toString(), result.isValid());
+    }
+
+    /* Verify that a modified payload file fails checksum verification */
+    @Test
+    public void checksumMismatchTest() throws Exception {
+        assemble("exploded", "none");
+        File bagDir = new File(tmpfolder.getRoot(), "location/bag");
+        FileUtils.write(new File(bagDir, "data/file1.txt"), "file 1!!", StandardCharsets.UTF_8);
+
+        BagVerificationResult result = new BagVerifier(2).verify(bagDir);
+        assertFalse(result.isValid());
+        assertEquals(2, result.getErrors().size());
+    }
+
+    /* Verify that a missing payload file fails the Payload-Oxum check */
+    @Test
+    public void missingFileTest() throws Exception {
+        assemble("exploded", "none");
+        File bagDir = new File(tmpfolder.getRoot(), "location/bag");
+        assertTrue(new File(bagDir, "data/dir/file2.txt").delete());
+
+        BagVerificationResult result = new BagVerifier(2).verify(bagDir);
+        assertFalse(result.isValid());
+        assertTrue(result.getErrors().toString(), result.getErrors().stream()
+                .anyMatch(error -> error.startsWith(BagItParameterNames.PAYLOAD_OXUM)));
+    }
+
+    private void assemble(String archivingFormat, String compressionFormat) throws Exception {
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_FORMAT_ID, "BOREM");
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "bag");
+        params.addParam(GeneralParameterNames.PACKAGE_LOCATION, new File(tmpfolder.getRoot(), "location").getPath());
+        params.addParam(GeneralParameterNames.PACKAGE_STAGING_LOCATION,
+                new File(tmpfolder.getRoot(), "staging").getPath());
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, contentDir.getPath());
+        params.addParam(GeneralParameterNames.CHECKSUM_ALGORITHMS, "md5");
+        params.addParam(GeneralParameterNames.CHECKSUM_ALGORITHMS, "sha1");
+        params.addParam(GeneralParameterNames.ARCHIVING_FORMAT, archivingFormat);
+        params.addParam(GeneralParameterNames.COMPRESSION_FORMAT, compressionFormat);
+        params.addParam(BagItParameterNames.BAGIT_PROFILE_ID, "http://example.org/profile");
+        params.addParam(BagItParameterNames.PKG_BAG_DIR, "bag");
+
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        assembler.createResource("file1.txt", PackageResourceType.DATA,
+                new ByteArrayInputStream("file one".getBytes(StandardCharsets.UTF_8)));
+        assembler.createResource("dir/file2.txt", PackageResourceType.DATA,
+                new ByteArrayInputStream("file two".getBytes(StandardCharsets.UTF_8)));
+        assembler.assemblePackage();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
+import org.dataconservancy.packaging.tool.model.BagItParameterNames;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+
+/**
+ * Measures how long {@link BagItPackageAssembler} takes to serialize a tar package with each compression format and
+ * level given, and how large the package is. Not run as part of the build; run it with
+ * <pre>
+ * java -cp ... org.dataconservancy.packaging.tool.impl.generator.CompressionBenchmark [format[:level]...]
+ *         [-size megabytes]
+ * </pre>
+ * The payload is made of text files, which compress well, and random files, which do not, in equal parts.
+ */
+public class CompressionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = 64;
+        StringBuilder formats = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-size") && i + 1 < args.length) {
+                megabytes = Integer.parseInt(args[++i]);
+            } else {
+                formats.append(formats.length() > 0 ? "," : "").append(args[i]);
+            }
+        }
+        if (formats.length() == 0) {
+            formats.append("none,gz,gz:1,gz:9,bzip2,xz,xz:1,zstd,zstd:1,zstd:19,lz4");
+        }
+
+        File dir = Files.createTempDirectory("compression-benchmark").toFile();
+        try {
+            File content = new File(dir, "content");
+            generateContent(content, megabytes);
+
+            //warm up
+            run(dir, content, "gz", null);
+
+            System.out.println("format\tlevel\tmillis\tpackage bytes");
+            for (String format : formats.toString().split(",")) {
+                String[] formatAndLevel = format.trim().split(":");
+                String level = formatAndLevel.length > 1 ? formatAndLevel[1] : null;
+                long start = System.nanoTime();
+                long bytes = run(dir, content, formatAndLevel[0], level);
+                System.out.println(formatAndLevel[0] + "\t" + (level != null ? level : "default") + "\t" +
+                        (System.nanoTime() - start) / 1000000 + "\t" + bytes);
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    /* Assembles a package of the content with the given compression, returns the size of the package */
+    private static long run(File dir, File content, String format, String level) throws IOException {
+        File staging = new File(dir, "staging");
+        FileUtils.deleteQuietly(staging);
+
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_FORMAT_ID, "BOREM");
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "benchmark");
+        params.addParam(GeneralParameterNames.PACKAGE_LOCATION, new File(dir, "location").getPath());
+        params.addParam(GeneralParameterNames.PACKAGE_STAGING_LOCATION, staging.getPath());
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, content.getPath());
+        params.addParam(GeneralParameterNames.ARCHIVING_FORMAT, "tar");
+        params.addParam(GeneralParameterNames.COMPRESSION_FORMAT, format);
+        if (level != null) {
+            params.addParam(GeneralParameterNames.COMPRESSION_LEVEL, level);
+        }
+        params.addParam(BagItParameterNames.BAGIT_PROFILE_ID, "http://example.org/profile");
+        params.addParam(BagItParameterNames.PKG_BAG_DIR, "benchmark");
+
+        BagItPackageAssembler assembler = new BagItPackageAssembler();
+        assembler.init(params);
+        for (File file : content.listFiles()) {
+            try (InputStream in = new FileInputStream(file)) {
+                assembler.createResource(file.getName(), PackageResourceType.DATA, in);
+            }
+        }
+        assembler.assemblePackage();
+
+        long bytes = 0;
+        for (File file : staging.listFiles()) {
+            if (file.isFile()) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    /* Writes the given number of megabytes of text and random files, one megabyte each */
+    private static void generateContent(File content, int megabytes) throws IOException {
+        content.mkdirs();
+        Random random = new Random(0);
+        byte[] bytes = new byte[1024 * 1024];
+        for (int i = 0; i < megabytes; i++) {
+            if (i % 2 == 0) {
+                StringBuilder text = new StringBuilder();
+                while (text.length() < bytes.length) {
+                    text.append("Line ").append(random.nextInt(100000)).append(" of a text file in the payload\n");
+                }
+                System.arraycopy(text.toString().getBytes(StandardCharsets.US_ASCII), 0, bytes, 0, bytes.length);
+            } else {
+                random.nextBytes(bytes);
+            }
+            String name = "file-" + i + (i % 2 == 0 ? ".txt" : ".bin");
+            try (OutputStream out = new FileOutputStream(new File(content, name))) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.dataconservancy.packaging.tool.impl.generator.PackageFixtures.CapturingAssembler;
+import org.dataconservancy.packaging.tool.model.BoremParameterNames;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageArtifact;
+import org.dataconservancy.packaging.tool.model.PackageDescription;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageRelationship;
+import org.dataconservancy.packaging.tool.model.ontologies.DcsBoPackageOntology;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.dataconservancy.packaging.tool.impl.generator.PackageFixtures.artifact;
+import static org.dataconservancy.packaging.tool.impl.generator.PackageFixtures.description;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JenaOrePackageModelBuilderTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File contentDir;
+
+    @Before
+    public void setUp() throws Exception {
+        contentDir = tmpfolder.newFolder("content");
+        FileUtils.write(new File(contentDir, "file1.txt"), "file one", StandardCharsets.UTF_8);
+        FileUtils.write(new File(contentDir, "dir/file2.txt"), "file two", StandardCharsets.UTF_8);
+        FileUtils.write(new File(contentDir, "metadata.xml"), "<metadata/>", StandardCharsets.UTF_8);
+    }
+
+    /* Verify that the ReMs built with Jena are isomorphic to the ones built with foresite */
+    @Test
+    public void conformsToForesiteBuilderTest() throws Exception {
+        /* A ReM for the collection, each of the two data items, and the package */
+        assertEquals(4, assertConforms("RDF/XML", "artifact"));
+    }
+
+    /* Verify that the ReMs built with both builders are isomorphic in every syntax */
+    @Test
+    public void conformsInEverySyntaxTest() throws Exception {
+        for (String format : new String[] {"Turtle", "N-Triples", "RDF-Thrift"}) {
+            assertEquals(4, assertConforms(format, "artifact"));
+        }
+    }
+
+    /* Verify that ReMs sharing documents are isomorphic too, and share them */
+    @Test
+    public void conformsWhenReMsShareDocumentsTest() throws Exception {
+        /* The collection and its data items share a document */
+        assertEquals(2, assertConforms("N-Triples", "collection"));
+        /* Each data item has a document of its own */
+        assertEquals(4, assertConforms("RDF/XML", "1"));
+        assertEquals(3, assertConforms("Turtle", "2"));
+    }
+
+    /* Returns the number of ReM documents */
+    private int assertConforms(String format, String granularity) {
+        CapturingAssembler foresite = build(new OrePackageModelBuilder(), format, granularity);
+        CapturingAssembler jena = build(new JenaOrePackageModelBuilder(), format, granularity);
+
+        assertEquals(foresite.resources.keySet(), jena.resources.keySet());
+        int rems = 0;
+        for (Map.Entry<URI, byte[]> resource : foresite.resources.entrySet()) {
+            if (resource.getKey().getPath().startsWith("/package/ORE-REM/")) {
+                Model expected = read(resource.getKey(), resource.getValue());
+                Model actual = read(resource.getKey(), jena.resources.get(resource.getKey()));
+                assertTrue("ReM " + resource.getKey() + " differs", expected.isIsomorphicWith(actual));
+                rems++;
+            } else {
+                assertEquals(new String(resource.getValue(), StandardCharsets.UTF_8),
+                             new String(jena.resources.get(resource.getKey()), StandardCharsets.UTF_8));
+            }
+        }
+        return rems;
+    }
+
+    private CapturingAssembler build(OrePackageModelBuilder builder, String format, String granularity) {
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "package");
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, contentDir.getPath());
+        params.addParam(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION, "true");
+        params.addParam(BoremParameterNames.REM_SERIALIZATION_FORMAT, format);
+        params.addParam(BoremParameterNames.REM_GRANULARITY, granularity);
+
+        CapturingAssembler assembler = new CapturingAssembler();
+        builder.init(params);
+        builder.buildModel(describe(), assembler);
+        return assembler;
+    }
+
+    private static Model read(URI rem, byte[] rdf) {
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(rdf), RDFLanguages.filenameToLang(rem.getPath()));
+        return model;
+    }
+
+    private static PackageDescription describe() {
+        Set<PackageArtifact> artifacts = new HashSet<>();
+
+        PackageArtifact collection = artifact("collection", DcsBoPackageOntology.COLLECTION, "collection");
+        collection.setSimplePropertyValues(DcsBoPackageOntology.TITLE, "A collection");
+        for (int i = 0; i < 2; i++) {
+            PackageArtifact.PropertyValueGroup creator = new PackageArtifact.PropertyValueGroup();
+            creator.addSubPropertyValue(DcsBoPackageOntology.PERSON_NAME, "Person " + i);
+            creator.addSubPropertyValue(DcsBoPackageOntology.EMAIL, "mailto:person" + i + "@example.org");
+            collection.addPropertyValueGroup(DcsBoPackageOntology.CREATOR, creator);
+        }
+        collection.setRelationships(
+                new PackageRelationship("http://purl.org/dc/terms/references", true, "http://example.org/paper"),
+                new PackageRelationship("http://purl.org/dc/terms/source", false, "Field notes"));
+        artifacts.add(collection);
+
+        String[] files = {"file1.txt", "dir/file2.txt"};
+        for (int i = 0; i < files.length; i++) {
+            PackageArtifact item = artifact("item" + i, DcsBoPackageOntology.DATAITEM, "item" + i);
+            item.setSimplePropertyValues(DcsBoPackageOntology.NAME, "Data item " + i);
+            item.setRelationships(new PackageRelationship(DcsBoPackageOntology.IS_MEMBER_OF, true, "collection"));
+            artifacts.add(item);
+
+            PackageArtifact file = artifact("file" + i, DcsBoPackageOntology.DATAFILE, files[i]);
+            file.setSimplePropertyValues(DcsBoPackageOntology.NAME, files[i]);
+            file.setRelationships(new PackageRelationship(DcsBoPackageOntology.IS_MEMBER_OF, true, "item" + i));
+            artifacts.add(file);
+        }
+
+        PackageArtifact metadata = artifact("metadata", DcsBoPackageOntology.METADATAFILE, "metadata.xml");
+        metadata.setRelationships(new PackageRelationship(DcsBoPackageOntology.IS_METADATA_FOR, true, "item0"));
+        artifacts.add(metadata);
+
+        return description(artifacts, "collection");
+    }
+}
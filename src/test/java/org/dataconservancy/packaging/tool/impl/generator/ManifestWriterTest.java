@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.dcs.model.Checksum;
+import org.dataconservancy.dcs.model.ChecksumImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class ManifestWriterTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private File bagDir;
+
+    @Before
+    public void setUp() throws Exception {
+        bagDir = tmpfolder.newFolder("bag");
+    }
+
+    /* Verify that a manifest is written for each algorithm, listing files in the order of their paths */
+    @Test
+    public void manifestsTest() throws Exception {
+        Map<File, List<Checksum>> fileChecksums = new LinkedHashMap<>();
+        fileChecksums.put(new File(bagDir, "data/z.txt"), checksums("z"));
+        fileChecksums.put(new File(bagDir, "data/dir/b.txt"), checksums("b"));
+        fileChecksums.put(new File(bagDir, "data/d\u00e9j\u00e0 vu.txt"), checksums("e"));
+        fileChecksums.put(new File(bagDir, "data/a.txt"), checksums("a"));
+
+        List<File> manifests = new ManifestWriter(bagDir, Arrays.asList("md5", "sha1"))
+                .write("manifest-", fileChecksums);
+
+        assertEquals(Arrays.asList(new File(bagDir, "manifest-md5.txt"), new File(bagDir, "manifest-sha1.txt")),
+                manifests);
+        String newLine = System.getProperty("line.separator");
+        assertEquals("md5-a  data/a.txt" + newLine +
+                "md5-b  data/dir/b.txt" + newLine +
+                "md5-e  data/d\u00e9j\u00e0 vu.txt" + newLine +
+                "md5-z  data/z.txt" + newLine,
+                FileUtils.readFileToString(manifests.get(0), StandardCharsets.UTF_8));
+        assertEquals("sha1-a  data/a.txt" + newLine +
+                "sha1-b  data/dir/b.txt" + newLine +
+                "sha1-e  data/d\u00e9j\u00e0 vu.txt" + newLine +
+                "sha1-z  data/z.txt" + newLine,
+                FileUtils.readFileToString(manifests.get(1), StandardCharsets.UTF_8));
+    }
+
+    /* Verify that checksums of algorithms without a manifest are left out, and tag manifests are named as such */
+    @Test
+    public void tagManifestTest() throws Exception {
+        Map<File, List<Checksum>> fileChecksums = new LinkedHashMap<>();
+        fileChecksums.put(new File(bagDir, "bagit.txt"), checksums("bagit"));
+        fileChecksums.put(new File(bagDir, "bag-info.txt"), checksums("info"));
+
+        List<File> manifests = new ManifestWriter(bagDir, Arrays.asList("sha1")).write("tagmanifest-", fileChecksums);
+
+        assertEquals(Arrays.asList(new File(bagDir, "tagmanifest-sha1.txt")), manifests);
+        String newLine = System.getProperty("line.separator");
+        assertEquals("sha1-info  bag-info.txt" + newLine + "sha1-bagit  bagit.txt" + newLine,
+                FileUtils.readFileToString(manifests.get(0), StandardCharsets.UTF_8));
+    }
+
+    private static List<Checksum> checksums(String value) {
+        return Arrays.asList(new ChecksumImpl("md5", "md5-" + value), new ChecksumImpl("sha1", "sha1-" + value));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.packaging.tool.api.generator.AsyncPackageAssembler;
+import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageArtifact;
+import org.dataconservancy.packaging.tool.model.PackageDescription;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageRelationship;
+import org.dataconservancy.packaging.tool.model.ontologies.DcsBoPackageOntology;
+
+/**
+ * Measures how long {@link OrePackageModelBuilder} takes to build and serialize the ReMs of packages of increasing
+ * size, with each number of ReM serialization threads given, or {@link JenaOrePackageModelBuilder} when -jena is
+ * given. Not run as part of the build; run it with
+ * <pre>
+ * java -cp ... org.dataconservancy.packaging.tool.impl.generator.OrePackageModelBuilderBenchmark [data items...]
+ *         [-threads n,...] [-jena]
+ * </pre>
+ * Each data item is described by a ReM of its own, so the number of ReMs is the number of data items plus two.
+ * Serialized ReMs are counted and discarded.
+ */
+public class OrePackageModelBuilderBenchmark {
+
+    private static boolean useJena;
+
+    public static void main(String[] args) throws Exception {
+        String threadCounts = "1," + Runtime.getRuntime().availableProcessors();
+        StringBuilder itemCounts = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threadCounts = args[++i];
+            } else if (args[i].equals("-jena")) {
+                useJena = true;
+            } else {
+                itemCounts.append(itemCounts.length() > 0 ? "," : "").append(args[i]);
+            }
+        }
+        if (itemCounts.length() == 0) {
+            itemCounts.append("1000,5000,20000");
+        }
+
+        //warm up
+        run(1000, 1);
+
+        System.out.println("data items\tthreads\tmillis\tReM bytes");
+        for (String itemCount : itemCounts.toString().split(",")) {
+            for (String threads : threadCounts.split(",")) {
+                int items = Integer.parseInt(itemCount.trim());
+                int threadCount = Integer.parseInt(threads.trim());
+                long start = System.nanoTime();
+                long bytes = run(items, threadCount);
+                System.out.println(items + "\t" + threadCount + "\t" + (System.nanoTime() - start) / 1000000 + "\t" +
+                        bytes);
+            }
+        }
+    }
+
+    /* Builds the model of a package of a collection of the given number of data items, returns the ReM bytes */
+    private static long run(int items, int threads) {
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "benchmark");
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, System.getProperty("java.io.tmpdir"));
+        params.addParam(GeneralParameterNames.REM_SERIALIZATION_THREADS, String.valueOf(threads));
+
+        OrePackageModelBuilder builder = useJena ? new JenaOrePackageModelBuilder() : new OrePackageModelBuilder();
+        builder.init(params);
+        CountingAssembler assembler = new CountingAssembler();
+        builder.buildModel(describe(items), assembler);
+        return assembler.bytes.get();
+    }
+
+    private static PackageDescription describe(int items) {
+        Set<PackageArtifact> artifacts = new HashSet<>();
+        PackageArtifact collection = new PackageArtifact();
+        collection.setId("collection");
+        collection.setType(DcsBoPackageOntology.COLLECTION);
+        collection.setArtifactRef("collection");
+        collection.setSimplePropertyValues(DcsBoPackageOntology.TITLE, "Benchmark collection");
+        artifacts.add(collection);
+        for (int i = 0; i < items; i++) {
+            PackageArtifact item = new PackageArtifact();
+            item.setId("item-" + i);
+            item.setType(DcsBoPackageOntology.DATAITEM);
+            item.setArtifactRef("item-" + i);
+            item.setSimplePropertyValues(DcsBoPackageOntology.NAME, "Data item " + i);
+            item.setSimplePropertyValues(DcsBoPackageOntology.DESCRIPTION, "Description of data item " + i);
+            item.setRelationships(new PackageRelationship(DcsBoPackageOntology.IS_MEMBER_OF, true, "collection"));
+            artifacts.add(item);
+        }
+        PackageDescription description = new PackageDescription();
+        description.setPackageArtifacts(artifacts);
+        description.setRootArtifactRef("collection");
+        return description;
+    }
+
+    /* Accepts concurrent writes, as the assembler generating packages does, and counts the bytes written */
+    private static class CountingAssembler implements AsyncPackageAssembler {
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        public void init(PackageGenerationParameters params) {
+        }
+
+        @Override
+        public URI reserveResource(String path, PackageResourceType type) {
+            return URI.create("file:///benchmark" + path);
+        }
+
+        @Override
+        public void putResource(URI uri, InputStream content) {
+            try {
+                bytes.addAndGet(IOUtils.copyLarge(content, NullOutputStream.NULL_OUTPUT_STREAM));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public OutputStream openResource(URI uri) {
+            return new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM) {
+                @Override
+                public void close() {
+                    bytes.addAndGet(getByteCount());
+                }
+            };
+        }
+
+        @Override
+        public CompletableFuture<URI> putResourceAsync(URI uri, InputStream content) {
+            putResource(uri, content);
+            return CompletableFuture.completedFuture(uri);
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public URI createResource(String path, PackageResourceType type, InputStream content) {
+            URI uri = reserveResource(path, type);
+            putResource(uri, content);
+            return uri;
+        }
+
+        @Override
+        public Package assemblePackage() {
+            return null;
+        }
+
+        @Override
+        public void addParameter(String key, String value) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.packaging.tool.api.generator.PackageAssembler;
+import org.dataconservancy.packaging.tool.api.generator.PackageResourceType;
+import org.dataconservancy.packaging.tool.model.PackageArtifact;
+import org.dataconservancy.packaging.tool.model.PackageDescription;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageRelationship;
+import org.dataconservancy.packaging.tool.model.ontologies.DcsBoPackageOntology;
+
+/*
+ * Package descriptions, and an assembler holding what is put into a package, for the tests of the model builders. The
+ * descriptions are public, so that the tests of readers of packages can build the packages they read.
+ */
+public class PackageFixtures {
+
+    private PackageFixtures() {
+    }
+
+    /* A collection of data items, each of a file named file<i>.txt */
+    public static PackageDescription collectionOfDataItems(int dataItems) {
+        Set<PackageArtifact> artifacts = new HashSet<>();
+        artifacts.add(artifact("collection", DcsBoPackageOntology.COLLECTION, "collection"));
+        for (int i = 0; i < dataItems; i++) {
+            PackageArtifact item = artifact("item" + i, DcsBoPackageOntology.DATAITEM, "item" + i);
+            item.setRelationships(new PackageRelationship(DcsBoPackageOntology.IS_MEMBER_OF, true, "collection"));
+            artifacts.add(item);
+
+            PackageArtifact file = artifact("file" + i, DcsBoPackageOntology.DATAFILE, "file" + i + ".txt");
+            file.setSimplePropertyValues(DcsBoPackageOntology.NAME, "file" + i + ".txt");
+            file.setRelationships(new PackageRelationship(DcsBoPackageOntology.IS_MEMBER_OF, true, "item" + i));
+            artifacts.add(file);
+        }
+        return description(artifacts, "collection");
+    }
+
+    static PackageDescription description(Set<PackageArtifact> artifacts, String rootArtifactRef) {
+        PackageDescription description = new PackageDescription();
+        description.setPackageArtifacts(artifacts);
+        description.setRootArtifactRef(rootArtifactRef);
+        return description;
+    }
+
+    /* An artifact, which is a byte stream if it is a file */
+    static PackageArtifact artifact(String id, String type, String ref) {
+        PackageArtifact artifact = new PackageArtifact();
+        artifact.setId(id);
+        artifact.setType(type);
+        artifact.setArtifactRef(ref);
+        artifact.setByteStream(type.equals(DcsBoPackageOntology.DATAFILE)
+                                       || type.equals(DcsBoPackageOntology.METADATAFILE));
+        return artifact;
+    }
+
+    /* Holds the content of every resource put into the package */
+    static class CapturingAssembler implements PackageAssembler {
+
+        final Map<URI, byte[]> resources = new TreeMap<>();
+
+        @Override
+        public void init(PackageGenerationParameters params) {
+        }
+
+        @Override
+        public URI reserveResource(String path, PackageResourceType type) {
+            return URI.create("file:///package" + (path.startsWith("/") ? "" : "/data/") + path);
+        }
+
+        @Override
+        public void putResource(URI uri, InputStream content) {
+            try {
+                resources.put(uri, IOUtils.toByteArray(content));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public URI createResource(String path, PackageResourceType type, InputStream content) {
+            URI uri = reserveResource(path, type);
+            putResource(uri, content);
+            return uri;
+        }
+
+        @Override
+        public Package assemblePackage() {
+            return null;
+        }
+
+        @Override
+        public void addParameter(String key, String value) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.packaging.tool.api.generator.ReadScheduler;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadSchedulerTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private List<File> files;
+
+    @Before
+    public void setUp() throws Exception {
+        files = new ArrayList<>();
+        for (String path : new String[] {"b/z.txt", "a/y.txt", "root.txt", "a/x.txt", "b/a/w.txt"}) {
+            File file = new File(tmpfolder.getRoot(), path);
+            FileUtils.write(file, path, StandardCharsets.UTF_8);
+            files.add(file);
+        }
+    }
+
+    /* Verify that files are read one directory at a time, by name */
+    @Test
+    public void directoryOrderTest() {
+        List<File> scheduled = new DirectoryReadScheduler().schedule(files);
+
+        assertEquals(Arrays.asList(file("root.txt"), file("a/x.txt"), file("a/y.txt"), file("b/z.txt"),
+                file("b/a/w.txt")), scheduled);
+    }
+
+    /* Verify that files are read by inode number, and files whose inode is unknown are read last */
+    @Test
+    public void inodeOrderTest() throws Exception {
+        Assume.assumeTrue(Files.getFileStore(tmpfolder.getRoot().toPath()).supportsFileAttributeView("unix"));
+        File missing = file("missing.txt");
+        List<File> toSchedule = new ArrayList<>(files);
+        toSchedule.add(0, missing);
+
+        List<File> scheduled = new InodeReadScheduler().schedule(toSchedule);
+
+        assertEquals(toSchedule.size(), scheduled.size());
+        assertEquals(missing, scheduled.get(scheduled.size() - 1));
+        long previous = -1;
+        for (File file : scheduled.subList(0, files.size())) {
+            long inode = ((Number) Files.getAttribute(file.toPath(), "unix:ino")).longValue();
+            assertTrue(file + " read out of inode order", inode > previous);
+            previous = inode;
+        }
+    }
+
+    /* Verify that the read order parameter selects the scheduler */
+    @Test
+    public void factoryTest() {
+        assertNull(ReadSchedulerFactory.newScheduler(new PackageGenerationParameters()));
+        assertNull(ReadSchedulerFactory.newScheduler(params("none")));
+        assertTrue(ReadSchedulerFactory.newScheduler(params("directory")) instanceof DirectoryReadScheduler);
+        assertTrue(ReadSchedulerFactory.newScheduler(params("inode")) instanceof InodeReadScheduler);
+
+        ReadScheduler scheduler = ReadSchedulerFactory.newScheduler(params(ReverseReadScheduler.class.getName()));
+        assertTrue(scheduler instanceof ReverseReadScheduler);
+        List<File> reversed = new ArrayList<>(files);
+        Collections.reverse(reversed);
+        assertEquals(reversed, scheduler.schedule(files));
+    }
+
+    /* Verify that a read order which names no scheduler is rejected */
+    @Test(expected = PackageToolException.class)
+    public void unknownOrderTest() {
+        ReadSchedulerFactory.newScheduler(params("random"));
+    }
+
+    /* Verify that a class which is not a scheduler is rejected */
+    @Test(expected = PackageToolException.class)
+    public void notASchedulerTest() {
+        ReadSchedulerFactory.newScheduler(params(String.class.getName()));
+    }
+
+    private File file(String path) {
+        return new File(tmpfolder.getRoot(), path);
+    }
+
+    private static PackageGenerationParameters params(String order) {
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PAYLOAD_READ_ORDER, order);
+        return params;
+    }
+
+    /* A scheduler named by its class */
+    public static class ReverseReadScheduler implements ReadScheduler {
+
+        @Override
+        public List<File> schedule(Collection<File> files) {
+            List<File> scheduled = new ArrayList<>(files);
+            Collections.reverse(scheduled);
+            return scheduled;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.packaging.tool.impl.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.dataconservancy.packaging.tool.impl.generator.PackageFixtures.CapturingAssembler;
+import org.dataconservancy.packaging.tool.model.BoremParameterNames;
+import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
+import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
+import org.dataconservancy.packaging.tool.model.PackageToolException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.dataconservancy.packaging.tool.impl.generator.PackageFixtures.collectionOfDataItems;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemGranularityTest {
+    @Rule
+    public TemporaryFolder tmpfolder = new TemporaryFolder();
+
+    private static final String ORE = "http://www.openarchives.org/ore/terms/";
+
+    private static final Resource RESOURCE_MAP = ModelFactory.createDefaultModel().createResource(ORE + "ResourceMap");
+
+    private static final Property DESCRIBES = ModelFactory.createDefaultModel().createProperty(ORE + "describes");
+
+    private static final int DATA_ITEMS = 4;
+
+    private File contentDir;
+
+    @Before
+    public void setUp() throws Exception {
+        contentDir = tmpfolder.newFolder("content");
+        for (int i = 0; i < DATA_ITEMS; i++) {
+            FileUtils.write(new File(contentDir, "file" + i + ".txt"), "file " + i, StandardCharsets.UTF_8);
+        }
+    }
+
+    /* Verify that each ReM has a document of its own by default */
+    @Test
+    public void artifactGranularityTest() {
+        Map<URI, Model> documents = build(null);
+
+        /* The package, the collection and each of its data items */
+        assertEquals(2 + DATA_ITEMS, documents.size());
+        for (Map.Entry<URI, Model> document : documents.entrySet()) {
+            Set<Resource> rems = rems(document.getValue());
+            assertEquals(1, rems.size());
+            Resource rem = rems.iterator().next();
+            assertEquals(document.getKey().toString(), rem.getURI());
+            assertEquals(rem.getURI() + "#Aggregation",
+                    rem.getPropertyResourceValue(DESCRIBES).getURI());
+        }
+        Map<URI, Model> artifactDocuments = build("artifact");
+        assertEquals(documents.keySet(), artifactDocuments.keySet());
+        for (Map.Entry<URI, Model> document : documents.entrySet()) {
+            assertTrue(document.getValue().isIsomorphicWith(artifactDocuments.get(document.getKey())));
+        }
+    }
+
+    /* Verify that the ReMs of the data items of a collection share its document, each describing its aggregation */
+    @Test
+    public void collectionGranularityTest() {
+        Map<URI, Model> documents = build("collection");
+
+        /* The package, and the collection with its data items */
+        assertEquals(2, documents.size());
+        int sharedReMs = 0;
+        for (Map.Entry<URI, Model> document : documents.entrySet()) {
+            Set<Resource> rems = rems(document.getValue());
+            if (rems.size() > 1) {
+                assertEquals(1 + DATA_ITEMS, rems.size());
+                sharedReMs += rems.size();
+                for (Resource rem : rems) {
+                    URI remURI = URI.create(rem.getURI());
+                    assertEquals(document.getKey(), URI.create(remURI.getScheme() + ":" +
+                            remURI.getSchemeSpecificPart()));
+                    assertTrue(remURI.getFragment().endsWith("-REM"));
+                    assertEquals(OrePackageModelBuilder.aggregationURI(remURI).toString(),
+                            rem.getPropertyResourceValue(DESCRIBES).getURI());
+                }
+            }
+        }
+        assertEquals(1 + DATA_ITEMS, sharedReMs);
+    }
+
+    /* Verify that data item ReMs are written a given number to a document */
+    @Test
+    public void numericGranularityTest() {
+        /* The package, the collection, and the data items 3 then 1 to a document */
+        Map<URI, Model> documents = build("3");
+        assertEquals(4, documents.size());
+        int[] remCounts = new int[DATA_ITEMS];
+        for (Model document : documents.values()) {
+            remCounts[rems(document).size()]++;
+        }
+        assertEquals(3, remCounts[1]);
+        assertEquals(1, remCounts[3]);
+
+        /* A document for each data item, as without sharing */
+        assertEquals(2 + DATA_ITEMS, build("1").size());
+    }
+
+    /* Verify that granularities other than "artifact", "collection" or a positive number are rejected */
+    @Test
+    public void invalidGranularityTest() {
+        for (String granularity : new String[] {"0", "-2", "items", "1.5"}) {
+            try {
+                build(granularity);
+                fail("Granularity " + granularity + " was accepted");
+            } catch (PackageToolException e) {
+                //expected
+            }
+        }
+    }
+
+    /* Verify how ReMs sharing a document, and their aggregations, are named */
+    @Test
+    public void namingTest() {
+        URI document = URI.create("file:///package/ORE-REM/collection.xml");
+        URI sharedRem = URI.create(document + "#1234-REM");
+        assertEquals(URI.create(document + "#Aggregation"), OrePackageModelBuilder.aggregationURI(document));
+        assertEquals(URI.create(document + "#1234-Aggregation"), OrePackageModelBuilder.aggregationURI(sharedRem));
+
+        URI otherDocument = URI.create("file:///package/ORE-REM/item.xml");
+        Map<URI, List<URI>> documents = OrePackageModelBuilder.groupByDocument(
+                Arrays.asList(sharedRem, otherDocument, URI.create(document + "#5678-REM")));
+        assertEquals(2, documents.size());
+        assertEquals(Arrays.asList(sharedRem, URI.create(document + "#5678-REM")), documents.get(document));
+        assertEquals(Arrays.asList(otherDocument), documents.get(otherDocument));
+    }
+
+    /* Builds the package model, returning the ReM documents by URI */
+    private Map<URI, Model> build(String granularity) {
+        PackageGenerationParameters params = new PackageGenerationParameters();
+        params.addParam(GeneralParameterNames.PACKAGE_NAME, "package");
+        params.addParam(GeneralParameterNames.CONTENT_ROOT_LOCATION, contentDir.getPath());
+        params.addParam(GeneralParameterNames.REPRODUCIBLE_SERIALIZATION, "true");
+        if (granularity != null) {
+            params.addParam(BoremParameterNames.REM_GRANULARITY, granularity);
+        }
+
+        CapturingAssembler assembler = new CapturingAssembler();
+        OrePackageModelBuilder builder = new OrePackageModelBuilder();
+        builder.init(params);
+        builder.buildModel(collectionOfDataItems(DATA_ITEMS), assembler);
+
+        Map<URI, Model> documents = new TreeMap<>();
+        for (Map.Entry<URI, byte[]> resource : assembler.resources.entrySet()) {
+            if (resource.getKey().getPath().startsWith("/package/ORE-REM/")) {
+                Model model = ModelFactory.createDefaultModel();
+                RDFDataMgr.read(model, new ByteArrayInputStream(resource.getValue()), resource.getKey().toString(),
+                        Lang.RDFXML);
+                documents.put(resource.getKey(), model);
+            }
+        }
+        return documents;
+    }
+
+    private static Set<Resource> rems(Model document) {
+        Set<Resource> rems = new HashSet<>();
+        ResIterator subjects = document.listSubjectsWithProperty(RDF.type, RESOURCE_MAP);
+        while (subjects.hasNext()) {
+            rems.add(subjects.next());
+        }
+        return rems;
+    }
+}